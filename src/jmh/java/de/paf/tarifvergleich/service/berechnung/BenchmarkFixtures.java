@@ -0,0 +1,75 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.DataLoader;
+import de.paf.tarifvergleich.domain.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * In-Memory-Fixtures für die Benchmarks: Renditereihen aus den DataLoader-Startdaten,
+ * Tarife und eine typische Kostenstruktur (Abschluss verteilt, Verwaltung, Guthabenkosten
+ * mit Minimum, Stückkosten, Jahresgebühr, Policengebühr).
+ */
+final class BenchmarkFixtures {
+
+    static final long KA_ID_BASIS = 100L;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Renditereihe einer Start-Kapitalanlage ("3% Rendite", "6% Rendite", "9% Rendite", "FantasyFonds").
+     */
+    static Renditereihe renditereihe(String name) {
+        List<Kapitalanlage> start = DataLoader.startKapitalanlagen();
+        for (int i = 0; i < start.size(); i++) {
+            Kapitalanlage k = start.get(i);
+            if (k.getName().equals(name)) {
+                k.setId(KA_ID_BASIS + i);
+                return Renditereihe.aus(k, 0);
+            }
+        }
+        throw new IllegalArgumentException("Unbekannte Kapitalanlage: " + name);
+    }
+
+    static Tarif tarif(TarifTyp typ) {
+        return Tarif.builder()
+                .id(1L)
+                .tarifName("Benchmark " + typ)
+                .tarifCode("B_" + typ)
+                .tarifTyp(typ)
+                .garantiezins(new BigDecimal("0.0125"))
+                .garantieModus(GarantieModus.MIT_UEBERSCHUESSEN)
+                .garantieNiveau(new BigDecimal("0.80"))
+                .topfBFloor(new BigDecimal("0.80"))
+                .build();
+    }
+
+    static List<Kostenpunkt> kostenpunkte() {
+        return List.of(
+                Kostenpunkt.builder().code("ABSCHLUSS_VERTEILT_5J").typ(KostenTyp.PROZENT).basis(KostenBasis.BEITRAG)
+                        .rhythmus(KostenRhythmus.VERTEILT_5_JAHRE).wert(new BigDecimal("2.5")).build(),
+                Kostenpunkt.builder().code("VERWALTUNG").typ(KostenTyp.PROZENT).basis(KostenBasis.BEITRAG)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("4.0")).build(),
+                Kostenpunkt.builder().code("GUTHABEN").typ(KostenTyp.PROZENT).basis(KostenBasis.KAPITAL)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("0.60"))
+                        .prozentPeriode(ProzentPeriode.JAHRLICH).minimumEuro(new BigDecimal("0.10")).build(),
+                Kostenpunkt.builder().code("FONDS_TER").typ(KostenTyp.PROZENT).basis(KostenBasis.KAPITAL)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("0.25"))
+                        .prozentPeriode(ProzentPeriode.JAHRLICH).build(),
+                Kostenpunkt.builder().code("FIX_STUFE1").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("1.50"))
+                        .gueltigVonMonat(1).gueltigBisMonat(120).build(),
+                Kostenpunkt.builder().code("FIX_STUFE2").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("1.00"))
+                        .gueltigVonMonat(121).build(),
+                Kostenpunkt.builder().code("JAHRESGEBUEHR").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.JAHRLICH).wert(new BigDecimal("12")).build(),
+                Kostenpunkt.builder().code("POLICE").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.EINMALIG).wert(new BigDecimal("20")).build(),
+                Kostenpunkt.builder().code("INAKTIV").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("99")).aktiv(false).build()
+        );
+    }
+}
@@ -0,0 +1,81 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.TarifTyp;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garantie-Faktor (Garantietopf) und Topf-B-Faktor mit Floor: Abfrage für jeden
+ * Monat der Laufzeit (so wie der Rechenkern sie braucht) und Aufbau der Tabellen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FaktorenBenchmark {
+
+    private static final BigDecimal FLOOR = new BigDecimal("0.80");
+
+    @Param({"15", "30", "65"})
+    public int laufzeitJahre;
+
+    private int monate;
+    private BigDecimal monatsrendite;
+    private GarantieFaktoren.Tabelle garantie;
+    private Renditereihe kaB;
+    private TopfBFloorIndex.Index floorIndex;
+
+    @Setup
+    public void setup() {
+        monate = laufzeitJahre * 12;
+
+        GarantieFaktoren faktoren = new GarantieFaktoren();
+        monatsrendite = faktoren.monatsrendite(BenchmarkFixtures.tarif(TarifTyp.HYBRID_2_TOPF));
+        garantie = faktoren.tabelle(monatsrendite, monate);
+
+        kaB = BenchmarkFixtures.renditereihe("FantasyFonds");
+        floorIndex = TopfBFloorIndex.Index.bauen(kaB, FLOOR);
+    }
+
+    @Benchmark
+    public BigDecimal garantieFaktor() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int m = 1; m <= monate; m++) sum = sum.add(garantie.faktor(monate - m + 1));
+        return sum;
+    }
+
+    @Benchmark
+    public double garantieFaktorDouble() {
+        double sum = 0.0;
+        for (int m = 1; m <= monate; m++) sum += garantie.faktorDouble(monate - m + 1);
+        return sum;
+    }
+
+    @Benchmark
+    public BigDecimal topfBFaktor() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int m = 1; m <= monate; m++) sum = sum.add(floorIndex.faktor(m, monate - m + 1));
+        return sum;
+    }
+
+    @Benchmark
+    public double topfBFaktorDouble() {
+        double sum = 0.0;
+        for (int m = 1; m <= monate; m++) sum += floorIndex.faktorDouble(m, monate - m + 1);
+        return sum;
+    }
+
+    @Benchmark
+    public GarantieFaktoren.Tabelle garantieTabelleBauen() {
+        return GarantieFaktoren.Tabelle.bauen(monatsrendite, monate);
+    }
+
+    @Benchmark
+    public TopfBFloorIndex.Index topfBIndexBauen() {
+        return TopfBFloorIndex.Index.bauen(kaB, FLOOR);
+    }
+}
@@ -0,0 +1,75 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.Kostenpunkt;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kosten über die ganze Laufzeit (alle Monate, wachsendes Kapital):
+ * direkt auf den Kostenpunkten (REFERENZ) gegen den kompilierten Kostenplan,
+ * dazu das Kompilieren selbst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KostenBenchmark {
+
+    private static final BigDecimal BEITRAG = BigDecimal.valueOf(100);
+
+    @Param({"15", "30", "65"})
+    public int laufzeitJahre;
+
+    private List<Kostenpunkt> kostenpunkte;
+    private GarantieFaktoren garantieFaktoren;
+    private ReferenzRechenkern referenz;
+    private Kostenplan plan;
+    private BigDecimal[] kapitalBig;
+    private double[] kapital;
+
+    @Setup
+    public void setup() {
+        kostenpunkte = BenchmarkFixtures.kostenpunkte();
+        garantieFaktoren = new GarantieFaktoren();
+        referenz = new ReferenzRechenkern(new TopfBFloorIndex());
+        plan = Kostenplan.kompilieren(BenchmarkFixtures.tarif(TarifTyp.FONDS), null, kostenpunkte,
+                BEITRAG, laufzeitJahre, garantieFaktoren);
+
+        int monate = laufzeitJahre * 12;
+        kapitalBig = new BigDecimal[monate + 1];
+        kapital = new double[monate + 1];
+        for (int m = 1; m <= monate; m++) {
+            kapital[m] = 100.0 * m * 1.003;
+            kapitalBig[m] = BigDecimal.valueOf(kapital[m]);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal kostenSummeFuerMonat() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int m = 1; m < kapitalBig.length; m++) {
+            sum = sum.add(referenz.kostenSummeFuerMonat(kostenpunkte, m, BEITRAG, kapitalBig[m]));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double kostenFuerMonat() {
+        double sum = 0.0;
+        for (int m = 1; m < kapital.length; m++) {
+            sum += plan.kostenFuerMonat(m, kapital[m]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Kostenplan kompilieren() {
+        return Kostenplan.kompilieren(plan.tarif(), null, kostenpunkte, BEITRAG, laufzeitJahre, garantieFaktoren);
+    }
+}
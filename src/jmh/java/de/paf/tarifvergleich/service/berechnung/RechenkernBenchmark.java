@@ -0,0 +1,56 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ein Tarif, eine Grid-Zelle: Simulation je TarifTyp, Laufzeit und Rechenkern.
+ * Kapitalanlage A ist FantasyFonds (bzw. 6% für den FIXED-Pfad), B immer FantasyFonds.
+ * Floor-Index und Garantietabellen sind wie im Betrieb vorgewärmt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RechenkernBenchmark {
+
+    @Param({"FONDS", "HYBRID_2_TOPF", "HYBRID_3_TOPF"})
+    public TarifTyp tarifTyp;
+
+    @Param({"15", "30", "65"})
+    public int laufzeitJahre;
+
+    @Param({"REFERENZ", "SCHNELL"})
+    public String kern;
+
+    @Param({"FantasyFonds", "6% Rendite"})
+    public String kapitalanlageA;
+
+    private Rechenkern rechenkern;
+    private Kostenplan plan;
+    private Renditereihe kaA;
+    private Renditereihe kaB;
+
+    @Setup
+    public void setup() {
+        TopfBFloorIndex floorIndex = new TopfBFloorIndex();
+        rechenkern = "REFERENZ".equals(kern) ? new ReferenzRechenkern(floorIndex) : new SchnellRechenkern(floorIndex);
+
+        plan = Kostenplan.kompilieren(BenchmarkFixtures.tarif(tarifTyp), null, BenchmarkFixtures.kostenpunkte(),
+                BigDecimal.valueOf(100), laufzeitJahre, new GarantieFaktoren());
+        kaA = BenchmarkFixtures.renditereihe(kapitalanlageA);
+        kaB = BenchmarkFixtures.renditereihe("FantasyFonds");
+        floorIndex.fuer(kaB, plan.topfBFloor());
+    }
+
+    @Benchmark
+    public BerechnungErgebnisDto simuliere() {
+        return rechenkern.simuliere(plan, 30, kaA, kaB);
+    }
+}
@@ -0,0 +1,97 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.domain.Kostenpunkt;
+import de.paf.tarifvergleich.domain.Tarif;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tarif mit Skript gegen denselben Tarif nativ.
+ *
+ * - NATIV:   Kostenstruktur aus BenchmarkFixtures
+ * - KOSTEN:  Jahresgebühr nicht als Kostenpunkt, sondern als kosten(t) im Skript (gleiches Ergebnis)
+ * - BONUS:   wie KOSTEN, zusätzlich ein Treuebonus alle 5 Jahre per bonus(t)
+ *
+ * Gemessen wird wie im BerechnungsService: Kontext ausleihen, Regeln binden, simulieren,
+ * zurückgeben. Der Pool ist vorgewärmt, die Source geparst. Auf einem JDK ohne
+ * Graal-Compiler laufen die Skripte im Interpreter (dort ist SKRIPT deutlich langsamer).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkriptBenchmark {
+
+    private static final String KOSTEN = """
+            function kosten(t) {
+              return t.monat % 12 === 0 ? 12 : 0;
+            }
+            """;
+
+    private static final String BONUS = KOSTEN + """
+            function bonus(t) {
+              return t.monat % 60 === 0 ? t.summeBeitraege * 0.01 : 0;
+            }
+            """;
+
+    @Param({"FONDS", "HYBRID_3_TOPF"})
+    public TarifTyp tarifTyp;
+
+    @Param({"30"})
+    public int laufzeitJahre;
+
+    @Param({"REFERENZ", "SCHNELL"})
+    public String kern;
+
+    @Param({"NATIV", "KOSTEN", "BONUS"})
+    public String variante;
+
+    private TarifSkripte tarifSkripte;
+    private Rechenkern rechenkern;
+    private Kostenplan plan;
+    private Renditereihe kaA;
+    private Renditereihe kaB;
+
+    @Setup
+    public void setup() {
+        TopfBFloorIndex floorIndex = new TopfBFloorIndex();
+        rechenkern = "REFERENZ".equals(kern) ? new ReferenzRechenkern(floorIndex) : new SchnellRechenkern(floorIndex);
+        tarifSkripte = new TarifSkripte(new BerechnungsProperties());
+
+        Tarif tarif = BenchmarkFixtures.tarif(tarifTyp);
+        List<Kostenpunkt> kosten = BenchmarkFixtures.kostenpunkte();
+        if (!"NATIV".equals(variante)) {
+            tarif.setBerechnungsScript("KOSTEN".equals(variante) ? KOSTEN : BONUS);
+            kosten = kosten.stream().filter(k -> !"JAHRESGEBUEHR".equals(k.getCode())).toList();
+        }
+
+        plan = Kostenplan.kompilieren(tarif, null, kosten, BigDecimal.valueOf(100), laufzeitJahre, new GarantieFaktoren());
+        kaA = BenchmarkFixtures.renditereihe("FantasyFonds");
+        kaB = BenchmarkFixtures.renditereihe("FantasyFonds");
+        floorIndex.fuer(kaB, plan.topfBFloor());
+
+        // Kontext anlegen und Source einmal auswerten
+        simuliere();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tarifSkripte.destroy();
+    }
+
+    @Benchmark
+    public BerechnungErgebnisDto simuliere() {
+        if (!TarifSkripte.hatSkript(plan.tarif())) return rechenkern.simuliere(plan, 30, kaA, kaB);
+        try (TarifSkripte.Kontext k = tarifSkripte.ausleihen()) {
+            return rechenkern.simuliere(plan, 30, kaA, kaB, k.regeln(plan));
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package de.paf.tarifvergleich;
 
+import de.paf.tarifvergleich.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(NativeHints.class)
 public class TarifvergleichApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,109 @@
+package de.paf.tarifvergleich.config;
+
+import de.paf.tarifvergleich.domain.RechenModus;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Einstellungen für /api/berechnung (Prefix "tarifvergleich.berechnung").
+ */
+@Data
+@ConfigurationProperties(prefix = "tarifvergleich.berechnung")
+public class BerechnungsProperties {
+
+    /**
+     * Standard-Rechenkern, wenn der Request keinen Modus mitschickt.
+     */
+    private RechenModus rechenModus = RechenModus.REFERENZ;
+
+    /**
+     * Wie viele Tarife prozessweit gleichzeitig gerechnet werden (virtuelle Threads).
+     * 1 = sequenziell im Request-Thread. Nicht größer als der DB-Pool (Hikari: 10) wählen.
+     */
+    private int parallelitaet = 8;
+
+    /**
+     * Obergrenze Ergebnis-Cache, gemessen in Wertpunkten (ein Ergebnis mit 30 Jahren = 31).
+     * 0 = Cache aus.
+     */
+    private long ergebnisCacheMaxWertpunkte = 100_000;
+
+    /**
+     * Monte Carlo: Pfade, wenn der Request keine Anzahl mitschickt.
+     */
+    private int monteCarloPfade = 1_000;
+
+    /**
+     * Monte Carlo: Obergrenze Pfade je Request (Speicher: Pfade x Tarife x Jahre x 4 Byte,
+     * begrenzt über monteCarloMaxWertpunkte).
+     */
+    private int monteCarloMaxPfade = 10_000;
+
+    /**
+     * Monte Carlo: Obergrenze Tarife x Pfade x Jahre je Request (je Wert 4 Byte, Standard ~80 MB).
+     * Darüber wird der Request mit 400 abgelehnt.
+     */
+    private long monteCarloMaxWertpunkte = 20_000_000;
+
+    /**
+     * Batch: Obergrenze Szenarien (Tarife x Zellen x Kapitalanlagen x GarantieModi) je Request,
+     * Sweep: Obergrenze Punkte (Beiträge x Laufzeiten).
+     */
+    private int batchMaxSzenarien = 5_000;
+
+    /**
+     * Ergebnisse für alle aktiven Grid-Zellen x vorberechnungKapitalanlagen im Hintergrund
+     * vorberechnen (nur Standard-Rechenkern) und daraus antworten.
+     */
+    private boolean vorberechnung = true;
+
+    /**
+     * Namen der Kapitalanlagen, die vorberechnet werden (als A, beim 3-Topf-Hybrid auch als B).
+     * Leer = keine. Jede weitere Kapitalanlage vervielfacht die Hybrid-Zellen (A x B).
+     */
+    private List<String> vorberechnungKapitalanlagen = new ArrayList<>();
+
+    /**
+     * Wie viele Zellen die Vorberechnung gleichzeitig rechnet. Eigenes Kontingent neben
+     * parallelitaet – Anfragen warten nie auf die Vorberechnung.
+     */
+    private int vorberechnungParallelitaet = 2;
+
+    /**
+     * Wartezeit nach einer Admin-Änderung, bevor die Vorberechnung startet (ms). Weitere
+     * Änderungen in dieser Zeit laufen in denselben Durchlauf.
+     */
+    private long vorberechnungVerzoegerungMs = 1_000;
+
+    /**
+     * Obergrenze Ergebnis-Speicher (Vorberechnung), gemessen in Wertpunkten wie beim Ergebnis-Cache.
+     */
+    private long ergebnisSpeicherMaxWertpunkte = 300_000;
+
+    /**
+     * Pfad einer Serien-Datei (siehe SerienDatei), aus der Renditereihen eingeblendet
+     * statt aus der Datenbank geladen werden. Leer = aus.
+     */
+    private String serienDatei = "";
+
+    /**
+     * Höchstzahl gleichzeitig genutzter JavaScript-Kontexte für Tarif-Skripte (siehe TarifSkripte).
+     * Simulationen mit Skript warten höchstens skriptWartezeitMs, wenn alle vergeben sind.
+     */
+    private int skriptKontexte = 8;
+
+    /**
+     * Tarif-Skripte: höchstens so viele Anweisungen je Aufruf von kosten(t)/bonus(t) (und beim
+     * ersten Auswerten des Skripts). Darüber wird abgebrochen, der Tarif meldet einen Fehler.
+     */
+    private long skriptMaxAnweisungen = 100_000;
+
+    /**
+     * Tarif-Skripte: so lange wird auf einen freien Kontext gewartet (ms), danach meldet der
+     * Tarif einen Fehler.
+     */
+    private long skriptWartezeitMs = 5_000;
+}
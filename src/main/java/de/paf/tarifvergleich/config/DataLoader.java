@@ -3,38 +3,157 @@ package de.paf.tarifvergleich.config;
 import de.paf.tarifvergleich.domain.Kapitalanlage;
 import de.paf.tarifvergleich.domain.KapitalanlageTyp;
 import de.paf.tarifvergleich.repository.KapitalanlageRepository;
-import lombok.RequiredArgsConstructor;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import de.paf.tarifvergleich.service.kapitalanlage.KapitalanlageFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
+@Order(0) // nach RenditenMigration, vor RenditenImportLauf
+@Slf4j
 public class DataLoader implements CommandLineRunner {
 
     private final KapitalanlageRepository kapitalanlageRepository;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaktion;
+    private final ApplicationEventPublisher events;
+    private final SeedProperties properties;
+    private final Timer seedDauer;
+
+    private volatile boolean fertig;
 
     private static final int MONTHS_65Y = 65 * 12;
 
+    public DataLoader(
+            KapitalanlageRepository kapitalanlageRepository,
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher events,
+            SeedProperties properties,
+            MeterRegistry registry
+    ) {
+        this.kapitalanlageRepository = kapitalanlageRepository;
+        this.jdbc = jdbc;
+        this.transaktion = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.properties = properties;
+        this.seedDauer = Timer.builder("tarifvergleich.start.seed")
+                .description("Seeden der Start-Kapitalanlagen")
+                .tag("modus", properties.getModus().name())
+                .register(registry);
+    }
+
     @Override
     public void run(String... args) {
+        SeedProperties.Modus modus = properties.getModus();
+
         // Idempotent: wenn Kapitalanlagen bereits da sind, nicht erneut seed-en
-        if (kapitalanlageRepository.count() > 0) {
+        if (modus == SeedProperties.Modus.AUS || kapitalanlageRepository.count() > 0) {
+            fertig = true;
             return;
         }
 
+        if (modus == SeedProperties.Modus.HINTERGRUND) {
+            Thread.ofVirtual().name("seed").start(() -> {
+                try {
+                    seeden(true);
+                } catch (RuntimeException e) {
+                    log.error("Seed im Hintergrund fehlgeschlagen", e);
+                }
+            });
+        } else {
+            seeden(false);
+        }
+    }
+
+    /**
+     * Für die Readiness (SeedHealthIndicator): false, solange der Seed im Hintergrund läuft
+     * (oder dort fehlgeschlagen ist).
+     */
+    public boolean fertig() {
+        return fertig;
+    }
+
+    /**
+     * Fügt die Start-Kapitalanlagen aus der Ressource in einem JDBC-Batch ein.
+     * Im Hintergrund haben Caches/Vorberechnung evtl. schon ohne sie gestartet => melden.
+     */
+    private void seeden(boolean melden) {
+        long start = System.nanoTime();
+
+        List<SeedDaten.Eintrag> eintraege = seedEintraege();
+        transaktion.executeWithoutResult(tx -> jdbc.batchUpdate(
+                "insert into kapitalanlage (name, typ, annual_rate, renditen, aktiv) values (?, ?, ?, ?, ?)",
+                eintraege, eintraege.size(), (ps, e) -> {
+                    ps.setString(1, e.name());
+                    ps.setString(2, e.typ().name());
+                    ps.setBigDecimal(3, e.annualRate());
+                    ps.setBytes(4, e.renditen());
+                    ps.setBoolean(5, e.aktiv());
+                }));
+
+        long nanos = System.nanoTime() - start;
+        seedDauer.record(nanos, TimeUnit.NANOSECONDS);
+        fertig = true;
+
+        if (melden) {
+            for (Long id : kapitalanlageRepository.findAlleIds()) {
+                events.publishEvent(KatalogAenderung.kapitalanlage(id));
+            }
+        }
+        log.info("Seed: {} Kapitalanlagen in {} ms ({}), JVM läuft seit {} ms",
+                eintraege.size(), nanos / 1_000_000, properties.getModus(),
+                ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    private static List<SeedDaten.Eintrag> seedEintraege() {
+        try {
+            List<SeedDaten.Eintrag> ausRessource = SeedDaten.ausRessource();
+            if (ausRessource != null) return ausRessource;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Seed-Ressource " + SeedDaten.RESSOURCE + " nicht lesbar", e);
+        }
+
+        // Fallback ohne Ressource: wie früher berechnen
+        log.warn("Seed-Ressource {} fehlt, Start-Kapitalanlagen werden berechnet", SeedDaten.RESSOURCE);
+        List<SeedDaten.Eintrag> out = new ArrayList<>();
+        for (Kapitalanlage k : startKapitalanlagen()) {
+            out.add(new SeedDaten.Eintrag(k.getName(), k.getTyp(), k.getAnnualRate(), k.isAktiv(), k.getRenditenDaten()));
+        }
+        return out;
+    }
+
+    /**
+     * Die Start-Kapitalanlagen (ungespeichert, ohne id) – auch Fixtures für die Benchmarks.
+     */
+    public static List<Kapitalanlage> startKapitalanlagen() {
+        List<Kapitalanlage> out = new ArrayList<>();
+
         // ===== FIXED Kapitalanlagen (3/6/9% p.a.) auf 65 Jahre =====
-        saveKapitalanlageIfMissing(createKapitalanlageFixed("3% Rendite", new BigDecimal("0.03")));
-        saveKapitalanlageIfMissing(createKapitalanlageFixed("6% Rendite", new BigDecimal("0.06")));
-        saveKapitalanlageIfMissing(createKapitalanlageFixed("9% Rendite", new BigDecimal("0.09")));
+        out.add(createKapitalanlageFixed("3% Rendite", new BigDecimal("0.03")));
+        out.add(createKapitalanlageFixed("6% Rendite", new BigDecimal("0.06")));
+        out.add(createKapitalanlageFixed("9% Rendite", new BigDecimal("0.09")));
 
         // ===== FantasyFonds aus deiner Monatsreihe (auf 65 Jahre verlängert) =====
-        List<BigDecimal> fantasyMonthly = parseGermanDecimalLines(FANTASY_FONDS_RENDITEN_RAW);
+        List<BigDecimal> fantasyMonthly = KapitalanlageFactory.parseGermanDecimalLines(FANTASY_FONDS_RENDITEN_RAW);
         fantasyMonthly = extendToMonths(fantasyMonthly, MONTHS_65Y);
 
         Kapitalanlage fantasy = Kapitalanlage.builder()
@@ -46,19 +165,15 @@ public class DataLoader implements CommandLineRunner {
                 .aktiv(true)
                 .build();
 
-        saveKapitalanlageIfMissing(fantasy);
+        out.add(fantasy);
+        return out;
     }
 
     // =========================================================
     // Helpers
     // =========================================================
 
-    private void saveKapitalanlageIfMissing(Kapitalanlage k) {
-        kapitalanlageRepository.findByName(k.getName())
-                .orElseGet(() -> kapitalanlageRepository.save(k));
-    }
-
-    private Kapitalanlage createKapitalanlageFixed(String name, BigDecimal annualRate) {
+    private static Kapitalanlage createKapitalanlageFixed(String name, BigDecimal annualRate) {
         BigDecimal monthly = monthlyRateFromAnnual(annualRate);
         return Kapitalanlage.builder()
                 .name(name)
@@ -69,7 +184,7 @@ public class DataLoader implements CommandLineRunner {
                 .build();
     }
 
-    private List<BigDecimal> fillConstantMonths(BigDecimal monthlyRate, int months) {
+    private static List<BigDecimal> fillConstantMonths(BigDecimal monthlyRate, int months) {
         List<BigDecimal> list = new ArrayList<>(months);
         for (int i = 0; i < months; i++) {
             list.add(monthlyRate);
@@ -80,32 +195,12 @@ public class DataLoader implements CommandLineRunner {
     /**
      * r_month = (1 + r_year)^(1/12) - 1
      */
-    private BigDecimal monthlyRateFromAnnual(BigDecimal annualRate) {
+    private static BigDecimal monthlyRateFromAnnual(BigDecimal annualRate) {
         double rY = annualRate.doubleValue();
         double rM = Math.pow(1.0 + rY, 1.0 / 12.0) - 1.0;
         return new BigDecimal(rM, new MathContext(20, RoundingMode.HALF_UP));
     }
 
-    /**
-     * Parsed Textblock mit deutschem Dezimal-Komma:
-     * "0,01039413" -> BigDecimal("0.01039413")
-     */
-    private static List<BigDecimal> parseGermanDecimalLines(String rawLines) {
-        if (rawLines == null || rawLines.isBlank()) return List.of();
-
-        String[] lines = rawLines.split("\\R+");
-        List<BigDecimal> out = new ArrayList<>(lines.length);
-
-        for (String line : lines) {
-            String s = line.trim();
-            if (s.isEmpty()) continue;
-            s = s.replace(",", ".");
-            out.add(new BigDecimal(s));
-        }
-
-        return out;
-    }
-
     /**
      * Verlängert eine Monatsreihe zyklisch auf "months".
      * (Wenn du später lieber "letzten Wert wiederholen" willst: sag Bescheid.)
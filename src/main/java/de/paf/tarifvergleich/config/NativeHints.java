@@ -0,0 +1,84 @@
+package de.paf.tarifvergleich.config;
+
+import de.paf.tarifvergleich.controller.admin.dto.*;
+import de.paf.tarifvergleich.controller.dto.*;
+import de.paf.tarifvergleich.domain.*;
+import de.paf.tarifvergleich.repository.KapitalanlageKopf;
+import de.paf.tarifvergleich.service.berechnung.TarifSkripte;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * Hints für das Native Image (mvn -Pnative native:compile), ergänzend zu dem, was Spring AOT
+ * selbst ableitet (Repositories, JPA Managed Types, @RequestBody/@ResponseBody der Controller).
+ *
+ * - Entities: werden von TarifController/FondsController/AdminController auch direkt als JSON
+ *   geschrieben, nicht nur von Hibernate gelesen.
+ * - DTOs: BerechnungController schreibt im Stream-Endpunkt selbst über den ObjectMapper,
+ *   das sieht AOT nicht.
+ * - Ressourcen: Seed-Daten (DataLoader).
+ * - Host-Objekt der Tarif-Skripte: GraalJS liest die exportierten Felder per Reflection.
+ * - Projektionen (select new ...): Hibernate ruft den Konstruktor per Reflection auf.
+ *
+ * GraalJS/Truffle bringen ihre Native-Image-Konfiguration im Jar mit (META-INF/native-image);
+ * Caffeine kommt aus dem GraalVM Reachability Metadata Repository (native-maven-plugin).
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> ENTITIES = List.of(
+            Tarif.class,
+            Kostenstruktur.class,
+            Kostenpunkt.class,
+            Kapitalanlage.class,
+            Fonds.class,
+            Finanzdienstleistungsunternehmen.class
+    );
+
+    private static final List<Class<?>> DTOS = List.of(
+            BatchErgebnisDto.class,
+            BatchRequestDto.class,
+            BatchZeileDto.class,
+            BerechnungErgebnisDto.class,
+            BerechnungRequestDto.class,
+            GridZelleDto.class,
+            KapitalanlageKurzDto.class,
+            KapitalanlagePaarDto.class,
+            MonteCarloErgebnisDto.class,
+            MonteCarloRequestDto.class,
+            PerzentilbandDto.class,
+            SweepErgebnisDto.class,
+            SweepRequestDto.class,
+            TarifKurzDto.class,
+            WertpunktDto.class,
+            AdminCacheStatusDto.class,
+            AdminImportErgebnisDto.class,
+            AdminKapitalanlageDto.class,
+            AdminKostenpunktDto.class,
+            AdminKostenstrukturDto.class,
+            AdminSerienStatusDto.class,
+            AdminTarifDto.class
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> entity : ENTITIES) {
+            hints.reflection().registerType(entity,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_DECLARED_METHODS,
+                    MemberCategory.DECLARED_FIELDS);
+        }
+
+        BindingReflectionHintsRegistrar binding = new BindingReflectionHintsRegistrar();
+        binding.registerReflectionHints(hints.reflection(), DTOS.toArray(Class<?>[]::new));
+        binding.registerReflectionHints(hints.reflection(), ENTITIES.toArray(Class<?>[]::new));
+
+        hints.reflection().registerType(TarifSkripte.Monat.class, MemberCategory.DECLARED_FIELDS);
+        hints.reflection().registerType(KapitalanlageKopf.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+        hints.resources().registerPattern(SeedDaten.RESSOURCE);
+    }
+}
@@ -0,0 +1,56 @@
+package de.paf.tarifvergleich.config;
+
+import de.paf.tarifvergleich.service.kapitalanlage.RenditenImport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Renditen-Import beim Start, z.B.
+ *
+ *   java -jar tarifvergleich.jar --renditen-import=fonds.csv --spring.main.web-application-type=none
+ *
+ * (mehrere Dateien: Option wiederholen oder mit Komma trennen). Ohne web-application-type=none
+ * läuft die Anwendung danach normal weiter. Nach dem DataLoader, damit der Seed nicht
+ * wegen der importierten Kapitalanlagen übersprungen wird.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class RenditenImportLauf implements ApplicationRunner {
+
+    private static final String OPTION = "renditen-import";
+
+    private final RenditenImport renditenImport;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> dateien = args.getOptionValues(OPTION);
+        if (dateien == null) return;
+
+        for (String eintrag : dateien) {
+            for (String datei : eintrag.split(",")) {
+                if (datei.isBlank()) continue;
+                Path pfad = Path.of(datei.strip());
+                try (FileChannel ch = FileChannel.open(pfad, StandardOpenOption.READ)) {
+                    RenditenImport.Ergebnis e = renditenImport.importieren(ch);
+                    log.info("{} importiert: {} neu, {} aktualisiert", pfad, e.neu(), e.aktualisiert());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Import-Datei nicht lesbar: " + pfad, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.paf.tarifvergleich.config;
+
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Einmalige Migration: Monatsrenditen aus der alten Tabelle kapitalanlage_monatsrendite
+ * (eine Zeile je Monat, @ElementCollection) in die gepackte Spalte kapitalanlage.renditen.
+ *
+ * Läuft vor dem DataLoader. Die Spalte legt ddl-auto=update an; Kapitalanlagen, deren
+ * Spalte schon gefüllt ist, bleiben unverändert. Danach wird die alte Tabelle gelöscht
+ * (alles in einer Transaktion), beim nächsten Start gibt es nichts mehr zu tun.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class RenditenMigration implements CommandLineRunner {
+
+    private static final String ALTE_TABELLE = "kapitalanlage_monatsrendite";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaktion;
+    private final ApplicationEventPublisher events;
+
+    public RenditenMigration(JdbcTemplate jdbc, PlatformTransactionManager transactionManager, ApplicationEventPublisher events) {
+        this.jdbc = jdbc;
+        this.transaktion = new TransactionTemplate(transactionManager);
+        this.events = events;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!alteTabelleExistiert()) return;
+
+        List<Long> migriert = transaktion.execute(tx -> {
+            List<Long> ids = jdbc.queryForList(
+                    "select distinct kapitalanlage_id from " + ALTE_TABELLE, Long.class);
+
+            List<Long> out = new ArrayList<>();
+            for (Long id : ids) {
+                List<BigDecimal> renditen = new ArrayList<>();
+                jdbc.query("select monat_index, rendite from " + ALTE_TABELLE
+                                + " where kapitalanlage_id = ? order by monat_index",
+                        rs -> {
+                            int index = rs.getInt(1);
+                            while (renditen.size() < index) renditen.add(BigDecimal.ZERO);
+                            renditen.add(rs.getBigDecimal(2));
+                        }, id);
+
+                int n = jdbc.update("update kapitalanlage set renditen = ? where id = ? and renditen is null",
+                        RenditenKodierung.kodieren(renditen), id);
+                if (n > 0) out.add(id);
+            }
+
+            jdbc.execute("drop table " + ALTE_TABELLE);
+            return out;
+        });
+
+        log.info("Renditen von {} Kapitalanlagen in die gepackte Spalte migriert, Tabelle {} entfernt",
+                migriert.size(), ALTE_TABELLE);
+
+        // falls schon (leer) gecacht wurde
+        for (Long id : migriert) events.publishEvent(KatalogAenderung.kapitalanlage(id));
+    }
+
+    private boolean alteTabelleExistiert() {
+        Integer n = jdbc.queryForObject(
+                "select count(*) from information_schema.tables where lower(table_name) = ?",
+                Integer.class, ALTE_TABELLE);
+        return n != null && n > 0;
+    }
+}
@@ -45,7 +45,11 @@ public class SecurityConfig {
                         // User-APIs (frei)
                         .requestMatchers(HttpMethod.GET, "/api/kapitalanlagen").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/tarife/**").permitAll()
-                        .requestMatchers(HttpMethod.POST, "/api/berechnung").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/berechnung", "/api/berechnung/**").permitAll()
+
+                        // Actuator: Health/Prometheus für Monitoring frei, der Rest nur Admin
+                        .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         // Admin UI + Admin APIs (geschützt)
                         .requestMatchers("/admin.html").hasRole("ADMIN")
@@ -0,0 +1,99 @@
+package de.paf.tarifvergleich.config;
+
+import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.domain.KapitalanlageTyp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vorberechnete Start-Kapitalanlagen als Ressource (seed/kapitalanlagen.bin), damit der
+ * DataLoader beim Start nichts parsen oder rechnen muss.
+ *
+ * Aufbau (DataOutputStream): int magic "TVSD", byte version, int anzahl, je Kapitalanlage
+ * UTF name, UTF typ, UTF annualRate ("" = null), boolean aktiv, int laenge, byte[] renditen
+ * (schon gepackt, Format siehe RenditenKodierung – geht unverändert in die Spalte).
+ *
+ * Neu erzeugen nach Änderungen an DataLoader.startKapitalanlagen():
+ *   mvn -q compile exec:java -Dexec.mainClass=de.paf.tarifvergleich.config.SeedDaten
+ */
+public final class SeedDaten {
+
+    public static final String RESSOURCE = "seed/kapitalanlagen.bin";
+
+    private static final int MAGIC = 0x54565344; // "TVSD"
+    private static final byte VERSION = 1;
+
+    public record Eintrag(String name, KapitalanlageTyp typ, BigDecimal annualRate, boolean aktiv, byte[] renditen) {}
+
+    private SeedDaten() {
+    }
+
+    /**
+     * null, wenn die Ressource fehlt.
+     */
+    public static List<Eintrag> ausRessource() throws IOException {
+        try (InputStream in = SeedDaten.class.getClassLoader().getResourceAsStream(RESSOURCE)) {
+            return in == null ? null : lesen(in);
+        }
+    }
+
+    public static List<Eintrag> lesen(InputStream quelle) throws IOException {
+        DataInputStream in = new DataInputStream(quelle);
+        if (in.readInt() != MAGIC) throw new IOException("Keine Seed-Datei");
+        byte version = in.readByte();
+        if (version != VERSION) throw new IOException("Unbekannte Version der Seed-Datei: " + version);
+
+        int n = in.readInt();
+        List<Eintrag> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String name = in.readUTF();
+            KapitalanlageTyp typ = KapitalanlageTyp.valueOf(in.readUTF());
+            String rate = in.readUTF();
+            boolean aktiv = in.readBoolean();
+            byte[] renditen = new byte[in.readInt()];
+            in.readFully(renditen);
+            out.add(new Eintrag(name, typ, rate.isEmpty() ? null : new BigDecimal(rate), aktiv, renditen));
+        }
+        return out;
+    }
+
+    public static void schreiben(OutputStream ziel, List<Kapitalanlage> kapitalanlagen) throws IOException {
+        DataOutputStream out = new DataOutputStream(ziel);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(kapitalanlagen.size());
+        for (Kapitalanlage k : kapitalanlagen) {
+            byte[] renditen = k.getRenditenDaten();
+            out.writeUTF(k.getName());
+            out.writeUTF(k.getTyp().name());
+            out.writeUTF(k.getAnnualRate() == null ? "" : k.getAnnualRate().toPlainString());
+            out.writeBoolean(k.isAktiv());
+            out.writeInt(renditen.length);
+            out.write(renditen);
+        }
+        out.flush();
+    }
+
+    /**
+     * Schreibt die Ressource aus DataLoader.startKapitalanlagen() (Argument: Zielpfad,
+     * Standard src/main/resources/seed/kapitalanlagen.bin).
+     */
+    public static void main(String[] args) throws IOException {
+        Path ziel = Path.of(args.length > 0 ? args[0] : "src/main/resources/" + RESSOURCE);
+        Files.createDirectories(ziel.toAbsolutePath().getParent());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(ziel))) {
+            schreiben(out, DataLoader.startKapitalanlagen());
+        }
+        System.out.println(ziel + ": " + Files.size(ziel) + " Bytes");
+    }
+}
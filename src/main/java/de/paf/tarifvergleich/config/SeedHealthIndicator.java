@@ -0,0 +1,22 @@
+package de.paf.tarifvergleich.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health "seed": OUT_OF_SERVICE, solange der DataLoader im Hintergrund seedet.
+ * Teil der Readiness-Gruppe (/actuator/health/readiness), siehe application.properties.
+ */
+@Component
+@RequiredArgsConstructor
+public class SeedHealthIndicator implements HealthIndicator {
+
+    private final DataLoader dataLoader;
+
+    @Override
+    public Health health() {
+        return dataLoader.fertig() ? Health.up().build() : Health.outOfService().build();
+    }
+}
@@ -0,0 +1,26 @@
+package de.paf.tarifvergleich.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Start-Kapitalanlagen (Prefix "tarifvergleich.seed"), siehe DataLoader.
+ */
+@Data
+@ConfigurationProperties(prefix = "tarifvergleich.seed")
+public class SeedProperties {
+
+    public enum Modus {
+        /** gar nicht seeden (z.B. Tests mit eigenen Daten) */
+        AUS,
+        /** vor dem Start fertig (bisheriges Verhalten) */
+        BLOCKIEREND,
+        /** parallel zum Start; Readiness ("seed") erst danach UP */
+        HINTERGRUND
+    }
+
+    /**
+     * Seeden nur in eine leere Tabelle kapitalanlage.
+     */
+    private Modus modus = Modus.BLOCKIEREND;
+}
@@ -1,11 +1,30 @@
 package de.paf.tarifvergleich.controller;
 
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BatchErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.BatchRequestDto;
 import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
 import de.paf.tarifvergleich.controller.dto.BerechnungRequestDto;
+import de.paf.tarifvergleich.controller.dto.MonteCarloErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.MonteCarloRequestDto;
+import de.paf.tarifvergleich.controller.dto.SweepErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.SweepRequestDto;
 import de.paf.tarifvergleich.service.BerechnungsService;
+import de.paf.tarifvergleich.service.berechnung.BerechnungsMetriken;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
 
 @RestController
@@ -13,7 +32,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BerechnungController {
 
+    private static final byte[] ZEILENENDE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_ERGEBNIS = "event: ergebnis\ndata: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_ENDE = "event: ende\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_EVENTENDE = "\n\n".getBytes(StandardCharsets.UTF_8);
+
     private final BerechnungsService berechnungsService;
+    private final ObjectMapper objectMapper;
+    private final BerechnungsProperties properties;
+    private final BerechnungsMetriken metriken;
 
     @PostMapping
     public List<BerechnungErgebnisDto> berechne(@RequestBody BerechnungRequestDto req) {
@@ -24,7 +51,150 @@ public class BerechnungController {
                 req.kapitalanlageAId(),
                 req.kapitalanlageBId(),
                 req.garantieModus(),
-                req.tarifIds()
+                req.tarifIds(),
+                req.rechenModus()
+        );
+    }
+
+    /**
+     * Wie POST /api/berechnung, aber jedes Tarif-Ergebnis wird geschrieben und geflusht,
+     * sobald es fertig ist (Reihenfolge = Fertigstellung, nicht tarifIds).
+     * NDJSON: eine Zeile je Ergebnis.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody berechneNdjson(@RequestBody BerechnungRequestDto req) {
+        return out -> streame(req, out, false);
+    }
+
+    /**
+     * Server-Sent Events: je Ergebnis ein Event "ergebnis", zum Schluss ein Event "ende".
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public StreamingResponseBody berechneSse(@RequestBody BerechnungRequestDto req) {
+        return out -> {
+            streame(req, out, true);
+            out.write(SSE_ENDE);
+            out.flush();
+        };
+    }
+
+    private void streame(BerechnungRequestDto req, OutputStream out, boolean sse) throws IOException {
+        try {
+            berechnungsService.berechneStreaming(
+                    req.beitragMonat(),
+                    req.laufzeitJahre(),
+                    req.einstiegsalter(),
+                    req.kapitalanlageAId(),
+                    req.kapitalanlageBId(),
+                    req.garantieModus(),
+                    req.tarifIds(),
+                    req.rechenModus(),
+                    dto -> schreibe(out, dto, sse)
+            );
+        } catch (UncheckedIOException e) {
+            // Client weg => laufende Tarife sind bereits abgebrochen
+            throw e.getCause();
+        }
+    }
+
+    private void schreibe(OutputStream out, BerechnungErgebnisDto dto, boolean sse) {
+        try {
+            long start = System.nanoTime();
+            byte[] json = objectMapper.writeValueAsBytes(dto);
+            metriken.phase(BerechnungsMetriken.PHASE_SERIALISIERUNG, System.nanoTime() - start);
+
+            if (sse) {
+                out.write(SSE_ERGEBNIS);
+                out.write(json);
+                out.write(SSE_EVENTENDE);
+            } else {
+                out.write(json);
+                out.write(ZEILENENDE);
+            }
+            out.flush();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Ergebnis nicht serialisierbar", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Szenario-Matrix in einem Aufruf (Tarife x Zellen x Kapitalanlagen x GarantieModi),
+     * gleiche Rechnungen werden nur einmal ausgeführt.
+     */
+    @PostMapping("/batch")
+    public BatchErgebnisDto batch(@RequestBody BatchRequestDto req) {
+        long szenarien = (long) groesse(req.tarifIds()) * groesse(req.zellen()) * groesse(req.kapitalanlagen())
+                * Math.max(1, groesse(req.garantieModi()));
+        if (szenarien > properties.getBatchMaxSzenarien()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Zu viele Szenarien: " + szenarien + " (max. " + properties.getBatchMaxSzenarien() + ")");
+        }
+
+        return berechnungsService.berechneBatch(
+                req.tarifIds(),
+                req.zellen(),
+                req.kapitalanlagen(),
+                req.garantieModi(),
+                req.einstiegsalter(),
+                req.rechenModus(),
+                Boolean.TRUE.equals(req.mitWertentwicklung())
+        );
+    }
+
+    /**
+     * Parameter-Sweep eines Tarifs: Endwert-Matrix über Beitrag x Laufzeit (z.B. Heatmap).
+     */
+    @PostMapping("/sweep")
+    public SweepErgebnisDto sweep(@RequestBody SweepRequestDto req) {
+        long punkte = (long) groesse(req.beitragMonatWerte()) * groesse(req.laufzeitJahreWerte());
+        if (punkte > properties.getBatchMaxSzenarien()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Zu viele Punkte: " + punkte + " (max. " + properties.getBatchMaxSzenarien() + ")");
+        }
+
+        return berechnungsService.sweep(
+                req.tarifId(),
+                req.beitragMonatWerte(),
+                req.laufzeitJahreWerte(),
+                req.einstiegsalter(),
+                req.kapitalanlageAId(),
+                req.kapitalanlageBId(),
+                req.garantieModus(),
+                req.rechenModus(),
+                Boolean.TRUE.equals(req.mitWertentwicklung())
+        );
+    }
+
+    private static int groesse(List<?> l) {
+        return l == null ? 0 : l.size();
+    }
+
+    /**
+     * Monte Carlo: P5/P50/P95 je Jahr + Wahrscheinlichkeit, das Garantieziel zu verfehlen.
+     */
+    @PostMapping("/monte-carlo")
+    public List<MonteCarloErgebnisDto> monteCarlo(@RequestBody MonteCarloRequestDto req) {
+        // Speicher: Tarife x Pfade x Jahre float-Werte
+        int tarife = req.tarifIds() == null ? 0 : new HashSet<>(req.tarifIds()).size();
+        int jahre = req.laufzeitJahre() == null ? 0 : Math.max(0, req.laufzeitJahre());
+        long wertpunkte = (long) tarife * berechnungsService.monteCarloPfade(req.anzahlPfade()) * jahre;
+        if (wertpunkte > properties.getMonteCarloMaxWertpunkte()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Zu viele Wertpunkte: " + wertpunkte + " (max. " + properties.getMonteCarloMaxWertpunkte() + ")");
+        }
+
+        return berechnungsService.monteCarlo(
+                req.beitragMonat(),
+                req.laufzeitJahre(),
+                req.einstiegsalter(),
+                req.kapitalanlageBId(),
+                req.garantieModus(),
+                req.tarifIds(),
+                req.anzahlPfade(),
+                req.seed(),
+                req.renditeErwartung()
         );
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,7 @@
 package de.paf.tarifvergleich.controller;
 
 import de.paf.tarifvergleich.controller.dto.KapitalanlageKurzDto;
-import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.repository.KapitalanlageKopf;
 import de.paf.tarifvergleich.repository.KapitalanlageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,18 +21,19 @@ public class KapitalanlageController {
     @GetMapping
     public List<KapitalanlageKurzDto> alleAktivenKurz() {
         try {
-            List<Kapitalanlage> list = kapitalanlageRepository.findAll();
+            // ohne Renditen, siehe KapitalanlageKopf
+            List<KapitalanlageKopf> list = kapitalanlageRepository.findAlleKoepfe();
 
             return list.stream()
-                    .filter(k -> k != null && k.isAktiv())
+                    .filter(KapitalanlageKopf::aktiv)
                     .sorted(Comparator.comparing(
-                            k -> k.getName() == null ? "" : k.getName(),
+                            k -> k.name() == null ? "" : k.name(),
                             String.CASE_INSENSITIVE_ORDER
                     ))
                     .map(k -> new KapitalanlageKurzDto(
-                            k.getId(),
-                            k.getName(),
-                            k.getTyp() != null ? k.getTyp().name() : ""
+                            k.id(),
+                            k.name(),
+                            k.typ() != null ? k.typ().name() : ""
                     ))
                     .toList();
 
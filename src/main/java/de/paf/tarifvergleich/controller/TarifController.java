@@ -2,12 +2,13 @@ package de.paf.tarifvergleich.controller;
 
 import de.paf.tarifvergleich.controller.dto.TarifKurzDto;
 import de.paf.tarifvergleich.domain.Tarif;
-import de.paf.tarifvergleich.repository.KostenstrukturRepository;
-import de.paf.tarifvergleich.repository.TarifRepository;
+import de.paf.tarifvergleich.service.KatalogSnapshot;
+import de.paf.tarifvergleich.service.TarifKatalog;
+import de.paf.tarifvergleich.service.VerfuegbarkeitsIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -15,11 +16,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TarifController {
 
-    private final TarifRepository tarifRepository;
-    private final KostenstrukturRepository kostenstrukturRepository;
+    private final TarifKatalog tarifKatalog;
 
     /**
-     * UI ruft: /api/tarife?beitragMonat=50&laufzeit=30
+     * UI ruft: /api/tarife?beitragMonat=50&laufzeit=30[&einstiegsalter=35]
      *
      * Regeln:
      * - Inaktive Tarife: NICHT anzeigen
@@ -27,42 +27,33 @@ public class TarifController {
      *   - wenn für (beitragMonat,laufzeit) eine aktive Kostenstruktur existiert -> auswählbar=true
      *   - sonst -> auswählbar=false + Hinweis "keine Daten vorhanden"
      * - Mindestbeitrag: wenn beitragMonat < tarif.mindestbeitragMonat -> auswählbar=false + Hinweis
+     * - nur mit einstiegsalter: einstiegsalter < tarif.minStartalter oder
+     *   einstiegsalter + laufzeit > tarif.maxEndalter -> auswählbar=false + Hinweis
+     *
+     * Antwortet aus dem VerfuegbarkeitsIndex des Katalog-Snapshots (keine DB-Abfrage).
      */
     @GetMapping
     public List<TarifKurzDto> listTarifeMitVerfuegbarkeit(
             @RequestParam Integer beitragMonat,
-            @RequestParam Integer laufzeit
+            @RequestParam Integer laufzeit,
+            @RequestParam(required = false) Integer einstiegsalter
     ) {
-        var aktiveTarife = tarifRepository.findByAktivTrueOrderByTarifNameAsc();
-
-        return aktiveTarife.stream()
-                .map(t -> toKurzDto(t, beitragMonat, laufzeit))
-                .toList();
-    }
-
-    private TarifKurzDto toKurzDto(Tarif t, Integer beitragMonat, Integer laufzeit) {
-        boolean mindestOk = t.getMindestbeitragMonat() == null
-                || BigDecimal.valueOf(beitragMonat).compareTo(t.getMindestbeitragMonat()) >= 0;
-
-        boolean hatKostenstruktur = kostenstrukturRepository
-                .existsByTarif_IdAndBeitragMonatAndLaufzeitJahreAndAktivTrue(t.getId(), beitragMonat, laufzeit);
-
-        boolean auswählbar = mindestOk && hatKostenstruktur;
-
-        String hinweis = null;
-        if (!mindestOk) {
-            hinweis = "Mindestbeitrag nicht erreicht";
-        } else if (!hatKostenstruktur) {
-            hinweis = "keine Daten vorhanden";
+        KatalogSnapshot katalog = tarifKatalog.aktuell();
+        VerfuegbarkeitsIndex.Auswahl auswahl = katalog.verfuegbarkeit().auswahl(beitragMonat, laufzeit, einstiegsalter);
+
+        List<Tarif> tarife = katalog.aktiveTarife();
+        List<TarifKurzDto> out = new ArrayList<>(tarife.size());
+        for (int i = 0; i < tarife.size(); i++) {
+            Tarif t = tarife.get(i);
+            out.add(new TarifKurzDto(
+                    t.getId(),
+                    t.getTarifName(),
+                    t.getTarifCode(),
+                    t.getAnbieter() != null ? t.getAnbieter().getName() : "",
+                    auswahl.verfuegbar(i),
+                    auswahl.hinweis(i)
+            ));
         }
-
-        return new TarifKurzDto(
-                t.getId(),
-                t.getTarifName(),
-                t.getTarifCode(),
-                t.getAnbieter() != null ? t.getAnbieter().getName() : "",
-                auswählbar,
-                hinweis
-        );
+        return out;
     }
-}
\ No newline at end of file
+}
@@ -3,11 +3,26 @@ package de.paf.tarifvergleich.controller.admin;
 import de.paf.tarifvergleich.controller.admin.dto.*;
 import de.paf.tarifvergleich.domain.*;
 import de.paf.tarifvergleich.repository.*;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import de.paf.tarifvergleich.service.TarifKatalog;
+import de.paf.tarifvergleich.service.berechnung.ErgebnisCache;
+import de.paf.tarifvergleich.service.berechnung.ErgebnisSpeicher;
+import de.paf.tarifvergleich.service.berechnung.KostenplanCache;
+import de.paf.tarifvergleich.service.berechnung.RenditeReihen;
+import de.paf.tarifvergleich.service.berechnung.SerienSpeicher;
+import de.paf.tarifvergleich.service.berechnung.TarifSkripte;
+import de.paf.tarifvergleich.service.kapitalanlage.RenditenImport;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -23,6 +38,18 @@ public class AdminController {
 
     private final KapitalanlageRepository kapitalanlageRepository;
 
+    // Caches (Kostenpläne, Topf-B-Index, ...) hören auf KatalogAenderung und verwerfen nach dem Commit
+    private final ApplicationEventPublisher events;
+
+    private final TarifKatalog tarifKatalog;
+    private final ErgebnisCache ergebnisCache;
+    private final KostenplanCache kostenplanCache;
+    private final RenditeReihen renditeReihen;
+    private final ErgebnisSpeicher ergebnisSpeicher;
+    private final SerienSpeicher serienSpeicher;
+    private final RenditenImport renditenImport;
+    private final TarifSkripte tarifSkripte;
+
     // =========================
     // TARIFE
     // =========================
@@ -42,7 +69,9 @@ public class AdminController {
     public AdminTarifDto createTarif(@RequestBody AdminTarifDto dto) {
         Tarif t = new Tarif();
         apply(dto, t);
-        return toDto(tarifRepository.save(t));
+        Tarif saved = tarifRepository.save(t);
+        events.publishEvent(KatalogAenderung.tarif(saved.getId()));
+        return toDto(saved);
     }
 
     @PutMapping("/tarife/{id}")
@@ -50,12 +79,14 @@ public class AdminController {
     public AdminTarifDto updateTarif(@PathVariable Long id, @RequestBody AdminTarifDto dto) {
         Tarif t = tarifRepository.findById(id).orElseThrow();
         apply(dto, t);
+        events.publishEvent(KatalogAenderung.tarif(t.getId()));
         return toDto(t);
     }
 
     @DeleteMapping("/tarife/{id}")
     public void deleteTarif(@PathVariable Long id) {
         tarifRepository.deleteById(id);
+        events.publishEvent(KatalogAenderung.tarif(id));
     }
 
     // =========================
@@ -88,7 +119,9 @@ public class AdminController {
                 .sonstigeKosten(dto.sonstigeKosten())
                 .build();
 
-        return toDto(kostenstrukturRepository.save(k));
+        Kostenstruktur saved = kostenstrukturRepository.save(k);
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarif.getId(), saved.getId()));
+        return toDto(saved);
     }
 
     @PutMapping("/kostenstrukturen/{id}")
@@ -106,12 +139,15 @@ public class AdminController {
         k.setRisikokosten(dto.risikokosten());
         k.setSonstigeKosten(dto.sonstigeKosten());
 
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarifId(k), k.getId()));
         return toDto(k);
     }
 
     @DeleteMapping("/kostenstrukturen/{id}")
     public void deleteKostenstruktur(@PathVariable Long id) {
+        Long tarifId = kostenstrukturRepository.findById(id).map(this::tarifId).orElse(null);
         kostenstrukturRepository.deleteById(id);
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarifId, id));
     }
 
     // =========================
@@ -140,7 +176,9 @@ public class AdminController {
                 .wert(dto.wert())
                 .build();
 
-        return toDto(kostenpunktRepository.save(kp));
+        Kostenpunkt saved = kostenpunktRepository.save(kp);
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarifId(ks), ks.getId()));
+        return toDto(saved);
     }
 
     @PutMapping("/kostenpunkte/{id}")
@@ -155,12 +193,16 @@ public class AdminController {
         kp.setBasis(dto.basis());
         kp.setWert(dto.wert());
 
+        Kostenstruktur ks = kp.getKostenstruktur();
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarifId(ks), ks != null ? ks.getId() : null));
         return toDto(kp);
     }
 
     @DeleteMapping("/kostenpunkte/{id}")
     public void deleteKostenpunkt(@PathVariable Long id) {
+        Kostenstruktur ks = kostenpunktRepository.findById(id).map(Kostenpunkt::getKostenstruktur).orElse(null);
         kostenpunktRepository.deleteById(id);
+        events.publishEvent(KatalogAenderung.kostenstruktur(tarifId(ks), ks != null ? ks.getId() : null));
     }
 
     // =========================
@@ -169,24 +211,92 @@ public class AdminController {
 
     @GetMapping("/kapitalanlagen")
     public List<AdminKapitalanlageDto> listKapitalanlagen() {
-        return kapitalanlageRepository.findAll().stream().map(this::toDto).toList();
+        return kapitalanlageRepository.findAlleKoepfe().stream().map(this::toDto).toList();
     }
 
+    // ohne die Entity: die Renditen würden sonst geladen und beim Commit mitgeschrieben
     @PutMapping("/kapitalanlagen/{id}")
     @Transactional
     public AdminKapitalanlageDto updateKapitalanlage(@PathVariable Long id, @RequestBody AdminKapitalanlageDto dto) {
-        Kapitalanlage k = kapitalanlageRepository.findById(id).orElseThrow();
-        k.setName(dto.name());
-        k.setTyp(dto.typ());
-        k.setAnnualRate(dto.annualRate());
-        k.setAktiv(dto.aktiv());
-        return toDto(k);
+        if (kapitalanlageRepository.aktualisieren(id, dto.name(), dto.typ(), dto.annualRate(), dto.aktiv()) == 0) {
+            throw new NoSuchElementException("Kapitalanlage " + id);
+        }
+        events.publishEvent(KatalogAenderung.kapitalanlage(id));
+        return toDto(kapitalanlageRepository.findKopf(id).orElseThrow());
+    }
+
+    /**
+     * CSV mit Renditereihen (eine Spalte je Fonds, Format siehe RenditenCsvLeser) als Body,
+     * z.B. curl --data-binary @renditen.csv -H 'Content-Type: text/csv'.
+     */
+    @PostMapping(value = "/kapitalanlagen/import", consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public AdminImportErgebnisDto importKapitalanlagen(InputStream body) {
+        RenditenImport.Ergebnis e;
+        try {
+            e = renditenImport.importieren(Channels.newChannel(body));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        return new AdminImportErgebnisDto(e.neu(), e.aktualisiert(), e.zeilen(), e.werte(), e.maxMonate(), e.taeglich(), e.dauerMs());
+    }
+
+    // =========================
+    // CACHES
+    // =========================
+
+    @GetMapping("/caches")
+    public AdminCacheStatusDto cacheStatus() {
+        ErgebnisCache.Statistik e = ergebnisCache.statistik();
+        ErgebnisSpeicher.Statistik sp = ergebnisSpeicher.statistik();
+        return new AdminCacheStatusDto(
+                tarifKatalog.aktuell().stand(),
+                e.treffer(),
+                e.fehlgriffe(),
+                e.eintraege(),
+                e.verdraengt(),
+                kostenplanCache.anzahlPlaene(),
+                renditeReihen.anzahlReihen(),
+                renditeReihen.speicherBytes(),
+                sp.eintraege(),
+                sp.veraltet(),
+                sp.treffer(),
+                sp.verdraengt()
+        );
+    }
+
+    // =========================
+    // SERIEN-DATEI
+    // =========================
+
+    @GetMapping("/serien")
+    public AdminSerienStatusDto serienStatus() {
+        return toDto(serienSpeicher.status());
+    }
+
+    /**
+     * Nach dem Austausch der Datei (z.B. durch einen Import) neu einblenden.
+     */
+    @PostMapping("/serien/neu-laden")
+    public AdminSerienStatusDto serienNeuLaden() {
+        return toDto(serienSpeicher.neuLaden());
+    }
+
+    /**
+     * Renditen aller Kapitalanlagen aus der Datenbank in die Datei schreiben und einblenden.
+     */
+    @PostMapping("/serien/export")
+    public AdminSerienStatusDto serienExport() {
+        return toDto(serienSpeicher.exportieren());
     }
 
     // =========================
     // MAPPER
     // =========================
 
+    private AdminSerienStatusDto toDto(SerienSpeicher.Status s) {
+        return new AdminSerienStatusDto(s.datei(), s.reihen(), s.bytes(), s.generation());
+    }
+
     private AdminTarifDto toDto(Tarif t) {
         List<Long> fondsIds = (t.getFondsListe() == null) ? List.of() : t.getFondsListe().stream().map(Fonds::getId).toList();
         List<String> fondsNames = (t.getFondsListe() == null) ? List.of() : t.getFondsListe().stream().map(Fonds::getName).toList();
@@ -205,6 +315,7 @@ public class AdminController {
                 t.getMinStartalter(),
                 t.getMaxEndalter(),
                 t.getMindestbeitragMonat(),
+                t.getBerechnungsScript(),
                 t.getAnbieter() != null ? t.getAnbieter().getId() : null,
                 t.getAnbieter() != null ? t.getAnbieter().getName() : null,
                 fondsIds,
@@ -228,6 +339,13 @@ public class AdminController {
         t.setMaxEndalter(dto.maxEndalter());
         t.setMindestbeitragMonat(dto.mindestbeitragMonat());
 
+        String skriptFehler = tarifSkripte.pruefen(dto.berechnungsScript());
+        if (skriptFehler != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Berechnungs-Skript: " + skriptFehler);
+        }
+        boolean skript = dto.berechnungsScript() != null && !dto.berechnungsScript().isBlank();
+        t.setBerechnungsScript(skript ? dto.berechnungsScript() : null);
+
         if (dto.anbieterId() != null) {
             Finanzdienstleistungsunternehmen a = unternehmenRepository.findById(dto.anbieterId()).orElseThrow();
             t.setAnbieter(a);
@@ -272,16 +390,20 @@ public class AdminController {
         );
     }
 
-    private AdminKapitalanlageDto toDto(Kapitalanlage k) {
+    private AdminKapitalanlageDto toDto(KapitalanlageKopf k) {
         return new AdminKapitalanlageDto(
-                k.getId(),
-                k.getName(),
-                k.getTyp(),
-                k.getAnnualRate(),
-                k.isAktiv()
+                k.id(),
+                k.name(),
+                k.typ(),
+                k.annualRate(),
+                k.aktiv()
         );
     }
 
+    private Long tarifId(Kostenstruktur k) {
+        return k != null && k.getTarif() != null ? k.getTarif().getId() : null;
+    }
+
     private static java.math.BigDecimal nz(java.math.BigDecimal v) {
         return v == null ? java.math.BigDecimal.ZERO : v;
     }
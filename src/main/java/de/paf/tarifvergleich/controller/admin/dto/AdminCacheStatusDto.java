@@ -0,0 +1,16 @@
+package de.paf.tarifvergleich.controller.admin.dto;
+
+public record AdminCacheStatusDto(
+        long katalogStand,
+        long ergebnisTreffer,
+        long ergebnisFehlgriffe,
+        long ergebnisEintraege,
+        long ergebnisVerdraengt,
+        int kostenplaene,
+        int renditeReihen,
+        long renditeReihenBytes,
+        long speicherEintraege,
+        int speicherVeraltet,
+        long speicherTreffer,
+        long speicherVerdraengt
+) {}
@@ -0,0 +1,11 @@
+package de.paf.tarifvergleich.controller.admin.dto;
+
+public record AdminImportErgebnisDto(
+        int neu,
+        int aktualisiert,
+        long zeilen,
+        long werte,
+        int maxMonate,
+        boolean taeglich,
+        long dauerMs
+) {}
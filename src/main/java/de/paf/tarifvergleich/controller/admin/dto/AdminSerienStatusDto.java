@@ -0,0 +1,8 @@
+package de.paf.tarifvergleich.controller.admin.dto;
+
+public record AdminSerienStatusDto(
+        String datei,
+        int reihen,
+        long bytes,
+        long generation
+) {}
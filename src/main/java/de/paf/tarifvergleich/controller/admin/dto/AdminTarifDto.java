@@ -24,6 +24,9 @@ public record AdminTarifDto(
         Integer maxEndalter,
         BigDecimal mindestbeitragMonat,
 
+        // JavaScript mit Monatsregeln, siehe TarifSkripte (null/leer = keins)
+        String berechnungsScript,
+
         Long anbieterId,
         String anbieterName,
 
@@ -0,0 +1,9 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import java.util.List;
+
+public record BatchErgebnisDto(
+        int anzahlSzenarien,        // Zeilen (ohne Tarife, die es in der Zelle nicht gibt)
+        int anzahlBerechnungen,     // davon tatsächlich unterschiedliche Rechnungen
+        List<BatchZeileDto> ergebnisse
+) {}
@@ -0,0 +1,27 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import de.paf.tarifvergleich.domain.GarantieModus;
+import de.paf.tarifvergleich.domain.RechenModus;
+
+import java.util.List;
+
+/**
+ * Szenario-Matrix: gerechnet wird das Kreuzprodukt
+ * tarifIds x zellen x kapitalanlagen x garantieModi.
+ */
+public record BatchRequestDto(
+        List<Long> tarifIds,
+        List<GridZelleDto> zellen,
+        List<KapitalanlagePaarDto> kapitalanlagen,
+
+        // leer/null = ein Durchlauf ohne GarantieModus (wie bei /api/berechnung)
+        List<GarantieModus> garantieModi,
+
+        Integer einstiegsalter,
+
+        // Optional: REFERENZ (BigDecimal) oder SCHNELL (double); null = Konfiguration
+        RechenModus rechenModus,
+
+        // Jahreswerte mitliefern? null/false = nur Endwert (kompakt)
+        Boolean mitWertentwicklung
+) {}
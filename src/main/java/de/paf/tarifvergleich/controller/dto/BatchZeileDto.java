@@ -0,0 +1,19 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import de.paf.tarifvergleich.domain.GarantieModus;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record BatchZeileDto(
+        Long tarifId,
+        Integer beitragMonat,
+        Integer laufzeitJahre,
+        Long kapitalanlageAId,
+        Long kapitalanlageBId,
+        GarantieModus garantieModus,
+
+        BigDecimal endwert,
+        List<WertpunktDto> wertentwicklung, // null, wenn nicht angefordert
+        String fehler
+) {}
@@ -10,5 +10,7 @@ public record BerechnungErgebnisDto(
         String anbieterName,
 
         BigDecimal endwert,                 // = Endkapital am Laufzeitende
-        List<WertpunktDto> wertentwicklung  // Jahreswerte inkl. Töpfe
+        List<WertpunktDto> wertentwicklung, // Jahreswerte inkl. Töpfe
+
+        String fehler                       // null = ok, sonst Grund warum der Tarif nicht gerechnet wurde
 ) {}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package de.paf.tarifvergleich.controller.dto;
 
 import de.paf.tarifvergleich.domain.GarantieModus;
+import de.paf.tarifvergleich.domain.RechenModus;
 
 import java.util.List;
 
@@ -17,5 +18,8 @@ public record BerechnungRequestDto(
         GarantieModus garantieModus,
 
         // Welche Tarife sollen gerechnet werden?
-        List<Long> tarifIds
+        List<Long> tarifIds,
+
+        // Optional: REFERENZ (BigDecimal) oder SCHNELL (double); null = Konfiguration
+        RechenModus rechenModus
 ) {}
\ No newline at end of file
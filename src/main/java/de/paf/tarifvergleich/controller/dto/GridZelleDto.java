@@ -0,0 +1,6 @@
+package de.paf.tarifvergleich.controller.dto;
+
+public record GridZelleDto(
+        Integer beitragMonat,
+        Integer laufzeitJahre
+) {}
@@ -0,0 +1,6 @@
+package de.paf.tarifvergleich.controller.dto;
+
+public record KapitalanlagePaarDto(
+        Long kapitalanlageAId,
+        Long kapitalanlageBId   // optional, nur für 3-Topf-Hybride relevant
+) {}
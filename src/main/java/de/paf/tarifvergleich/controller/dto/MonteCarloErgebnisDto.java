@@ -0,0 +1,19 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record MonteCarloErgebnisDto(
+        Long tarifId,
+        String tarifName,
+        String tarifCode,
+        String anbieterName,
+
+        int anzahlPfade,
+        List<PerzentilbandDto> baender,       // je Jahr P5/P50/P95 von gesamtKapital
+
+        // Anteil der Pfade mit Endwert < Garantieziel (Hybride: garantieNiveau * Beiträge, FONDS: Beiträge)
+        BigDecimal wahrscheinlichkeitGarantieVerfehlt,
+
+        String fehler                         // null = ok
+) {}
@@ -0,0 +1,22 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import de.paf.tarifvergleich.domain.GarantieModus;
+
+import java.util.List;
+
+public record MonteCarloRequestDto(
+        Integer beitragMonat,
+        Integer laufzeitJahre,
+        Integer einstiegsalter,
+
+        // Kapitalanlage A wird durch die generierten Pfade ersetzt, B (3-Topf) bleibt die gewählte Reihe
+        Long kapitalanlageBId,
+
+        GarantieModus garantieModus,
+        List<Long> tarifIds,
+
+        // Optional: Anzahl Pfade (null = Konfiguration), Seed (null = 42), erwartete Rendite p.a. (null = 0.07)
+        Integer anzahlPfade,
+        Long seed,
+        Double renditeErwartung
+) {}
@@ -0,0 +1,14 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Verteilung von gesamtKapital über alle Pfade am Ende eines Jahres.
+ */
+public record PerzentilbandDto(
+        int jahr,
+        BigDecimal summeEinzahlungen,
+        BigDecimal p5,
+        BigDecimal p50,
+        BigDecimal p95
+) {}
@@ -0,0 +1,23 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Matrizen sind [beitragMonat-Index][laufzeitJahre-Index]; null = keine aktive
+ * Kostenstruktur für den Punkt oder Berechnung fehlgeschlagen (siehe fehler).
+ */
+public record SweepErgebnisDto(
+        Long tarifId,
+        String tarifName,
+        String tarifCode,
+        String anbieterName,
+
+        List<Integer> beitragMonat,
+        List<Integer> laufzeitJahre,
+
+        List<List<BigDecimal>> endwert,
+        List<List<List<WertpunktDto>>> wertentwicklung, // null, wenn nicht angefordert
+
+        List<String> fehler                              // "beitrag/laufzeit: Grund", leer = alles ok
+) {}
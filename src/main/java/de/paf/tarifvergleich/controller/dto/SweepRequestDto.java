@@ -0,0 +1,28 @@
+package de.paf.tarifvergleich.controller.dto;
+
+import de.paf.tarifvergleich.domain.GarantieModus;
+import de.paf.tarifvergleich.domain.RechenModus;
+
+import java.util.List;
+
+/**
+ * Parameter-Sweep für einen Tarif: gerechnet wird beitragMonatWerte x laufzeitJahreWerte.
+ */
+public record SweepRequestDto(
+        Long tarifId,
+
+        // Achsen (Reihenfolge bleibt in der Ergebnis-Matrix erhalten)
+        List<Integer> beitragMonatWerte,
+        List<Integer> laufzeitJahreWerte,
+
+        Integer einstiegsalter,
+        Long kapitalanlageAId,
+        Long kapitalanlageBId,
+        GarantieModus garantieModus,
+
+        // Optional: REFERENZ (BigDecimal) oder SCHNELL (double); null = Konfiguration
+        RechenModus rechenModus,
+
+        // Jahreswerte je Punkt mitliefern? null/false = nur Endwerte
+        Boolean mitWertentwicklung
+) {}
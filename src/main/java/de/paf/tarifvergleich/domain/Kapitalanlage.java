@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Entity
@@ -33,20 +33,57 @@ public class Kapitalanlage {
     private BigDecimal annualRate;
 
     /**
-     * Monatsrenditen als Dezimalwerte (z.B. 0.0025 = +0.25%).
-     * Reihenfolge ist wichtig.
+     * Monatsrenditen als Dezimalwerte (z.B. 0.0025 = +0.25%), gepackt in einer Spalte
+     * (Format siehe RenditenKodierung). Reihenfolge ist wichtig.
      */
-    @ElementCollection
-    @CollectionTable(
-            name = "kapitalanlage_monatsrendite",
-            joinColumns = @JoinColumn(name = "kapitalanlage_id")
-    )
-    @OrderColumn(name = "monat_index")
-    @Column(name = "rendite", nullable = false, precision = 20, scale = 10)
-    @Builder.Default
-    private List<BigDecimal> monatlicheRenditen = new ArrayList<>();
+    @Column(name = "renditen", length = 64 * 1024 * 1024)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private byte[] renditenDaten;
+
+    /**
+     * Dekodierte Sicht auf renditenDaten, erst beim ersten Zugriff gebaut.
+     * Änderungen nur über setMonatlicheRenditen (die Liste selbst ist unveränderlich).
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private List<BigDecimal> monatlicheRenditen;
 
     @Column(nullable = false)
     @Builder.Default
     private boolean aktiv = true;
-}
\ No newline at end of file
+
+    public List<BigDecimal> getMonatlicheRenditen() {
+        if (monatlicheRenditen == null) {
+            monatlicheRenditen = Collections.unmodifiableList(
+                    RenditenKodierung.alsListe(RenditenKodierung.dekodieren(renditenDaten)));
+        }
+        return monatlicheRenditen;
+    }
+
+    public void setMonatlicheRenditen(List<BigDecimal> renditen) {
+        this.renditenDaten = RenditenKodierung.kodieren(renditen);
+        this.monatlicheRenditen = null;
+    }
+
+    /**
+     * Gepackte Renditen (z.B. für Renditereihe, ohne Umweg über BigDecimal).
+     */
+    public byte[] getRenditenDaten() {
+        renditenPacken();
+        return renditenDaten;
+    }
+
+    /**
+     * Builder/All-Args setzen nur die Liste – vor dem Speichern packen.
+     */
+    @PrePersist
+    @PreUpdate
+    void renditenPacken() {
+        if (renditenDaten == null && monatlicheRenditen != null) setMonatlicheRenditen(monatlicheRenditen);
+    }
+}
@@ -0,0 +1,9 @@
+package de.paf.tarifvergleich.domain;
+
+/**
+ * Welcher Rechenkern die Simulation ausführt.
+ */
+public enum RechenModus {
+    REFERENZ, // BigDecimal (MathContext 20) – Maßstab
+    SCHNELL   // primitive doubles, ohne Allokationen in der Monatsschleife
+}
@@ -0,0 +1,163 @@
+package de.paf.tarifvergleich.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binärformat der Monatsrenditen einer Kapitalanlage (Spalte kapitalanlage.renditen).
+ *
+ * Version 1:
+ *   byte     version (= 1)
+ *   byte     skala (Nachkommastellen, = 10 wie die frühere Spalte numeric(20,10))
+ *   varint   anzahl
+ *   varint[] zigzag(u_i - u_(i-1)), u = unskalierter Wert (rendite * 10^skala), u_0 = 0
+ *
+ * Konstante Reihen (FIXED) brauchen damit ~1 Byte je Monat, echte Fondsreihen 3–5 Byte.
+ * Dekodiert wird direkt in long[] (ohne BigDecimal-Zwischenschritt).
+ */
+public final class RenditenKodierung {
+
+    public static final byte VERSION = 1;
+    public static final int SKALA = 10;
+
+    private static final long[] ZEHNERPOTENZ = new long[19];
+
+    static {
+        ZEHNERPOTENZ[0] = 1L;
+        for (int i = 1; i < ZEHNERPOTENZ.length; i++) ZEHNERPOTENZ[i] = ZEHNERPOTENZ[i - 1] * 10L;
+    }
+
+    /**
+     * Dekodierte Reihe: rendite_m = unskaliert[m] / 10^skala (0-based).
+     */
+    public record Werte(int skala, long[] unskaliert) {
+
+        public int laenge() {
+            return unskaliert.length;
+        }
+
+        public BigDecimal rendite(int i) {
+            return BigDecimal.valueOf(unskaliert[i], skala);
+        }
+
+        /**
+         * Gleich BigDecimal.doubleValue, solange Zähler und 10^skala als double exakt sind (skala 10: ja).
+         */
+        public double renditeDouble(int i) {
+            return unskaliert[i] / (double) ZEHNERPOTENZ[skala];
+        }
+    }
+
+    private RenditenKodierung() {
+    }
+
+    /**
+     * Rundet auf SKALA Nachkommastellen (HALF_UP, wie bisher die Datenbank). null zählt als 0.
+     */
+    public static byte[] kodieren(List<BigDecimal> renditen) {
+        int n = renditen == null ? 0 : renditen.size();
+        long[] u = new long[n];
+        for (int i = 0; i < n; i++) {
+            BigDecimal r = renditen.get(i);
+            u[i] = r == null ? 0L : r.setScale(SKALA, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        return kodieren(u);
+    }
+
+    /**
+     * Bereits unskalierte Werte (rendite * 10^SKALA), z.B. aus dem CSV-Import.
+     */
+    public static byte[] kodieren(long[] unskaliert) {
+        int n = unskaliert.length;
+        Puffer out = new Puffer(3 + n * 4);
+
+        out.schreibeByte(VERSION);
+        out.schreibeByte(SKALA);
+        out.schreibeVarint(n);
+
+        long vorher = 0L;
+        for (long u : unskaliert) {
+            out.schreibeVarint(zigzag(u - vorher));
+            vorher = u;
+        }
+        return out.bytes();
+    }
+
+    public static Werte dekodieren(byte[] daten) {
+        if (daten == null || daten.length == 0) return new Werte(SKALA, new long[0]);
+
+        int[] pos = {0};
+        int version = daten[pos[0]++];
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unbekannte Version der Renditen-Kodierung: " + version);
+        }
+        int skala = daten[pos[0]++];
+        int n = (int) leseVarint(daten, pos);
+
+        long[] u = new long[n];
+        long vorher = 0L;
+        for (int i = 0; i < n; i++) {
+            vorher += unzigzag(leseVarint(daten, pos));
+            u[i] = vorher;
+        }
+        return new Werte(skala, u);
+    }
+
+    public static List<BigDecimal> alsListe(Werte w) {
+        List<BigDecimal> out = new ArrayList<>(w.laenge());
+        for (int i = 0; i < w.laenge(); i++) out.add(w.rendite(i));
+        return out;
+    }
+
+    // =========================================================
+    // Varint / ZigZag
+    // =========================================================
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long leseVarint(byte[] daten, int[] pos) {
+        long v = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= daten.length) throw new IllegalArgumentException("Renditen-Daten abgeschnitten");
+            byte b = daten[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalArgumentException("Ungültiger Varint in Renditen-Daten");
+    }
+
+    private static final class Puffer {
+        private byte[] daten;
+        private int laenge;
+
+        Puffer(int kapazitaet) {
+            this.daten = new byte[Math.max(kapazitaet, 16)];
+        }
+
+        void schreibeByte(int b) {
+            if (laenge == daten.length) daten = Arrays.copyOf(daten, daten.length * 2);
+            daten[laenge++] = (byte) b;
+        }
+
+        void schreibeVarint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                schreibeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            schreibeByte((int) v);
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(daten, laenge);
+        }
+    }
+}
@@ -73,7 +73,7 @@ public class Tarif {
     private List<Kostenstruktur> kostenstrukturen = List.of();
 
     /**
-     * Optional: bisheriger Script-Platzhalter.
+     * Optional: JavaScript mit tarif-eigenen Monatsregeln (kosten/bonus), siehe TarifSkripte.
      */
     @Lob
     private String berechnungsScript;
@@ -0,0 +1,17 @@
+package de.paf.tarifvergleich.repository;
+
+import de.paf.tarifvergleich.domain.KapitalanlageTyp;
+
+import java.math.BigDecimal;
+
+/**
+ * Kapitalanlage ohne Renditen (Listen, Auswahl). Die Renditen-Spalte kann mehrere MB groß
+ * sein und wird ohne Bytecode-Enhancement auch bei fetch = LAZY mitgeladen.
+ */
+public record KapitalanlageKopf(
+        Long id,
+        String name,
+        KapitalanlageTyp typ,
+        BigDecimal annualRate,
+        boolean aktiv
+) {}
@@ -1,12 +1,56 @@
 package de.paf.tarifvergleich.repository;
 
 import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.domain.KapitalanlageTyp;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface KapitalanlageRepository extends JpaRepository<Kapitalanlage, Long> {
     List<Kapitalanlage> findByAktivTrueOrderByNameAsc();
     Optional<Kapitalanlage> findByName(String name);
-}
\ No newline at end of file
+
+    /**
+     * Ids der aktiven Kapitalanlagen mit diesen Namen – ohne die Renditen zu laden.
+     */
+    @Query("select k.id from Kapitalanlage k where k.aktiv = true and k.name in :namen")
+    List<Long> findAktiveIds(Collection<String> namen);
+
+    @Query("select k.id from Kapitalanlage k")
+    List<Long> findAlleIds();
+
+    /**
+     * Listen ohne Renditen (siehe KapitalanlageKopf).
+     */
+    @Query("""
+            select new de.paf.tarifvergleich.repository.KapitalanlageKopf(k.id, k.name, k.typ, k.annualRate, k.aktiv)
+            from Kapitalanlage k
+            order by k.name
+            """)
+    List<KapitalanlageKopf> findAlleKoepfe();
+
+    @Query("""
+            select new de.paf.tarifvergleich.repository.KapitalanlageKopf(k.id, k.name, k.typ, k.annualRate, k.aktiv)
+            from Kapitalanlage k
+            where k.id = :id
+            """)
+    Optional<KapitalanlageKopf> findKopf(Long id);
+
+    /**
+     * Stammdaten ändern, ohne die Renditen zu laden und zurückzuschreiben.
+     *
+     * @return Anzahl geänderter Zeilen (0 = unbekannte Id)
+     */
+    @Modifying
+    @Query("""
+            update Kapitalanlage k
+            set k.name = :name, k.typ = :typ, k.annualRate = :annualRate, k.aktiv = :aktiv
+            where k.id = :id
+            """)
+    int aktualisieren(Long id, String name, KapitalanlageTyp typ, BigDecimal annualRate, boolean aktiv);
+}
@@ -2,6 +2,7 @@ package de.paf.tarifvergleich.repository;
 
 import de.paf.tarifvergleich.domain.Kostenpunkt;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
@@ -10,4 +11,15 @@ public interface KostenpunktRepository extends JpaRepository<Kostenpunkt, Long>
     List<Kostenpunkt> findByKostenstruktur_Id(Long kostenstrukturId);
 
     List<Kostenpunkt> findByKostenstruktur_IdAndAktivTrue(Long kostenstrukturId);
-}
\ No newline at end of file
+
+    // Katalog-Load: aktive Kostenpunkte aller aktiven Kostenstrukturen aktiver Tarife
+    @Query("""
+            select kp from Kostenpunkt kp
+            join kp.kostenstruktur ks
+            join ks.tarif t
+            where kp.aktiv = true
+              and ks.aktiv = true
+              and t.aktiv = true
+            """)
+    List<Kostenpunkt> findAlleAktivenFuerKatalog();
+}
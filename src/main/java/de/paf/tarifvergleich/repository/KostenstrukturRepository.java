@@ -2,6 +2,7 @@ package de.paf.tarifvergleich.repository;
 
 import de.paf.tarifvergleich.domain.Kostenstruktur;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,4 +22,16 @@ public interface KostenstrukturRepository extends JpaRepository<Kostenstruktur,
     List<Kostenstruktur> findByBeitragMonatAndLaufzeitJahreAndAktivTrue(
             Integer beitragMonat, Integer laufzeitJahre
     );
-}
\ No newline at end of file
+
+    /**
+     * Katalog-Load: alle aktiven Kostenstrukturen aktiver Tarife – inkl. Tarif und Anbieter in EINER Query.
+     */
+    @Query("""
+            select ks from Kostenstruktur ks
+            join fetch ks.tarif t
+            left join fetch t.anbieter
+            where t.aktiv = true
+              and ks.aktiv = true
+            """)
+    List<Kostenstruktur> findAlleAktivenMitTarif();
+}
@@ -1,36 +1,81 @@
 package de.paf.tarifvergleich.service;
 
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BatchErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.BatchZeileDto;
 import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.GridZelleDto;
+import de.paf.tarifvergleich.controller.dto.KapitalanlagePaarDto;
+import de.paf.tarifvergleich.controller.dto.MonteCarloErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.SweepErgebnisDto;
 import de.paf.tarifvergleich.controller.dto.WertpunktDto;
 import de.paf.tarifvergleich.domain.*;
-import de.paf.tarifvergleich.repository.*;
+import de.paf.tarifvergleich.service.berechnung.BerechnungsMetriken;
+import de.paf.tarifvergleich.service.berechnung.ErgebnisCache;
+import de.paf.tarifvergleich.service.berechnung.ErgebnisSpeicher;
+import de.paf.tarifvergleich.service.berechnung.Kostenplan;
+import de.paf.tarifvergleich.service.berechnung.KostenplanCache;
+import de.paf.tarifvergleich.service.berechnung.MonteCarloRechner;
+import de.paf.tarifvergleich.service.berechnung.ParallelAusfuehrer;
+import de.paf.tarifvergleich.service.berechnung.Rechengrundlage;
+import de.paf.tarifvergleich.service.berechnung.Rechenkern;
+import de.paf.tarifvergleich.service.berechnung.ReferenzRechenkern;
+import de.paf.tarifvergleich.service.berechnung.RenditeReihen;
+import de.paf.tarifvergleich.service.berechnung.Renditereihe;
+import de.paf.tarifvergleich.service.berechnung.SchnellRechenkern;
+import de.paf.tarifvergleich.service.berechnung.TarifSkripte;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class BerechnungsService {
 
-    private final TarifRepository tarifRepository;
-    private final KostenstrukturRepository kostenstrukturRepository;
-    private final KostenpunktRepository kostenpunktRepository;
-    private final KapitalanlageRepository kapitalanlageRepository;
+    private final TarifKatalog tarifKatalog;
+    private final RenditeReihen renditeReihen;
 
-    // Rechenkonstanten
-    private static final MathContext MC = new MathContext(20, RoundingMode.HALF_UP);
-    private static final BigDecimal BD_0 = BigDecimal.ZERO;
-    private static final BigDecimal BD_1 = BigDecimal.ONE;
-    private static final BigDecimal BD_100 = new BigDecimal("100");
-    private static final BigDecimal EPS = new BigDecimal("0.0000000001");
+    private final ReferenzRechenkern referenzRechenkern;
+    private final SchnellRechenkern schnellRechenkern;
+    private final BerechnungsProperties properties;
+    private final ParallelAusfuehrer parallelAusfuehrer;
+    private final KostenplanCache kostenplanCache;
+    private final ErgebnisCache ergebnisCache;
+    private final ErgebnisSpeicher ergebnisSpeicher;
+    private final MonteCarloRechner monteCarloRechner;
+    private final TarifSkripte tarifSkripte;
+    private final BerechnungsMetriken metriken;
+
+    private static final long MONTE_CARLO_SEED = 42L;
+    private static final double MONTE_CARLO_RENDITE = 0.07;
+
+    // einstiegsalter fließt (noch) nicht in die Simulation ein, für die Vorberechnung beliebig
+    private static final int VORBERECHNUNG_EINSTIEGSALTER = 30;
+
+    /**
+     * Alles, was für einen Request über alle Tarife gleich ist.
+     */
+    private record Auftrag(
+            Rechenkern kern,
+            RechenModus rechenModus,
+            KatalogSnapshot katalog,
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Integer einstiegsalter,
+            Renditereihe kaA,
+            Renditereihe kaB
+    ) {}
 
     /**
      * Controller-Signatur:
      * beitragMonat, laufzeitJahre, einstiegsalter, kapitalanlageAId, kapitalanlageBId, garantieModus, tarifIds
+     *
+     * garantieModus wird (noch) nicht ausgewertet, jeder Tarif rechnet mit seinem eigenen.
      */
     public List<BerechnungErgebnisDto> berechne(
             Integer beitragMonat,
@@ -40,598 +85,445 @@ public class BerechnungsService {
             Long kapitalanlageBId,
             GarantieModus garantieModus,
             List<Long> tarifIds
+    ) {
+        return berechne(beitragMonat, laufzeitJahre, einstiegsalter, kapitalanlageAId, kapitalanlageBId,
+                garantieModus, tarifIds, null);
+    }
+
+    /**
+     * Wie oben, zusätzlich mit Rechenkern-Wahl.
+     * rechenModus == null => Default aus tarifvergleich.berechnung.rechen-modus
+     */
+    public List<BerechnungErgebnisDto> berechne(
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Integer einstiegsalter,
+            Long kapitalanlageAId,
+            Long kapitalanlageBId,
+            GarantieModus garantieModus,
+            List<Long> tarifIds,
+            RechenModus rechenModus
     ) {
         if (beitragMonat == null || laufzeitJahre == null || einstiegsalter == null) return List.of();
         if (tarifIds == null || tarifIds.isEmpty()) return List.of();
 
-        int gesamtMonate = laufzeitJahre * 12;
+        return metriken.request(BerechnungsMetriken.ENDPUNKT_BERECHNUNG, tarifIds.size(), () -> {
+            Auftrag auftrag = auftrag(beitragMonat, laufzeitJahre, einstiegsalter,
+                    kapitalanlageAId, kapitalanlageBId, rechenModus);
 
-        Kapitalanlage kaA = kapitalanlageAId != null
-                ? kapitalanlageRepository.findById(kapitalanlageAId).orElse(null)
-                : null;
-
-        Kapitalanlage kaB = kapitalanlageBId != null
-                ? kapitalanlageRepository.findById(kapitalanlageBId).orElse(null)
-                : null;
-
-        BigDecimal beitrag = BigDecimal.valueOf(beitragMonat);
-
-        List<BerechnungErgebnisDto> out = new ArrayList<>();
-
-        for (Long tarifId : tarifIds) {
-            Tarif tarif = tarifRepository.findById(tarifId).orElse(null);
-            if (tarif == null) continue;
-
-            // Lombok bei boolean => isAktiv()
-            if (!tarif.getAktiv()) continue;
-
-            // passende Kostenstruktur (Beitrag/Laufzeit) muss existieren und aktiv sein
-            Optional<Kostenstruktur> ksOpt =
-                    kostenstrukturRepository.findFirstByTarif_IdAndBeitragMonatAndLaufzeitJahreAndAktivTrue(
-                            tarif.getId(), beitragMonat, laufzeitJahre
-                    );
-
-            if (ksOpt.isEmpty()) continue;
-
-            Kostenstruktur ks = ksOpt.get();
-            List<Kostenpunkt> kostenpunkte = kostenpunktRepository.findByKostenstruktur_IdAndAktivTrue(ks.getId());
-
-            BerechnungErgebnisDto dto = simuliereTarif(
-                    tarif, kostenpunkte, beitrag, laufzeitJahre, gesamtMonate, einstiegsalter, kaA, kaB
+            List<BerechnungErgebnisDto> ergebnisse = parallelAusfuehrer.fuerAlle(tarifIds, tarifId ->
+                    berechneTarif(auftrag, tarifId)
             );
 
-            out.add(dto);
-        }
-
-        return out;
+            // übersprungene Tarife (null) fallen raus, Reihenfolge bleibt wie tarifIds
+            List<BerechnungErgebnisDto> out = new ArrayList<>(ergebnisse.size());
+            for (BerechnungErgebnisDto dto : ergebnisse) {
+                if (dto != null) out.add(dto);
+            }
+            return out;
+        });
     }
 
-    private BerechnungErgebnisDto simuliereTarif(
-            Tarif tarif,
-            List<Kostenpunkt> kostenpunkte,
-            BigDecimal beitrag,
-            int laufzeitJahre,
-            int gesamtMonate,
-            int einstiegsalter,
-            Kapitalanlage kaA,
-            Kapitalanlage kaB
+    /**
+     * Streaming-Variante von berechne: jedes Ergebnis geht an die Senke, sobald der Tarif
+     * fertig ist (Reihenfolge = Fertigstellung). Übersprungene Tarife werden nicht gemeldet.
+     * Die Senke wird nur im aufrufenden Thread und nie gleichzeitig aufgerufen.
+     */
+    public void berechneStreaming(
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Integer einstiegsalter,
+            Long kapitalanlageAId,
+            Long kapitalanlageBId,
+            GarantieModus garantieModus,
+            List<Long> tarifIds,
+            RechenModus rechenModus,
+            Consumer<BerechnungErgebnisDto> senke
     ) {
-        TarifTyp typ = tarif.getTarifTyp();
-        if (typ == null) typ = TarifTyp.FONDS;
-
-        return switch (typ) {
-            case FONDS -> simuliereFondspolice(tarif, kostenpunkte, beitrag, laufzeitJahre, gesamtMonate, einstiegsalter, kaA);
-            case HYBRID_2_TOPF -> simuliereHybrid2Topf(tarif, kostenpunkte, beitrag, laufzeitJahre, gesamtMonate, einstiegsalter, kaA);
-            case HYBRID_3_TOPF -> simuliereHybrid3Topf(tarif, kostenpunkte, beitrag, laufzeitJahre, gesamtMonate, einstiegsalter, kaA, kaB);
-        };
+        if (beitragMonat == null || laufzeitJahre == null || einstiegsalter == null) return;
+        if (tarifIds == null || tarifIds.isEmpty()) return;
+
+        metriken.request(BerechnungsMetriken.ENDPUNKT_STREAM, tarifIds.size(), () -> {
+            Auftrag auftrag = auftrag(beitragMonat, laufzeitJahre, einstiegsalter,
+                    kapitalanlageAId, kapitalanlageBId, rechenModus);
+
+            parallelAusfuehrer.jeFertig(tarifIds, tarifId -> berechneTarif(auftrag, tarifId), dto -> {
+                if (dto != null) senke.accept(dto);
+            });
+            return null;
+        });
     }
 
-    // =========================================================
-    // 1) FONDS (nur Topf 1)
-    // =========================================================
-    private BerechnungErgebnisDto simuliereFondspolice(
-            Tarif tarif,
-            List<Kostenpunkt> kostenpunkte,
-            BigDecimal beitrag,
-            int laufzeitJahre,
-            int gesamtMonate,
-            int einstiegsalter,
-            Kapitalanlage kaA
+    private Auftrag auftrag(
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Integer einstiegsalter,
+            Long kapitalanlageAId,
+            Long kapitalanlageBId,
+            RechenModus rechenModus
     ) {
-        BigDecimal topfA = BD_0;
-        BigDecimal sumBeitraege = BD_0;
-
-        List<WertpunktDto> jahreswerte = new ArrayList<>();
-
-        for (int m = 1; m <= gesamtMonate; m++) {
-
-            // Beitrag rein
-            topfA = topfA.add(beitrag);
-            sumBeitraege = sumBeitraege.add(beitrag);
-
-            // Kosten runter
-            BigDecimal kosten = kostenSummeFuerMonat(kostenpunkte, m, beitrag, topfA);
-            if (kosten.compareTo(BD_0) > 0) {
-                topfA = topfA.subtract(kosten);
-                if (topfA.compareTo(BD_0) < 0) topfA = BD_0;
-            }
+        RechenModus modus = rechenModus != null ? rechenModus : properties.getRechenModus();
+
+        return metriken.phase(BerechnungsMetriken.PHASE_EINGABEN, () -> new Auftrag(
+                rechenkern(modus),
+                modus,
+                // ein Snapshot für den ganzen Request: Admin-Änderungen währenddessen wirken erst beim nächsten
+                tarifKatalog.aktuell(),
+                beitragMonat,
+                laufzeitJahre,
+                einstiegsalter,
+                // Renditen aus dem prozessweiten Cache (null => Kapitalanlage unbekannt, Rendite 0)
+                renditeReihen.fuer(kapitalanlageAId),
+                renditeReihen.fuer(kapitalanlageBId)
+        ));
+    }
 
-            // Rendite Topf A
-            BigDecimal rA = rendite(kaA, m);
-            topfA = topfA.multiply(BD_1.add(rA), MC);
-
-            // Jahreswerte
-            if (m % 12 == 0) {
-                int jahr = m / 12;
-
-                BigDecimal topf1 = topfA;
-                BigDecimal topf2 = BD_0;
-                BigDecimal topf3 = BD_0;
-                BigDecimal gesamt = topf1.add(topf2).add(topf3);
-
-                jahreswerte.add(new WertpunktDto(
-                        jahr,
-                        sumBeitraege,
-                        gesamt,
-                        topf1,
-                        topf2,
-                        topf3
-                ));
-            }
+    /**
+     * Ein Tarif aus dem Katalog-Snapshot simulieren (oder aus dem Ergebnis-Cache).
+     * Keine Grundlage => Tarif wird (wie bisher) stillschweigend übersprungen.
+     */
+    private BerechnungErgebnisDto berechneTarif(Auftrag a, Long tarifId) {
+        Rechengrundlage grundlage = a.katalog().grundlage(tarifId, a.beitragMonat(), a.laufzeitJahre());
+        if (grundlage == null) {
+            // der Snapshot kennt nur aktive Tarife
+            metriken.uebersprungen(a.katalog().tarif(tarifId).isPresent()
+                    ? BerechnungsMetriken.GRUND_KEINE_KOSTENSTRUKTUR
+                    : BerechnungsMetriken.GRUND_TARIF_INAKTIV);
+            return null;
         }
 
-        BigDecimal endwert = jahreswerte.isEmpty()
-                ? topfA
-                : jahreswerte.get(jahreswerte.size() - 1).gesamtKapital();
-
-        return new BerechnungErgebnisDto(
-                tarif.getId(),
-                tarif.getTarifName(),
-                tarif.getTarifCode(),
-                tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
-                endwert,
-                jahreswerte
-        );
+        return berechneTarif(a, tarifId, grundlage, schluessel(a, tarifId, grundlage));
     }
 
-    // =========================================================
-    // 2) HYBRID 2-TOPF
-    //
-    // - Topf1 = Fonds (A)
-    // - Topf3 = Garantie (Deckungsstock)
-    // - Topf2 existiert hier nicht => immer 0
-    //
-    // Logik:
-    // Beitrag - Kosten => aktuelles Kapital
-    // Dann Allokation so, dass Garantie am Ende >= garantieNiveau * SummeEinzahlungen
-    // =========================================================
-    private BerechnungErgebnisDto simuliereHybrid2Topf(
-            Tarif tarif,
-            List<Kostenpunkt> kostenpunkte,
-            BigDecimal beitrag,
-            int laufzeitJahre,
-            int gesamtMonate,
-            int einstiegsalter,
-            Kapitalanlage kaA
+    private BerechnungErgebnisDto berechneTarif(
+            Auftrag a, Long tarifId, Rechengrundlage grundlage, ErgebnisCache.Schluessel schluessel
     ) {
-        BigDecimal topfA = BD_0;
-        BigDecimal topfG = BD_0;
-
-        BigDecimal sumBeitraege = BD_0;
-
-        List<WertpunktDto> jahreswerte = new ArrayList<>();
-
-        for (int m = 1; m <= gesamtMonate; m++) {
-
-            // 1) Beitrag in Gesamt
-            sumBeitraege = sumBeitraege.add(beitrag);
-            BigDecimal gesamt = topfA.add(topfG).add(beitrag);
-
-            // 2) Kosten runter
-            BigDecimal kosten = kostenSummeFuerMonat(kostenpunkte, m, beitrag, gesamt);
-            if (kosten.compareTo(BD_0) > 0) {
-                gesamt = gesamt.subtract(kosten);
-                if (gesamt.compareTo(BD_0) < 0) gesamt = BD_0;
-            }
-
-            // 3) Garantiebedarf (PV)
-            int restMonate = gesamtMonate - m;
-
-            BigDecimal garantieNiveau = nz(tarif.getGarantieNiveau());
-            if (garantieNiveau.compareTo(BD_0) < 0) garantieNiveau = BD_0;
-            if (garantieNiveau.compareTo(BD_1) > 0) garantieNiveau = BD_1;
-
-            BigDecimal ziel = sumBeitraege.multiply(garantieNiveau, MC);
-
-            BigDecimal gFactor = guaranteeFutureFactor(tarif, restMonate);
-            BigDecimal neededGNow = pvForFutureValue(ziel, gFactor);
-
-            if (neededGNow.compareTo(gesamt) > 0) neededGNow = gesamt;
-            if (neededGNow.compareTo(BD_0) < 0) neededGNow = BD_0;
-
-            topfG = neededGNow;
-            topfA = gesamt.subtract(topfG);
-
-            // 4) Renditen
-            BigDecimal rA = rendite(kaA, m);
-            topfA = topfA.multiply(BD_1.add(rA), MC);
+        BerechnungErgebnisDto vorberechnet = ergebnisSpeicher.holen(schluessel);
+        if (vorberechnet != null) {
+            metriken.ergebnis(BerechnungsMetriken.QUELLE_SPEICHER);
+            return vorberechnet;
+        }
 
-            BigDecimal rG = garantieMonatsrendite(tarif);
-            topfG = topfG.multiply(BD_1.add(rG), MC);
+        BerechnungErgebnisDto gecacht = ergebnisCache.holen(schluessel);
+        if (gecacht != null) {
+            metriken.ergebnis(BerechnungsMetriken.QUELLE_CACHE);
+            return gecacht;
+        }
 
-            // Jahreswerte
-            if (m % 12 == 0) {
-                int jahr = m / 12;
+        metriken.ergebnis(BerechnungsMetriken.QUELLE_GERECHNET);
+        BerechnungErgebnisDto ergebnis = simuliere(a, tarifId, grundlage);
+        ergebnisCache.ablegen(schluessel, ergebnis);
+        return ergebnis;
+    }
 
-                BigDecimal topf1 = topfA;
-                BigDecimal topf2 = BD_0;     // kein Topf B im 2-Topf
-                BigDecimal topf3 = topfG;
+    /**
+     * Exceptions werden als Fehler-Eintrag gemeldet statt den ganzen Request abzubrechen.
+     */
+    private BerechnungErgebnisDto simuliere(Auftrag a, Long tarifId, Rechengrundlage grundlage) {
+        try {
+            Kostenplan plan = metriken.phase(BerechnungsMetriken.PHASE_KOSTENPLAN, () -> kostenplanCache.plan(
+                    a.katalog().stand(), grundlage, BigDecimal.valueOf(a.beitragMonat()), a.laufzeitJahre()
+            ));
+            return metriken.simulation(plan.tarifTyp(), a.rechenModus(), () -> {
+                if (!TarifSkripte.hatSkript(plan.tarif())) {
+                    return a.kern().simuliere(plan, a.einstiegsalter(), a.kaA(), a.kaB());
+                }
+                // ein Kontext für die ganze Simulation, nicht je Monat
+                try (TarifSkripte.Kontext k = tarifSkripte.ausleihen()) {
+                    return a.kern().simuliere(plan, a.einstiegsalter(), a.kaA(), a.kaB(), k.regeln(plan));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Berechnung für Tarif {} fehlgeschlagen", tarifId, e);
+            metriken.fehler(grundlage.tarif() != null ? grundlage.tarif().getTarifTyp() : null);
+            return fehlerErgebnis(tarifId, grundlage.tarif(), e);
+        }
+    }
 
-                BigDecimal gesamtKapital = topf1.add(topf2).add(topf3);
+    private static ErgebnisCache.Schluessel schluessel(Auftrag a, Long tarifId, Rechengrundlage grundlage) {
+        return ErgebnisCache.schluessel(
+                grundlage, a.katalog().tarifStand(tarifId), a.beitragMonat(), a.laufzeitJahre(),
+                a.kaA(), a.kaB(), a.rechenModus()
+        );
+    }
 
-                jahreswerte.add(new WertpunktDto(
-                        jahr,
-                        sumBeitraege,
-                        gesamtKapital,
-                        topf1,
-                        topf2,
-                        topf3
-                ));
+    /**
+     * Rechnet Zellen für den ErgebnisSpeicher (Hintergrund, siehe Vorberechnung) mit
+     * demselben Kern-Aufruf wie berechne, aber auf dem Hintergrund-Kontingent des
+     * ParallelAusfuehrer. Zellen ohne Grundlage im Snapshot werden übersprungen.
+     */
+    public void vorberechnen(KatalogSnapshot katalog, List<ErgebnisSpeicher.Zelle> zellen) {
+        Map<Long, Renditereihe> reihen = new HashMap<>();
+        for (ErgebnisSpeicher.Zelle z : zellen) {
+            for (Long id : Arrays.asList(z.kapitalanlageAId(), z.kapitalanlageBId())) {
+                if (id != null && !reihen.containsKey(id)) reihen.put(id, renditeReihen.fuer(id));
             }
         }
 
-        BigDecimal endwert = jahreswerte.isEmpty()
-                ? topfA.add(topfG)
-                : jahreswerte.get(jahreswerte.size() - 1).gesamtKapital();
+        parallelAusfuehrer.imHintergrund(zellen, z -> {
+            Rechengrundlage grundlage = katalog.grundlage(z.tarifId(), z.beitragMonat(), z.laufzeitJahre());
+            if (grundlage == null) return;
 
-        return new BerechnungErgebnisDto(
-                tarif.getId(),
-                tarif.getTarifName(),
-                tarif.getTarifCode(),
-                tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
-                endwert,
-                jahreswerte
-        );
+            Auftrag a = new Auftrag(rechenkern(z.rechenModus()), z.rechenModus(), katalog,
+                    z.beitragMonat(), z.laufzeitJahre(), VORBERECHNUNG_EINSTIEGSALTER,
+                    reihe(reihen, z.kapitalanlageAId()), reihe(reihen, z.kapitalanlageBId()));
+
+            // am ErgebnisCache vorbei: der Speicher hält das Ergebnis ohnehin
+            ErgebnisCache.Schluessel k = schluessel(a, z.tarifId(), grundlage);
+            ergebnisSpeicher.ablegen(k, simuliere(a, z.tarifId(), grundlage));
+        });
     }
 
     // =========================================================
-    // 3) HYBRID 3-TOPF
-    //
-    // - Topf1 = Fonds (A)
-    // - Topf2 = Garantiefonds (B) mit Floor
-    // - Topf3 = Deckungsstock/klassische Garantie (G)
-    //
-    // Floor: TopfB soll nicht unter floor * letzterB fallen (monat-zu-monat)
-    // Garantie-Ziel: garantieNiveau * SummeEinzahlungen am Ende
+    // Batch
     // =========================================================
-    private BerechnungErgebnisDto simuliereHybrid3Topf(
-            Tarif tarif,
-            List<Kostenpunkt> kostenpunkte,
-            BigDecimal beitrag,
-            int laufzeitJahre,
-            int gesamtMonate,
-            int einstiegsalter,
-            Kapitalanlage kaA,
-            Kapitalanlage kaB
-    ) {
-        BigDecimal topfA = BD_0;
-        BigDecimal topfB = BD_0;
-        BigDecimal topfG = BD_0;
 
-        BigDecimal letzterB = BD_0;
-
-        BigDecimal sumBeitraege = BD_0;
-
-        BigDecimal floor = nz(tarif.getTopfBFloor());
-        if (floor.compareTo(BD_0) < 0) floor = BD_0;
-        if (floor.compareTo(BD_1) > 0) floor = BD_1;
+    /**
+     * Eine tatsächlich auszuführende Rechnung; mehrere Szenarien können sich eine teilen.
+     */
+    private record Rechnung(int nr, Auftrag auftrag, Long tarifId, Rechengrundlage grundlage, ErgebnisCache.Schluessel schluessel) {}
 
-        BigDecimal garantieNiveau = nz(tarif.getGarantieNiveau());
-        if (garantieNiveau.compareTo(BD_0) < 0) garantieNiveau = BD_0;
-        if (garantieNiveau.compareTo(BD_1) > 0) garantieNiveau = BD_1;
+    private record Szenario(Long tarifId, GridZelleDto zelle, KapitalanlagePaarDto paar, GarantieModus garantieModus, Rechnung rechnung) {}
 
-        List<WertpunktDto> jahreswerte = new ArrayList<>();
+    /**
+     * Kreuzprodukt tarifIds x zellen x kapitalanlagen x garantieModi in einem Aufruf.
+     *
+     * Gemeinsame Eingaben werden genau einmal aufgelöst: ein Katalog-Snapshot, je
+     * Kapitalanlage eine Renditereihe, je (Tarif, Zelle) eine Rechengrundlage bzw. ein
+     * Kostenplan. Szenarien mit gleichem Ergebnis-Schlüssel (z.B. unterschiedliches B bei
+     * Tarifen ohne 3. Topf, unterschiedlicher GarantieModus) werden nur einmal gerechnet;
+     * die übrigen Rechnungen laufen parallel wie bei berechne. Tarife ohne Grundlage in einer Zelle fallen raus.
+     */
+    public BatchErgebnisDto berechneBatch(
+            List<Long> tarifIds,
+            List<GridZelleDto> zellen,
+            List<KapitalanlagePaarDto> kapitalanlagen,
+            List<GarantieModus> garantieModi,
+            Integer einstiegsalter,
+            RechenModus rechenModus,
+            boolean mitWertentwicklung
+    ) {
+        if (einstiegsalter == null || tarifIds == null || zellen == null || kapitalanlagen == null) {
+            return new BatchErgebnisDto(0, 0, List.of());
+        }
+        List<GarantieModus> modi = garantieModi == null || garantieModi.isEmpty()
+                ? Collections.singletonList(null)
+                : garantieModi;
 
-        for (int m = 1; m <= gesamtMonate; m++) {
+        int szenarien = tarifIds.size() * zellen.size() * kapitalanlagen.size() * modi.size();
+        return metriken.request(BerechnungsMetriken.ENDPUNKT_BATCH, szenarien, () -> berechneBatch(tarifKatalog.aktuell(), tarifIds, zellen,
+                kapitalanlagen, modi, einstiegsalter, rechenModus, mitWertentwicklung));
+    }
 
-            // 1) Beitrag in Gesamt
-            sumBeitraege = sumBeitraege.add(beitrag);
-            BigDecimal gesamt = topfA.add(topfB).add(topfG).add(beitrag);
+    private BatchErgebnisDto berechneBatch(
+            KatalogSnapshot katalog,
+            List<Long> tarifIds,
+            List<GridZelleDto> zellen,
+            List<KapitalanlagePaarDto> kapitalanlagen,
+            List<GarantieModus> modi,
+            Integer einstiegsalter,
+            RechenModus rechenModus,
+            boolean mitWertentwicklung
+    ) {
+        RechenModus modus = rechenModus != null ? rechenModus : properties.getRechenModus();
+        Rechenkern kern = rechenkern(modus);
 
-            // 2) Kosten runter
-            BigDecimal kosten = kostenSummeFuerMonat(kostenpunkte, m, beitrag, gesamt);
-            if (kosten.compareTo(BD_0) > 0) {
-                gesamt = gesamt.subtract(kosten);
-                if (gesamt.compareTo(BD_0) < 0) gesamt = BD_0;
+        Map<Long, Renditereihe> reihen = new HashMap<>();
+        for (KapitalanlagePaarDto paar : kapitalanlagen) {
+            for (Long id : Arrays.asList(paar.kapitalanlageAId(), paar.kapitalanlageBId())) {
+                if (id != null && !reihen.containsKey(id)) reihen.put(id, renditeReihen.fuer(id));
             }
+        }
 
-            // 3) Ziel am Ende
-            int restMonate = gesamtMonate - m;
-            BigDecimal ziel = sumBeitraege.multiply(garantieNiveau, MC);
-
-            // Faktoren
-            BigDecimal gFactor = guaranteeFutureFactor(tarif, restMonate);
-
-            // B-Faktor konservativ ab nächstem Monat (damit es zur Stelle "m" passt)
-            BigDecimal bFactor = bFutureFactorWithFloor(kaB, m + 1, restMonate, floor);
-
-            // Mindest-B wegen Floor-Regel
-            BigDecimal bMin = letzterB.multiply(floor, MC);
-
-            // Strategie: möglichst viel in A lassen, sichere Seite durch (B und ggf. G)
-            BigDecimal bNeededAllB = pvForFutureValue(ziel, bFactor);
-            BigDecimal bStart = max(bMin, bNeededAllB);
-
-            BigDecimal newB;
-            BigDecimal newG;
-
-            if (bStart.compareTo(gesamt) <= 0) {
-                // komplett über B machbar
-                newB = bStart;
-                newG = BD_0;
-            } else {
-                // nicht genug: setze B minimal, Rest G
-                newB = min(bMin, gesamt);
-
-                BigDecimal restZiel = ziel.subtract(newB.multiply(bFactor, MC), MC);
-                if (restZiel.compareTo(BD_0) <= 0) {
-                    newG = BD_0;
-                } else {
-                    newG = pvForFutureValue(restZiel, gFactor);
-                }
+        Map<ErgebnisCache.Schluessel, Rechnung> rechnungen = new HashMap<>();
+        List<Rechnung> reihenfolge = new ArrayList<>();
+        List<Szenario> szenarien = new ArrayList<>();
 
-                BigDecimal safe = newB.add(newG);
-                if (safe.compareTo(gesamt) > 0) {
-                    // Mix so, dass B+G=gesamt und Ziel erfüllt wird (falls möglich)
-                    BigDecimal denom = bFactor.subtract(gFactor, MC);
-
-                    if (denom.abs().compareTo(EPS) > 0) {
-                        BigDecimal numer = ziel.subtract(gesamt.multiply(gFactor, MC), MC);
-                        BigDecimal bSolve = numer.divide(denom, MC);
-
-                        bSolve = max(bMin, min(bSolve, gesamt));
-                        newB = bSolve;
-                        newG = gesamt.subtract(newB);
-                        if (newG.compareTo(BD_0) < 0) newG = BD_0;
-                    } else {
-                        // Faktoren fast gleich => B=min, Rest G
-                        newB = min(bMin, gesamt);
-                        newG = gesamt.subtract(newB);
-                        if (newG.compareTo(BD_0) < 0) newG = BD_0;
+        for (Long tarifId : tarifIds) {
+            for (GridZelleDto zelle : zellen) {
+                if (zelle.beitragMonat() == null || zelle.laufzeitJahre() == null) continue;
+
+                Rechengrundlage grundlage = katalog.grundlage(tarifId, zelle.beitragMonat(), zelle.laufzeitJahre());
+                if (grundlage == null) continue;
+
+                for (KapitalanlagePaarDto paar : kapitalanlagen) {
+                    for (GarantieModus gm : modi) {
+                        Auftrag a = new Auftrag(kern, modus, katalog, zelle.beitragMonat(), zelle.laufzeitJahre(),
+                                einstiegsalter, reihe(reihen, paar.kapitalanlageAId()),
+                                reihe(reihen, paar.kapitalanlageBId()));
+
+                        ErgebnisCache.Schluessel k = schluessel(a, tarifId, grundlage);
+                        Rechnung r = rechnungen.get(k);
+                        if (r == null) {
+                            r = new Rechnung(reihenfolge.size(), a, tarifId, grundlage, k);
+                            rechnungen.put(k, r);
+                            reihenfolge.add(r);
+                        }
+                        szenarien.add(new Szenario(tarifId, zelle, paar, gm, r));
                     }
                 }
             }
+        }
 
-            BigDecimal safeFinal = newB.add(newG);
-            if (safeFinal.compareTo(gesamt) > 0) {
-                safeFinal = gesamt;
-                if (newB.compareTo(gesamt) > 0) newB = gesamt;
-                newG = gesamt.subtract(newB);
-                if (newG.compareTo(BD_0) < 0) newG = BD_0;
-            }
-
-            topfB = newB;
-            topfG = newG;
-            topfA = gesamt.subtract(safeFinal);
-
-            // 4) Renditen anwenden
-
-            // A
-            BigDecimal rA = rendite(kaA, m);
-            topfA = topfA.multiply(BD_1.add(rA), MC);
-
-            // B + Floor (monat-zu-monat)
-            BigDecimal rB = rendite(kaB, m);
-            BigDecimal bAfter = topfB.multiply(BD_1.add(rB), MC);
+        List<BerechnungErgebnisDto> ergebnisse = parallelAusfuehrer.fuerAlle(reihenfolge, r ->
+                berechneTarif(r.auftrag(), r.tarifId(), r.grundlage(), r.schluessel())
+        );
 
-            BigDecimal floorValue = letzterB.multiply(floor, MC);
-            if (bAfter.compareTo(floorValue) < 0) bAfter = floorValue;
+        List<BatchZeileDto> zeilen = new ArrayList<>(szenarien.size());
+        for (Szenario sz : szenarien) {
+            BerechnungErgebnisDto e = ergebnisse.get(sz.rechnung().nr());
+            zeilen.add(new BatchZeileDto(
+                    sz.tarifId(),
+                    sz.zelle().beitragMonat(),
+                    sz.zelle().laufzeitJahre(),
+                    sz.paar().kapitalanlageAId(),
+                    sz.paar().kapitalanlageBId(),
+                    sz.garantieModus(),
+                    e.endwert(),
+                    mitWertentwicklung ? e.wertentwicklung() : null,
+                    e.fehler()
+            ));
+        }
 
-            topfB = bAfter;
-            letzterB = topfB;
+        log.debug("Batch: {} Szenarien, {} Rechnungen", szenarien.size(), reihenfolge.size());
+        return new BatchErgebnisDto(szenarien.size(), reihenfolge.size(), zeilen);
+    }
 
-            // G
-            BigDecimal rG = garantieMonatsrendite(tarif);
-            topfG = topfG.multiply(BD_1.add(rG), MC);
+    /**
+     * Parameter-Sweep: ein Tarif über beitragMonatWerte x laufzeitJahreWerte in einem Job.
+     * Läuft über den Batch (ein Snapshot, Renditereihen einmal, Kostenpläne aus dem Cache,
+     * Punkte parallel) und formt das Ergebnis zur dichten Matrix um.
+     */
+    public SweepErgebnisDto sweep(
+            Long tarifId,
+            List<Integer> beitragMonatWerte,
+            List<Integer> laufzeitJahreWerte,
+            Integer einstiegsalter,
+            Long kapitalanlageAId,
+            Long kapitalanlageBId,
+            GarantieModus garantieModus,
+            RechenModus rechenModus,
+            boolean mitWertentwicklung
+    ) {
+        List<Integer> beitraege = beitragMonatWerte != null ? beitragMonatWerte : List.of();
+        List<Integer> laufzeiten = laufzeitJahreWerte != null ? laufzeitJahreWerte : List.of();
 
-            // Jahreswerte
-            if (m % 12 == 0) {
-                int jahr = m / 12;
+        KatalogSnapshot katalog = tarifKatalog.aktuell();
+        Tarif tarif = katalog.tarif(tarifId).orElse(null);
 
-                BigDecimal topf1 = topfA;
-                BigDecimal topf2 = topfB;
-                BigDecimal topf3 = topfG;
-                BigDecimal gesamtKapital = topf1.add(topf2).add(topf3);
+        List<GridZelleDto> zellen = new ArrayList<>(beitraege.size() * laufzeiten.size());
+        for (Integer b : beitraege) {
+            for (Integer l : laufzeiten) zellen.add(new GridZelleDto(b, l));
+        }
 
-                jahreswerte.add(new WertpunktDto(
-                        jahr,
-                        sumBeitraege,
-                        gesamtKapital,
-                        topf1,
-                        topf2,
-                        topf3
-                ));
+        List<BatchZeileDto> zeilen = tarif == null || einstiegsalter == null
+                ? List.of()
+                : metriken.request(BerechnungsMetriken.ENDPUNKT_SWEEP, zellen.size(), () -> berechneBatch(katalog, List.of(tarifId), zellen,
+                        List.of(new KapitalanlagePaarDto(kapitalanlageAId, kapitalanlageBId)),
+                        Collections.singletonList(garantieModus), einstiegsalter, rechenModus, mitWertentwicklung
+                ).ergebnisse());
+
+        Map<GridZelleDto, BatchZeileDto> nachZelle = new HashMap<>();
+        for (BatchZeileDto z : zeilen) nachZelle.put(new GridZelleDto(z.beitragMonat(), z.laufzeitJahre()), z);
+
+        List<List<BigDecimal>> endwert = new ArrayList<>(beitraege.size());
+        List<List<List<WertpunktDto>>> wertentwicklung = mitWertentwicklung ? new ArrayList<>(beitraege.size()) : null;
+        List<String> fehler = new ArrayList<>();
+
+        for (Integer b : beitraege) {
+            List<BigDecimal> zeileEndwert = new ArrayList<>(laufzeiten.size());
+            List<List<WertpunktDto>> zeileWerte = mitWertentwicklung ? new ArrayList<>(laufzeiten.size()) : null;
+
+            for (Integer l : laufzeiten) {
+                BatchZeileDto z = nachZelle.get(new GridZelleDto(b, l));
+                zeileEndwert.add(z != null ? z.endwert() : null);
+                if (zeileWerte != null) zeileWerte.add(z != null ? z.wertentwicklung() : null);
+                if (z != null && z.fehler() != null) fehler.add(b + "/" + l + ": " + z.fehler());
             }
-        }
 
-        BigDecimal endwert = jahreswerte.isEmpty()
-                ? topfA.add(topfB).add(topfG)
-                : jahreswerte.get(jahreswerte.size() - 1).gesamtKapital();
+            endwert.add(zeileEndwert);
+            if (wertentwicklung != null) wertentwicklung.add(zeileWerte);
+        }
 
-        return new BerechnungErgebnisDto(
-                tarif.getId(),
-                tarif.getTarifName(),
-                tarif.getTarifCode(),
-                tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
+        return new SweepErgebnisDto(
+                tarifId,
+                tarif != null ? tarif.getTarifName() : null,
+                tarif != null ? tarif.getTarifCode() : null,
+                tarif != null && tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
+                beitraege,
+                laufzeiten,
                 endwert,
-                jahreswerte
+                wertentwicklung,
+                fehler
         );
     }
 
-    // =========================================================
-    // Renditen / Faktoren
-    // =========================================================
-
-    private BigDecimal rendite(Kapitalanlage k, int monatNr1Based) {
-        if (k == null) return BD_0;
-        List<BigDecimal> rs = k.getMonatlicheRenditen();
-        if (rs == null || rs.isEmpty()) return BD_0;
-        int idx = monatNr1Based - 1;
-        if (idx < 0 || idx >= rs.size()) return BD_0;
-        BigDecimal r = rs.get(idx);
-        return r == null ? BD_0 : r;
+    private static Renditereihe reihe(Map<Long, Renditereihe> reihen, Long id) {
+        return id != null ? reihen.get(id) : null;
     }
 
     /**
-     * Monatliche Garantierendite:
-     * - garantiezins ist p.a. (z.B. 0.0225)
-     * - wir rechnen grob p.a./12
-     * - Überschüsse: Dummy +0.5% p.a. (Platzhalter)
+     * Monte Carlo: Kapitalanlage A wird durch generierte Pfade ersetzt (immer SCHNELL-Kern).
+     * anzahlPfade wird auf 1..monte-carlo-max-pfade begrenzt; doppelte Tarife werden einmal
+     * gerechnet, Tarife ohne Grundlage fallen wie bei berechne raus. Die Obergrenze
+     * monte-carlo-max-wertpunkte prüft der Controller (siehe monteCarloPfade).
      */
-    private BigDecimal garantieMonatsrendite(Tarif tarif) {
-        BigDecimal gzPa = nz(tarif.getGarantiezins());
-        if (gzPa.compareTo(BD_0) <= 0) return BD_0;
-
-        BigDecimal addPa = BD_0;
-        if (tarif.getGarantieModus() == GarantieModus.MIT_UEBERSCHUESSEN) {
-            addPa = new BigDecimal("0.005"); // Platzhalter
-        }
-
-        BigDecimal pa = gzPa.add(addPa, MC);
-        return pa.divide(new BigDecimal("12"), 12, RoundingMode.HALF_UP);
-    }
+    public List<MonteCarloErgebnisDto> monteCarlo(
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Integer einstiegsalter,
+            Long kapitalanlageBId,
+            GarantieModus garantieModus,
+            List<Long> tarifIds,
+            Integer anzahlPfade,
+            Long seed,
+            Double renditeErwartung
+    ) {
+        if (beitragMonat == null || laufzeitJahre == null || einstiegsalter == null) return List.of();
+        if (laufzeitJahre <= 0 || tarifIds == null || tarifIds.isEmpty()) return List.of();
 
-    /**
-     * Faktor: wie 1€ im Garantietopf in restMonate wächst.
-     */
-    private BigDecimal guaranteeFutureFactor(Tarif tarif, int restMonate) {
-        if (restMonate <= 0) return BD_1;
-        BigDecimal rM = garantieMonatsrendite(tarif);
+        KatalogSnapshot katalog = tarifKatalog.aktuell();
+        BigDecimal beitrag = BigDecimal.valueOf(beitragMonat);
 
-        BigDecimal factor = BD_1;
-        for (int i = 0; i < restMonate; i++) {
-            factor = factor.multiply(BD_1.add(rM), MC);
+        // doppelte IDs nur einmal simulieren (Speicher je Tarif: Pfade x Jahre)
+        Set<Long> ids = new LinkedHashSet<>(tarifIds);
+        List<Kostenplan> plaene = new ArrayList<>(ids.size());
+        for (Long tarifId : ids) {
+            Rechengrundlage g = katalog.grundlage(tarifId, beitragMonat, laufzeitJahre);
+            if (g != null) plaene.add(kostenplanCache.plan(katalog.stand(), g, beitrag, laufzeitJahre));
         }
-        return factor;
+
+        return monteCarloRechner.simuliere(
+                plaene,
+                renditeReihen.fuer(kapitalanlageBId),
+                monteCarloPfade(anzahlPfade),
+                seed != null ? seed : MONTE_CARLO_SEED,
+                renditeErwartung != null ? renditeErwartung : MONTE_CARLO_RENDITE
+        );
     }
 
     /**
-     * Faktor: wie 1€ in Topf B in restMonate wächst (mit Floor-Regel),
-     * simuliert ab startMonth (1-based) für restMonate Monate.
+     * Tatsächlich simulierte Pfade für einen Request (Standard bzw. begrenzt auf 1..max).
      */
-    private BigDecimal bFutureFactorWithFloor(Kapitalanlage kaB, int startMonth, int restMonate, BigDecimal floor) {
-        if (restMonate <= 0) return BD_1;
-        if (kaB == null) return BD_1;
-
-        BigDecimal v = BD_1;
-        BigDecimal last = BD_1;
-
-        for (int i = 0; i < restMonate; i++) {
-            int monthIndex = startMonth + i;
-            BigDecimal r = rendite(kaB, monthIndex);
-
-            BigDecimal after = v.multiply(BD_1.add(r), MC);
-
-            BigDecimal floorValue = last.multiply(floor, MC);
-            if (after.compareTo(floorValue) < 0) after = floorValue;
-
-            v = after;
-            last = v;
-        }
-
-        return v; // Start=1
-    }
-
-    private BigDecimal pvForFutureValue(BigDecimal futureValue, BigDecimal factor) {
-        if (futureValue == null) return BD_0;
-        if (factor == null || factor.compareTo(BD_0) <= 0) return BD_0;
-        return futureValue.divide(factor, MC);
-    }
-
-    private static BigDecimal nz(BigDecimal v) {
-        return v == null ? BD_0 : v;
-    }
-
-    private static BigDecimal max(BigDecimal a, BigDecimal b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return a.max(b);
-    }
-
-    private static BigDecimal min(BigDecimal a, BigDecimal b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return a.min(b);
-    }
-
-    // =========================================================
-    // Kosten (V2)
-    // =========================================================
-
-    private BigDecimal kostenSummeFuerMonat(List<Kostenpunkt> punkte, int monatIndex, BigDecimal beitrag, BigDecimal kapitalGesamt) {
-        BigDecimal sum = BD_0;
-        if (punkte == null || punkte.isEmpty()) return sum;
-
-        for (Kostenpunkt p : punkte) {
-            if (p == null) continue;
-
-            // Lombok boolean => isAktiv()
-            if (!p.isAktiv()) continue;
-
-            if (!giltInMonat(p, monatIndex)) continue;
-
-            BigDecimal kosten = kostenWertFuerPunkt(p, beitrag, kapitalGesamt);
-            sum = sum.add(kosten);
-        }
-        return sum.max(BD_0);
+    public int monteCarloPfade(Integer anzahlPfade) {
+        int pfade = anzahlPfade != null ? anzahlPfade : properties.getMonteCarloPfade();
+        return Math.max(1, Math.min(pfade, properties.getMonteCarloMaxPfade()));
     }
 
-    private boolean giltInMonat(Kostenpunkt p, int m) {
-        if (p == null) return false;
-
-        Integer von = p.getGueltigVonMonat();
-        Integer bis = p.getGueltigBisMonat();
-        if (von != null && m < von) return false;
-        if (bis != null && m > bis) return false;
-
-        KostenRhythmus r = p.getRhythmus();
-        if (r == null) return false;
-
-        return switch (r) {
-            case EINMALIG -> (m == 1);
-            case MONATLICH -> true;
-            case JAHRLICH -> (m % 12 == 0);
-            case VERTEILT_5_JAHRE -> (m >= 1 && m <= 60);
-            case VERTEILT_7_JAHRE -> (m >= 1 && m <= 84);
-        };
+    private static BerechnungErgebnisDto fehlerErgebnis(Long tarifId, Tarif tarif, RuntimeException e) {
+        String meldung = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return new BerechnungErgebnisDto(
+                tarifId,
+                tarif != null ? tarif.getTarifName() : null,
+                tarif != null ? tarif.getTarifCode() : null,
+                tarif != null && tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
+                null,
+                List.of(),
+                "Berechnung fehlgeschlagen: " + meldung
+        );
     }
 
-    private BigDecimal kostenWertFuerPunkt(Kostenpunkt p, BigDecimal beitrag, BigDecimal kapital) {
-        BigDecimal wert = nz(p.getWert());
-
-        int divisor = switch (p.getRhythmus()) {
-            case VERTEILT_5_JAHRE -> 60;
-            case VERTEILT_7_JAHRE -> 84;
-            default -> 1;
-        };
-
-        if (p.getTyp() == KostenTyp.EURO) {
-            BigDecimal euro = wert;
-            if (divisor > 1) euro = euro.divide(BigDecimal.valueOf(divisor), 6, RoundingMode.HALF_UP);
-            euro = euro.max(BD_0);
-
-            BigDecimal min = nz(p.getMinimumEuro());
-            if (min.compareTo(BD_0) > 0) euro = euro.max(min);
-
-            return euro;
-        }
-
-        // PROZENT
-        BigDecimal basis = switch (p.getBasis()) {
-            case BEITRAG -> beitrag;
-            case KAPITAL -> kapital;
-            case FIX -> BD_0;
-        };
-
-        BigDecimal pct = wert.divide(BD_100, 12, RoundingMode.HALF_UP);
-
-        ProzentPeriode periode = p.getProzentPeriode();
-        if (periode == null) periode = ProzentPeriode.MONATLICH;
-        if (periode == ProzentPeriode.JAHRLICH) {
-            pct = pct.divide(new BigDecimal("12"), 12, RoundingMode.HALF_UP);
-        }
-
-        BigDecimal kosten = basis.multiply(pct, MC);
-
-        if (divisor > 1) {
-            kosten = kosten.divide(BigDecimal.valueOf(divisor), 6, RoundingMode.HALF_UP);
-        }
-
-        kosten = kosten.max(BD_0);
-
-        BigDecimal min = nz(p.getMinimumEuro());
-        if (min.compareTo(BD_0) > 0) kosten = kosten.max(min);
-
-        return kosten;
+    private Rechenkern rechenkern(RechenModus modus) {
+        return modus == RechenModus.SCHNELL ? schnellRechenkern : referenzRechenkern;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package de.paf.tarifvergleich.service;
+
+/**
+ * Wird vom AdminController nach jeder schreibenden Änderung veröffentlicht.
+ * Caches hören per @TransactionalEventListener (nach dem Commit) darauf.
+ *
+ * Je nach Art der Änderung sind nur einzelne Ids gesetzt:
+ * - Tarif:          tarifId
+ * - Kostenstruktur: tarifId + kostenstrukturId (auch bei Kostenpunkt-Änderungen)
+ * - Kapitalanlage:  kapitalanlageId
+ */
+public record KatalogAenderung(
+        Long tarifId,
+        Long kostenstrukturId,
+        Long kapitalanlageId
+) {
+    public static KatalogAenderung tarif(Long tarifId) {
+        return new KatalogAenderung(tarifId, null, null);
+    }
+
+    public static KatalogAenderung kostenstruktur(Long tarifId, Long kostenstrukturId) {
+        return new KatalogAenderung(tarifId, kostenstrukturId, null);
+    }
+
+    public static KatalogAenderung kapitalanlage(Long kapitalanlageId) {
+        return new KatalogAenderung(null, null, kapitalanlageId);
+    }
+}
@@ -0,0 +1,125 @@
+package de.paf.tarifvergleich.service;
+
+import de.paf.tarifvergleich.domain.Kostenpunkt;
+import de.paf.tarifvergleich.domain.Kostenstruktur;
+import de.paf.tarifvergleich.domain.Tarif;
+import de.paf.tarifvergleich.service.berechnung.Rechengrundlage;
+
+import java.util.*;
+
+/**
+ * Unveränderlicher Stand des Tarif-Katalogs (nur aktive Tarife, aktive Kostenstrukturen
+ * und deren aktive Kostenpunkte).
+ *
+ * Die Entities sind detached und werden nach dem Bau nicht mehr verändert –
+ * Admin-Änderungen erzeugen einen NEUEN Snapshot statt diesen anzufassen.
+ */
+public final class KatalogSnapshot {
+
+    private final long stand;
+    private final long alleTarifeStand;
+    private final Map<Long, Long> tarifStaende;
+    private final List<Tarif> aktiveTarife;
+    private final Map<Long, Tarif> tarifeNachId;
+    private final Map<Zelle, Rechengrundlage> grundlagen;
+    private final VerfuegbarkeitsIndex verfuegbarkeit;
+
+    /**
+     * Grid-Zelle eines Tarifs.
+     */
+    public record Zelle(Long tarifId, Integer beitragMonat, Integer laufzeitJahre) {}
+
+    KatalogSnapshot(
+            long stand,
+            long alleTarifeStand,
+            Map<Long, Long> tarifStaende,
+            List<Tarif> aktiveTarife,
+            List<Kostenstruktur> strukturen,
+            List<Kostenpunkt> punkte,
+            VerfuegbarkeitsIndex vorherigeVerfuegbarkeit,
+            Long geaenderterTarif
+    ) {
+        this.stand = stand;
+        this.alleTarifeStand = alleTarifeStand;
+        this.tarifStaende = Map.copyOf(tarifStaende);
+        this.aktiveTarife = List.copyOf(aktiveTarife);
+
+        Map<Long, Tarif> tarife = new HashMap<>();
+        for (Tarif t : aktiveTarife) tarife.put(t.getId(), t);
+        this.tarifeNachId = Map.copyOf(tarife);
+
+        Map<Long, List<Kostenpunkt>> punkteJeStruktur = new HashMap<>();
+        for (Kostenpunkt kp : punkte) {
+            punkteJeStruktur.computeIfAbsent(kp.getKostenstruktur().getId(), k -> new ArrayList<>()).add(kp);
+        }
+
+        Map<Zelle, Rechengrundlage> out = new HashMap<>();
+        for (Kostenstruktur ks : strukturen) {
+            // Tarif-Instanz aus dem Snapshot verwenden, nicht die der Kostenstruktur
+            Tarif tarif = tarife.get(ks.getTarif().getId());
+            if (tarif == null) continue;
+
+            List<Kostenpunkt> kp = List.copyOf(punkteJeStruktur.getOrDefault(ks.getId(), List.of()));
+            out.putIfAbsent(
+                    new Zelle(tarif.getId(), ks.getBeitragMonat(), ks.getLaufzeitJahre()),
+                    new Rechengrundlage(tarif, ks, kp)
+            );
+        }
+        this.grundlagen = Map.copyOf(out);
+
+        this.verfuegbarkeit = VerfuegbarkeitsIndex.aufbauen(
+                vorherigeVerfuegbarkeit, geaenderterTarif, this.aktiveTarife, this.grundlagen.keySet());
+    }
+
+    /**
+     * Versionsnummer, wird mit jeder Admin-Änderung hochgezählt.
+     */
+    public long stand() {
+        return stand;
+    }
+
+    /**
+     * Stand, zu dem sich Tarif, Kostenstrukturen oder Kostenpunkte dieses Tarifs
+     * zuletzt geändert haben. Bleibt gleich, solange nur andere Tarife bearbeitet werden.
+     */
+    public long tarifStand(Long tarifId) {
+        Long s = tarifId == null ? null : tarifStaende.get(tarifId);
+        return s != null ? Math.max(s, alleTarifeStand) : alleTarifeStand;
+    }
+
+    /**
+     * Aktive Tarife, sortiert nach Tarifname.
+     */
+    public List<Tarif> aktiveTarife() {
+        return aktiveTarife;
+    }
+
+    public Optional<Tarif> tarif(Long tarifId) {
+        return Optional.ofNullable(tarifId == null ? null : tarifeNachId.get(tarifId));
+    }
+
+    /**
+     * Rechengrundlage einer Grid-Zelle, null wenn Tarif oder Kostenstruktur nicht aktiv sind.
+     */
+    public Rechengrundlage grundlage(Long tarifId, Integer beitragMonat, Integer laufzeitJahre) {
+        return grundlagen.get(new Zelle(tarifId, beitragMonat, laufzeitJahre));
+    }
+
+    /**
+     * Auswählbarkeit der aktiven Tarife je Grid-Zelle (für /api/tarife).
+     */
+    public VerfuegbarkeitsIndex verfuegbarkeit() {
+        return verfuegbarkeit;
+    }
+
+    /**
+     * Alle Grid-Zellen mit Rechengrundlage (aktiver Tarif + aktive Kostenstruktur).
+     */
+    public Set<Zelle> zellen() {
+        return grundlagen.keySet();
+    }
+
+    public int anzahlZellen() {
+        return grundlagen.size();
+    }
+}
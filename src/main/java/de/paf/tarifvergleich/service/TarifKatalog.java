@@ -0,0 +1,127 @@
+package de.paf.tarifvergleich.service;
+
+import de.paf.tarifvergleich.domain.Kostenpunkt;
+import de.paf.tarifvergleich.domain.Kostenstruktur;
+import de.paf.tarifvergleich.domain.Tarif;
+import de.paf.tarifvergleich.repository.KostenpunktRepository;
+import de.paf.tarifvergleich.repository.KostenstrukturRepository;
+import de.paf.tarifvergleich.repository.TarifRepository;
+import de.paf.tarifvergleich.service.berechnung.BerechnungsMetriken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hält den Tarif-Katalog als unveränderlichen {@link KatalogSnapshot} im Speicher.
+ *
+ * Leser holen sich per {@link #aktuell()} eine Referenz und arbeiten ohne Lock
+ * und ohne DB-Zugriff darauf. Nach jeder Admin-Änderung (KatalogAenderung, nach
+ * dem Commit) wird der Katalog komplett neu geladen und die Referenz in einem
+ * Schritt ausgetauscht – halb angewendete Änderungen sind nie sichtbar.
+ *
+ * Nur das Neuladen ist synchronisiert, damit ein langsamer älterer Ladevorgang
+ * keinen neueren Snapshot überschreibt.
+ */
+@Service
+@Slf4j
+public class TarifKatalog {
+
+    private final TarifRepository tarifRepository;
+    private final KostenstrukturRepository kostenstrukturRepository;
+    private final KostenpunktRepository kostenpunktRepository;
+    private final BerechnungsMetriken metriken;
+    private final TransactionTemplate ladeTransaktion;
+
+    private volatile KatalogSnapshot snapshot;
+
+    // nur unter dem Lock von neuLaden verändert
+    private final Map<Long, Long> tarifStaende = new HashMap<>();
+    private long alleTarifeStand;
+
+    public TarifKatalog(
+            TarifRepository tarifRepository,
+            KostenstrukturRepository kostenstrukturRepository,
+            KostenpunktRepository kostenpunktRepository,
+            BerechnungsMetriken metriken,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.tarifRepository = tarifRepository;
+        this.kostenstrukturRepository = kostenstrukturRepository;
+        this.kostenpunktRepository = kostenpunktRepository;
+        this.metriken = metriken;
+
+        // eigene Transaktion: der Listener läuft nach dem Commit der Admin-Transaktion
+        this.ladeTransaktion = new TransactionTemplate(transactionManager);
+        this.ladeTransaktion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ladeTransaktion.setReadOnly(true);
+    }
+
+    /**
+     * Aktueller Snapshot, beim ersten Zugriff wird geladen.
+     */
+    public KatalogSnapshot aktuell() {
+        KatalogSnapshot s = snapshot;
+        return s != null ? s : erstesLaden();
+    }
+
+    /**
+     * true, sobald ein Snapshot existiert (ohne zu laden).
+     */
+    public boolean geladen() {
+        return snapshot != null;
+    }
+
+    private synchronized KatalogSnapshot erstesLaden() {
+        return snapshot != null ? snapshot : neuLaden();
+    }
+
+    /**
+     * Lädt den Katalog neu und veröffentlicht den neuen Snapshot.
+     * Ohne Angabe des Tarifs gelten alle Tarife als geändert.
+     */
+    public KatalogSnapshot neuLaden() {
+        return neuLaden(null);
+    }
+
+    private synchronized KatalogSnapshot neuLaden(Long geaenderterTarif) {
+        KatalogSnapshot alt = snapshot;
+        long stand = alt != null ? alt.stand() + 1 : 1L;
+        if (geaenderterTarif != null) {
+            tarifStaende.put(geaenderterTarif, stand);
+        } else {
+            alleTarifeStand = stand;
+        }
+
+        KatalogSnapshot neu = metriken.phase(BerechnungsMetriken.PHASE_KATALOG_LADEN, () -> ladeTransaktion.execute(tx -> {
+            List<Tarif> tarife = tarifRepository.findByAktivTrueOrderByTarifNameAsc();
+            List<Kostenstruktur> strukturen = kostenstrukturRepository.findAlleAktivenMitTarif();
+            List<Kostenpunkt> punkte = kostenpunktRepository.findAlleAktivenFuerKatalog();
+            return new KatalogSnapshot(stand, alleTarifeStand, tarifStaende, tarife, strukturen, punkte,
+                    alt != null ? alt.verfuegbarkeit() : null, geaenderterTarif);
+        }));
+
+        snapshot = neu;
+        log.info("Tarif-Katalog geladen: Stand {}, {} Tarife, {} Grid-Zellen",
+                neu.stand(), neu.aktiveTarife().size(), neu.anzahlZellen());
+        return neu;
+    }
+
+    // vor abgeleiteten Caches und der Vorberechnung, die den neuen Snapshot lesen
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        // Kapitalanlagen gehören nicht zum Katalog; Kostenstrukturen/-punkte ohne Tarif
+        // (verwaist oder schon gelöscht) stehen in keinem Snapshot – alle Stände bleiben gültig
+        if (aenderung.tarifId() == null) return;
+        neuLaden(aenderung.tarifId());
+    }
+}
@@ -0,0 +1,300 @@
+package de.paf.tarifvergleich.service;
+
+import de.paf.tarifvergleich.domain.Tarif;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Welche aktiven Tarife für (beitragMonat, laufzeitJahre[, einstiegsalter]) auswählbar sind,
+ * als Bitsets – Teil des {@link KatalogSnapshot}, unveränderlich.
+ *
+ * Jeder aktive Tarif hat ein festes Bit (Slot), das bei Admin-Änderungen anderer Tarife
+ * gleich bleibt. Gehalten werden:
+ * - je Grid-Zelle die Tarife mit aktiver Kostenstruktur
+ * - je Regel (Mindestbeitrag, Mindest-Startalter, Höchst-Endalter) die Grenzen aufsteigend
+ *   sortiert mit kumulierten Bitsets; eine Anfrage ist eine binäre Suche je Regel
+ *
+ * Nach Änderung EINES Tarifs werden nur dessen Bits in den Zellen neu gesetzt (die übrigen
+ * Zellen-Bitsets werden geteilt); die Regeln hängen nur an den Tarifen und werden neu gebaut.
+ */
+public final class VerfuegbarkeitsIndex {
+
+    public static final String HINWEIS_MINDESTBEITRAG = "Mindestbeitrag nicht erreicht";
+    public static final String HINWEIS_ALTER = "Einstiegsalter außerhalb der Tarifgrenzen";
+    public static final String HINWEIS_KEINE_DATEN = "keine Daten vorhanden";
+
+    private record Zelle(int beitragMonat, int laufzeitJahre) {}
+
+    private final Map<Long, Integer> slots;
+    private final int woerter;
+    private final Map<Zelle, long[]> zellen;
+
+    // Slot je Position in aktiveTarife (Reihenfolge der Antwort)
+    private final int[] slotJePosition;
+
+    private final Schwellen mindestbeitrag;
+    private final Schwellen minStartalter;
+    private final Schwellen maxEndalter;
+
+    private VerfuegbarkeitsIndex(Map<Long, Integer> slots, Map<Zelle, long[]> zellen, List<Tarif> aktiveTarife) {
+        this.slots = Map.copyOf(slots);
+        this.woerter = woerter(slots);
+        this.zellen = Map.copyOf(zellen);
+
+        this.slotJePosition = new int[aktiveTarife.size()];
+        for (int i = 0; i < slotJePosition.length; i++) slotJePosition[i] = slots.get(aktiveTarife.get(i).getId());
+
+        // Grenze <= Wert erfüllt die Regel; beim Endalter gilt Endalter <= Grenze, daher negiert
+        Map<Integer, Double> mb = new HashMap<>();
+        Map<Integer, Double> sa = new HashMap<>();
+        Map<Integer, Double> ea = new HashMap<>();
+        for (Tarif t : aktiveTarife) {
+            int slot = slots.get(t.getId());
+            BigDecimal mindest = t.getMindestbeitragMonat();
+            if (mindest != null) mb.put(slot, mindest.doubleValue());
+            if (t.getMinStartalter() != null) sa.put(slot, t.getMinStartalter().doubleValue());
+            // 0 = nicht gepflegt (Admin-Formular schickt 0 für leere Felder)
+            if (t.getMaxEndalter() != null && t.getMaxEndalter() > 0) ea.put(slot, -t.getMaxEndalter().doubleValue());
+        }
+        long[] alle = new long[woerter];
+        for (int s : slotJePosition) setze(alle, s);
+
+        this.mindestbeitrag = new Schwellen(mb, alle);
+        this.minStartalter = new Schwellen(sa, alle);
+        this.maxEndalter = new Schwellen(ea, alle);
+    }
+
+    /**
+     * Index für einen neuen Snapshot. Mit vorherigem Index und geändertem Tarif werden nur dessen
+     * Zellen-Bits ersetzt; ohne (oder wenn sich mehr als dieser Tarif geändert hat) alles neu.
+     *
+     * @param grundlagen alle Grid-Zellen mit aktiver Kostenstruktur
+     */
+    static VerfuegbarkeitsIndex aufbauen(
+            VerfuegbarkeitsIndex vorher,
+            Long geaenderterTarif,
+            List<Tarif> aktiveTarife,
+            Set<KatalogSnapshot.Zelle> grundlagen
+    ) {
+        if (vorher == null || geaenderterTarif == null || !nurDieserTarifGeaendert(vorher, geaenderterTarif, aktiveTarife)) {
+            return neu(aktiveTarife, grundlagen);
+        }
+
+        Map<Long, Integer> slots = new HashMap<>(vorher.slots);
+        Integer alterSlot = slots.remove(geaenderterTarif);
+        boolean aktiv = aktiveTarife.stream().anyMatch(t -> geaenderterTarif.equals(t.getId()));
+        Integer slot = alterSlot;
+        if (aktiv && slot == null) slot = freierSlot(slots);
+        if (aktiv) slots.put(geaenderterTarif, slot);
+
+        Map<Zelle, long[]> zellen = new HashMap<>(vorher.zellen);
+        if (alterSlot != null) {
+            int s = alterSlot;
+            zellen.replaceAll((z, bits) -> gesetzt(bits, s) ? geloescht(bits, s) : bits);
+            zellen.values().removeIf(VerfuegbarkeitsIndex::leer);
+        }
+        if (aktiv) {
+            int woerter = woerter(slots);
+            for (KatalogSnapshot.Zelle g : grundlagen) {
+                if (!geaenderterTarif.equals(g.tarifId()) || g.beitragMonat() == null || g.laufzeitJahre() == null) continue;
+                Zelle z = new Zelle(g.beitragMonat(), g.laufzeitJahre());
+                long[] bits = zellen.get(z);
+                long[] kopie = bits == null ? new long[woerter] : Arrays.copyOf(bits, Math.max(bits.length, woerter));
+                setze(kopie, slot);
+                zellen.put(z, kopie);
+            }
+        }
+        return new VerfuegbarkeitsIndex(slots, zellen, aktiveTarife);
+    }
+
+    private static VerfuegbarkeitsIndex neu(List<Tarif> aktiveTarife, Set<KatalogSnapshot.Zelle> grundlagen) {
+        Map<Long, Integer> slots = new HashMap<>();
+        for (Tarif t : aktiveTarife) slots.put(t.getId(), slots.size());
+
+        int woerter = woerter(slots);
+        Map<Zelle, long[]> zellen = new HashMap<>();
+        for (KatalogSnapshot.Zelle g : grundlagen) {
+            Integer slot = slots.get(g.tarifId());
+            if (slot == null || g.beitragMonat() == null || g.laufzeitJahre() == null) continue;
+            setze(zellen.computeIfAbsent(new Zelle(g.beitragMonat(), g.laufzeitJahre()), z -> new long[woerter]), slot);
+        }
+        return new VerfuegbarkeitsIndex(slots, zellen, aktiveTarife);
+    }
+
+    /**
+     * true, wenn alle übrigen aktiven Tarife schon einen Slot haben und kein Slot verwaist ist.
+     */
+    private static boolean nurDieserTarifGeaendert(VerfuegbarkeitsIndex vorher, Long tarifId, List<Tarif> aktiveTarife) {
+        int bekannt = 0;
+        for (Tarif t : aktiveTarife) {
+            if (tarifId.equals(t.getId())) continue;
+            if (!vorher.slots.containsKey(t.getId())) return false;
+            bekannt++;
+        }
+        return vorher.slots.size() - (vorher.slots.containsKey(tarifId) ? 1 : 0) == bekannt;
+    }
+
+    private static int freierSlot(Map<Long, Integer> slots) {
+        BitSet belegt = new BitSet();
+        for (int s : slots.values()) belegt.set(s);
+        return belegt.nextClearBit(0);
+    }
+
+    private static int woerter(Map<Long, Integer> slots) {
+        int max = -1;
+        for (int s : slots.values()) max = Math.max(max, s);
+        return (max >> 6) + 1;
+    }
+
+    // =========================================================
+    // Abfrage
+    // =========================================================
+
+    /**
+     * @param einstiegsalter null => Altersregeln werden nicht geprüft
+     */
+    public Auswahl auswahl(int beitragMonat, int laufzeitJahre, Integer einstiegsalter) {
+        long[] zelle = zellen.get(new Zelle(beitragMonat, laufzeitJahre));
+        long[] mindestOk = mindestbeitrag.erfuellt(beitragMonat);
+        long[] startOk = einstiegsalter != null ? minStartalter.erfuellt(einstiegsalter) : null;
+        long[] endeOk = einstiegsalter != null ? maxEndalter.erfuellt(-(einstiegsalter + laufzeitJahre)) : null;
+
+        long[] verfuegbar = new long[woerter];
+        if (zelle != null) {
+            for (int w = 0; w < woerter; w++) {
+                long b = wort(zelle, w) & mindestOk[w];
+                if (startOk != null) b &= startOk[w] & endeOk[w];
+                verfuegbar[w] = b;
+            }
+        }
+        return new Auswahl(verfuegbar, zelle, mindestOk, startOk, endeOk);
+    }
+
+    /**
+     * Ergebnis je Position in KatalogSnapshot.aktiveTarife().
+     */
+    public final class Auswahl {
+
+        private final long[] verfuegbar;
+        private final long[] zelle;
+        private final long[] mindestOk;
+        private final long[] startOk;
+        private final long[] endeOk;
+
+        private Auswahl(long[] verfuegbar, long[] zelle, long[] mindestOk, long[] startOk, long[] endeOk) {
+            this.verfuegbar = verfuegbar;
+            this.zelle = zelle;
+            this.mindestOk = mindestOk;
+            this.startOk = startOk;
+            this.endeOk = endeOk;
+        }
+
+        public boolean verfuegbar(int position) {
+            return gesetzt(verfuegbar, slotJePosition[position]);
+        }
+
+        /**
+         * Erste verletzte Regel (Mindestbeitrag, Alter, Kostenstruktur); null wenn verfügbar.
+         */
+        public String hinweis(int position) {
+            int slot = slotJePosition[position];
+            if (gesetzt(verfuegbar, slot)) return null;
+            if (!gesetzt(mindestOk, slot)) return HINWEIS_MINDESTBEITRAG;
+            if (startOk != null && !(gesetzt(startOk, slot) && gesetzt(endeOk, slot))) return HINWEIS_ALTER;
+            return HINWEIS_KEINE_DATEN;
+        }
+
+        public int anzahlVerfuegbar() {
+            int n = 0;
+            for (long w : verfuegbar) n += Long.bitCount(w);
+            return n;
+        }
+    }
+
+    // =========================================================
+    // Regeln
+    // =========================================================
+
+    /**
+     * Tarife mit Grenze <= Wert (Tarife ohne Grenze immer): Grenzen aufsteigend,
+     * bits[i] = alle Tarife mit Grenze <= grenzen[i] plus die ohne Grenze.
+     */
+    private static final class Schwellen {
+
+        private final double[] grenzen;
+        private final long[][] bits;
+        private final long[] ohneGrenze;
+
+        Schwellen(Map<Integer, Double> grenzeJeSlot, long[] alle) {
+            this.ohneGrenze = alle.clone();
+            grenzeJeSlot.keySet().forEach(s -> loesche(ohneGrenze, s));
+
+            List<Map.Entry<Integer, Double>> sortiert = new ArrayList<>(grenzeJeSlot.entrySet());
+            sortiert.sort(Map.Entry.comparingByValue());
+
+            double[] g = new double[sortiert.size()];
+            long[][] b = new long[sortiert.size()][];
+            int n = 0;
+            long[] laufend = ohneGrenze.clone();
+            for (Map.Entry<Integer, Double> e : sortiert) {
+                setze(laufend, e.getKey());
+                if (n > 0 && g[n - 1] == e.getValue()) {
+                    b[n - 1] = laufend.clone();
+                } else {
+                    g[n] = e.getValue();
+                    b[n] = laufend.clone();
+                    n++;
+                }
+            }
+            this.grenzen = Arrays.copyOf(g, n);
+            this.bits = Arrays.copyOf(b, n);
+        }
+
+        long[] erfuellt(double wert) {
+            // letzter Index mit grenzen[i] <= wert
+            int lo = 0, hi = grenzen.length - 1, i = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (grenzen[mid] <= wert) {
+                    i = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return i < 0 ? ohneGrenze : bits[i];
+        }
+    }
+
+    // =========================================================
+    // Bits
+    // =========================================================
+
+    private static long wort(long[] bits, int w) {
+        return w < bits.length ? bits[w] : 0L;
+    }
+
+    private static boolean gesetzt(long[] bits, int slot) {
+        return (wort(bits, slot >> 6) & (1L << slot)) != 0;
+    }
+
+    private static void setze(long[] bits, int slot) {
+        bits[slot >> 6] |= 1L << slot;
+    }
+
+    private static void loesche(long[] bits, int slot) {
+        bits[slot >> 6] &= ~(1L << slot);
+    }
+
+    private static long[] geloescht(long[] bits, int slot) {
+        long[] kopie = bits.clone();
+        loesche(kopie, slot);
+        return kopie;
+    }
+
+    private static boolean leer(long[] bits) {
+        for (long w : bits) if (w != 0) return false;
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package de.paf.tarifvergleich.service;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.domain.RechenModus;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import de.paf.tarifvergleich.repository.KapitalanlageRepository;
+import de.paf.tarifvergleich.service.berechnung.ErgebnisSpeicher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Füllt den {@link ErgebnisSpeicher} im Hintergrund: jede aktive Grid-Zelle x jede der
+ * konfigurierten Kapitalanlagen (vorberechnungKapitalanlagen) als A, beim 3-Topf-Hybrid
+ * zusätzlich jede davon bzw. keine als B, gerechnet mit dem Standard-Rechenkern.
+ *
+ * Nach dem Start wird alles gerechnet, nach einer Admin-Änderung nur der betroffene Teil:
+ * ein Tarif (auch über seine Kostenstrukturen) => dessen Zellen, eine Kapitalanlage =>
+ * die Zellen mit ihr als A oder B. Die betroffenen Einträge sind bis dahin als veraltet
+ * markiert (und werden wegen der Stände ohnehin nicht mehr ausgeliefert).
+ *
+ * Änderungen werden gesammelt: der Durchlauf startet erst vorberechnungVerzoegerungMs nach
+ * der ersten Änderung, alle bis dahin eingegangenen laufen in denselben Durchlauf. Durchläufe
+ * laufen nacheinander auf einem eigenen Thread und lesen den Katalog erst beim Start –
+ * TarifKatalog und RenditeReihen haben die Events dann schon verarbeitet. Gerechnet wird
+ * auf dem Hintergrund-Kontingent des ParallelAusfuehrer, nicht auf dem der Anfragen.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class Vorberechnung implements DisposableBean {
+
+    private final TarifKatalog tarifKatalog;
+    private final KapitalanlageRepository kapitalanlageRepository;
+    private final BerechnungsService berechnungsService;
+    private final ErgebnisSpeicher ergebnisSpeicher;
+    private final BerechnungsProperties properties;
+
+    private final ScheduledExecutorService auftraege = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("vorberechnung").factory()
+    );
+
+    // gesammelte Änderungen für den nächsten Durchlauf, null = keiner geplant (nur synchronized)
+    private Auftrag offen;
+
+    /**
+     * Was ein Durchlauf neu rechnen soll.
+     */
+    private static final class Auftrag {
+        boolean alles;
+        final Set<Long> tarife = new HashSet<>();
+        final Set<Long> kapitalanlagen = new HashSet<>();
+        int aenderungen;
+
+        Predicate<ErgebnisSpeicher.Zelle> betroffen() {
+            if (alles) return z -> true;
+            Predicate<ErgebnisSpeicher.Zelle> p = z -> tarife.contains(z.tarifId());
+            for (Long id : kapitalanlagen) p = p.or(ErgebnisSpeicher.kapitalanlage(id));
+            return p;
+        }
+
+        @Override
+        public String toString() {
+            return alles ? "Start" : aenderungen + " Änderung(en), Tarife " + tarife + ", Kapitalanlagen " + kapitalanlagen;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void nachStart() {
+        if (properties.isVorberechnung()) einplanen(a -> a.alles = true, 0);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        if (!properties.isVorberechnung()) return;
+
+        // Kostenstruktur ohne Tarif: keine Zelle betroffen (siehe TarifKatalog)
+        if (aenderung.tarifId() != null) {
+            ergebnisSpeicher.markiereVeraltet(ErgebnisSpeicher.tarif(aenderung.tarifId()));
+            einplanen(a -> a.tarife.add(aenderung.tarifId()), properties.getVorberechnungVerzoegerungMs());
+        }
+        if (aenderung.kapitalanlageId() != null) {
+            ergebnisSpeicher.markiereVeraltet(ErgebnisSpeicher.kapitalanlage(aenderung.kapitalanlageId()));
+            einplanen(a -> a.kapitalanlagen.add(aenderung.kapitalanlageId()), properties.getVorberechnungVerzoegerungMs());
+        }
+    }
+
+    private synchronized void einplanen(Consumer<Auftrag> aenderung, long verzoegerungMs) {
+        boolean planen = offen == null;
+        if (planen) offen = new Auftrag();
+        aenderung.accept(offen);
+        offen.aenderungen++;
+
+        // Änderungen während eines Durchlaufs planen den nächsten, der Thread arbeitet sie nacheinander ab
+        if (planen) auftraege.schedule(this::durchlauf, Math.max(0, verzoegerungMs), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Auftrag uebernehmen() {
+        Auftrag a = offen;
+        offen = null;
+        return a;
+    }
+
+    private void durchlauf() {
+        Auftrag auftrag = uebernehmen();
+        if (auftrag == null) return;
+        try {
+            aktualisieren(auftrag);
+        } catch (RuntimeException e) {
+            log.warn("Vorberechnung ({}) fehlgeschlagen", auftrag, e);
+        }
+    }
+
+    private void aktualisieren(Auftrag auftrag) {
+        long t0 = System.nanoTime();
+
+        KatalogSnapshot katalog = tarifKatalog.aktuell();
+        List<String> namen = properties.getVorberechnungKapitalanlagen();
+        List<Long> kapitalanlagen = namen.isEmpty() ? List.of() : kapitalanlageRepository.findAktiveIds(namen);
+        RechenModus modus = properties.getRechenModus();
+
+        Predicate<ErgebnisSpeicher.Zelle> betroffen = auftrag.betroffen();
+        boolean kapitalanlageBetroffen = kapitalanlagen.stream().anyMatch(auftrag.kapitalanlagen::contains);
+
+        // Soll nur für den betroffenen Teil; der Rest des Speichers bleibt unangetastet
+        Set<ErgebnisSpeicher.Zelle> soll = new HashSet<>();
+        for (KatalogSnapshot.Zelle z : katalog.zellen()) {
+            if (!auftrag.alles && !kapitalanlageBetroffen && !auftrag.tarife.contains(z.tarifId())) continue;
+
+            boolean mitB = katalog.tarif(z.tarifId())
+                    .map(t -> t.getTarifTyp() == TarifTyp.HYBRID_3_TOPF)
+                    .orElse(false);
+
+            for (Long a : kapitalanlagen) {
+                aufnehmen(soll, betroffen, new ErgebnisSpeicher.Zelle(z.tarifId(), z.beitragMonat(), z.laufzeitJahre(), a, null, modus));
+                if (!mitB) continue;
+                for (Long b : kapitalanlagen) {
+                    aufnehmen(soll, betroffen, new ErgebnisSpeicher.Zelle(z.tarifId(), z.beitragMonat(), z.laufzeitJahre(), a, b, modus));
+                }
+            }
+        }
+
+        ergebnisSpeicher.behalteNur(betroffen, soll);
+        berechnungsService.vorberechnen(katalog, List.copyOf(soll));
+
+        ErgebnisSpeicher.Statistik s = ergebnisSpeicher.statistik();
+        log.info("Vorberechnung ({}): {} Zellen in {} ms, Speicher: {} Einträge, {} veraltet, {} verdrängt",
+                auftrag, soll.size(), (System.nanoTime() - t0) / 1_000_000, s.eintraege(), s.veraltet(), s.verdraengt());
+    }
+
+    private static void aufnehmen(Set<ErgebnisSpeicher.Zelle> soll, Predicate<ErgebnisSpeicher.Zelle> betroffen,
+                                  ErgebnisSpeicher.Zelle z) {
+        if (betroffen.test(z)) soll.add(z);
+    }
+
+    @Override
+    public void destroy() {
+        auftraege.shutdownNow();
+    }
+}
@@ -0,0 +1,221 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.RechenModus;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer-Metriken der Berechnungs-Pipeline (über Actuator, z.B. /actuator/prometheus).
+ *
+ * - tarifvergleich.berechnung.request       Timer je Endpunkt, Tag "tarife" = Größenklasse der Tarifliste
+ * - tarifvergleich.berechnung.tarife        Anzahl Tarife (bzw. Szenarien) je Request
+ * - tarifvergleich.berechnung.phase         Timer je Phase (eingaben, katalog_laden, renditen_laden,
+ *                                           kostenplan, serialisierung)
+ * - tarifvergleich.berechnung.simulation    Timer je TarifTyp und RechenModus
+ * - tarifvergleich.berechnung.ergebnisse    Zähler je Quelle (speicher, cache, gerechnet)
+ * - tarifvergleich.berechnung.uebersprungen Zähler je Grund (tarif_inaktiv, keine_kostenstruktur)
+ * - tarifvergleich.berechnung.fehler        Zähler je TarifTyp ("unbekannt", wenn der Tarif fehlt)
+ *
+ * Alle Timer mit Histogramm (Perzentile/SLOs in Prometheus). Die Meter werden vorab
+ * angelegt (Requests je Endpunkt und Größenklasse), der Hot Path macht keine Registry-Lookups. Cache-Größen: siehe CacheMetriken.
+ */
+@Component
+public class BerechnungsMetriken {
+
+    public static final String ENDPUNKT_BERECHNUNG = "berechnung";
+    public static final String ENDPUNKT_STREAM = "stream";
+    public static final String ENDPUNKT_BATCH = "batch";
+    public static final String ENDPUNKT_SWEEP = "sweep";
+
+    public static final String PHASE_EINGABEN = "eingaben";
+    public static final String PHASE_KATALOG_LADEN = "katalog_laden";
+    public static final String PHASE_RENDITEN_LADEN = "renditen_laden";
+    public static final String PHASE_KOSTENPLAN = "kostenplan";
+    public static final String PHASE_SERIALISIERUNG = "serialisierung";
+
+    public static final String QUELLE_SPEICHER = "speicher";
+    public static final String QUELLE_CACHE = "cache";
+    public static final String QUELLE_GERECHNET = "gerechnet";
+
+    public static final String GRUND_TARIF_INAKTIV = "tarif_inaktiv";
+    public static final String GRUND_KEINE_KOSTENSTRUKTUR = "keine_kostenstruktur";
+
+    private static final String[] GROESSENKLASSEN = {"1", "2-5", "6-10", "11-25", "26-100", ">100"};
+    private static final String TYP_UNBEKANNT = "unbekannt";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, DistributionSummary> tarifeJeRequest;
+    private final Map<String, Timer[]> requests;
+    private final Map<String, Timer> phasen;
+    private final Map<TarifTyp, Map<RechenModus, Timer>> simulation = new EnumMap<>(TarifTyp.class);
+    private final Map<TarifTyp, Counter> fehler = new EnumMap<>(TarifTyp.class);
+    private final Counter fehlerUnbekannt;
+    private final Map<String, Counter> ergebnisse;
+    private final Map<String, Counter> uebersprungen;
+
+    public BerechnungsMetriken(MeterRegistry registry) {
+        this.registry = registry;
+
+        this.tarifeJeRequest = Map.of(
+                ENDPUNKT_BERECHNUNG, tarifeSummary(ENDPUNKT_BERECHNUNG),
+                ENDPUNKT_STREAM, tarifeSummary(ENDPUNKT_STREAM),
+                ENDPUNKT_BATCH, tarifeSummary(ENDPUNKT_BATCH),
+                ENDPUNKT_SWEEP, tarifeSummary(ENDPUNKT_SWEEP)
+        );
+        this.requests = Map.of(
+                ENDPUNKT_BERECHNUNG, requestTimer(ENDPUNKT_BERECHNUNG),
+                ENDPUNKT_STREAM, requestTimer(ENDPUNKT_STREAM),
+                ENDPUNKT_BATCH, requestTimer(ENDPUNKT_BATCH),
+                ENDPUNKT_SWEEP, requestTimer(ENDPUNKT_SWEEP)
+        );
+
+        this.phasen = Map.of(
+                PHASE_EINGABEN, phasenTimer(PHASE_EINGABEN),
+                PHASE_KATALOG_LADEN, phasenTimer(PHASE_KATALOG_LADEN),
+                PHASE_RENDITEN_LADEN, phasenTimer(PHASE_RENDITEN_LADEN),
+                PHASE_KOSTENPLAN, phasenTimer(PHASE_KOSTENPLAN),
+                PHASE_SERIALISIERUNG, phasenTimer(PHASE_SERIALISIERUNG)
+        );
+
+        for (TarifTyp typ : TarifTyp.values()) {
+            Map<RechenModus, Timer> jeModus = new EnumMap<>(RechenModus.class);
+            for (RechenModus modus : RechenModus.values()) {
+                jeModus.put(modus, Timer.builder("tarifvergleich.berechnung.simulation")
+                        .description("Simulation eines Tarifs (ohne Cache-Treffer)")
+                        .tag("tarif_typ", typ.name())
+                        .tag("rechen_modus", modus.name())
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            simulation.put(typ, jeModus);
+
+            fehler.put(typ, fehlerZaehler(typ.name()));
+        }
+        this.fehlerUnbekannt = fehlerZaehler(TYP_UNBEKANNT);
+
+        this.ergebnisse = Map.of(
+                QUELLE_SPEICHER, ergebnisZaehler(QUELLE_SPEICHER),
+                QUELLE_CACHE, ergebnisZaehler(QUELLE_CACHE),
+                QUELLE_GERECHNET, ergebnisZaehler(QUELLE_GERECHNET)
+        );
+        this.uebersprungen = Map.of(
+                GRUND_TARIF_INAKTIV, uebersprungenZaehler(GRUND_TARIF_INAKTIV),
+                GRUND_KEINE_KOSTENSTRUKTUR, uebersprungenZaehler(GRUND_KEINE_KOSTENSTRUKTUR)
+        );
+    }
+
+    // =========================================================
+    // Erfassen
+    // =========================================================
+
+    /**
+     * Ganzer Request eines Endpunkts (berechnung, stream, batch, sweep) mit anzahl Tarifen bzw. Szenarien.
+     */
+    public <T> T request(String endpunkt, int anzahl, Supplier<T> aufgabe) {
+        tarifeJeRequest.get(endpunkt).record(anzahl);
+        return requests.get(endpunkt)[klasse(anzahl)].record(aufgabe);
+    }
+
+    public <T> T phase(String phase, Supplier<T> aufgabe) {
+        return phasen.get(phase).record(aufgabe);
+    }
+
+    public void phase(String phase, long nanos) {
+        phasen.get(phase).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T simulation(TarifTyp typ, RechenModus modus, Supplier<T> aufgabe) {
+        return simulation.get(typ).get(modus).record(aufgabe);
+    }
+
+    public void ergebnis(String quelle) {
+        ergebnisse.get(quelle).increment();
+    }
+
+    public void uebersprungen(String grund) {
+        uebersprungen.get(grund).increment();
+    }
+
+    public void fehler(TarifTyp typ) {
+        (typ != null ? fehler.get(typ) : fehlerUnbekannt).increment();
+    }
+
+    // =========================================================
+    // Intern
+    // =========================================================
+
+    private DistributionSummary tarifeSummary(String endpunkt) {
+        return DistributionSummary.builder("tarifvergleich.berechnung.tarife")
+                .description("Tarife bzw. Szenarien je Request")
+                .tag("endpunkt", endpunkt)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Ein Timer je Größenklasse, Index wie klasse(anzahl).
+     */
+    private Timer[] requestTimer(String endpunkt) {
+        Timer[] timer = new Timer[GROESSENKLASSEN.length];
+        for (int i = 0; i < timer.length; i++) {
+            timer[i] = Timer.builder("tarifvergleich.berechnung.request")
+                    .description("Berechnungs-Request im Service (stream: inkl. Schreiben der Ergebnisse)")
+                    .tag("endpunkt", endpunkt)
+                    .tag("tarife", GROESSENKLASSEN[i])
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        return timer;
+    }
+
+    private Counter fehlerZaehler(String tarifTyp) {
+        return Counter.builder("tarifvergleich.berechnung.fehler")
+                .description("Fehlgeschlagene Tarif-Berechnungen")
+                .tag("tarif_typ", tarifTyp)
+                .register(registry);
+    }
+
+    private Timer phasenTimer(String phase) {
+        return Timer.builder("tarifvergleich.berechnung.phase")
+                .description("Phasen der Berechnungs-Pipeline")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter ergebnisZaehler(String quelle) {
+        return Counter.builder("tarifvergleich.berechnung.ergebnisse")
+                .description("Tarif-Ergebnisse nach Herkunft")
+                .tag("quelle", quelle)
+                .register(registry);
+    }
+
+    private Counter uebersprungenZaehler(String grund) {
+        return Counter.builder("tarifvergleich.berechnung.uebersprungen")
+                .description("Angefragte Tarife ohne Ergebnis (nicht im aktiven Katalog)")
+                .tag("grund", grund)
+                .register(registry);
+    }
+
+    /**
+     * Index in GROESSENKLASSEN: begrenzte Tag-Werte statt der genauen Anzahl (Kardinalität).
+     */
+    private static int klasse(int anzahl) {
+        if (anzahl <= 1) return 0;
+        if (anzahl <= 5) return 1;
+        if (anzahl <= 10) return 2;
+        if (anzahl <= 25) return 3;
+        if (anzahl <= 100) return 4;
+        return 5;
+    }
+}
@@ -0,0 +1,89 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.service.TarifKatalog;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Größen der prozessweiten Caches als Gauges (dieselben Quellen wie /api/admin/caches):
+ *
+ * - tarifvergleich.cache.eintraege{cache=...}   ergebnis, speicher, speicher_veraltet, kostenplaene,
+ *                                               renditereihen, garantie_tabellen, topf_b_indizes, katalog_zellen
+ * - tarifvergleich.cache.bytes{cache=renditereihen}
+ * - tarifvergleich.cache.zugriffe{cache=ergebnis|speicher, ergebnis=treffer|fehlgriff}
+ * - tarifvergleich.cache.verdraengt{cache=ergebnis}
+ * - tarifvergleich.katalog.stand
+ *
+ * Die Gauges lesen erst beim Abruf (Scrape), auf dem Rechenweg kostet das nichts.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheMetriken implements MeterBinder {
+
+    private final ErgebnisCache ergebnisCache;
+    private final ErgebnisSpeicher ergebnisSpeicher;
+    private final KostenplanCache kostenplanCache;
+    private final RenditeReihen renditeReihen;
+    private final GarantieFaktoren garantieFaktoren;
+    private final TopfBFloorIndex topfBFloorIndex;
+    private final TarifKatalog tarifKatalog;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        eintraege(registry, "ergebnis", ergebnisCache, c -> c.statistik().eintraege());
+        eintraege(registry, "speicher", ergebnisSpeicher, s -> s.statistik().eintraege());
+        eintraege(registry, "speicher_veraltet", ergebnisSpeicher, s -> s.statistik().veraltet());
+        eintraege(registry, "kostenplaene", kostenplanCache, KostenplanCache::anzahlPlaene);
+        eintraege(registry, "renditereihen", renditeReihen, RenditeReihen::anzahlReihen);
+        eintraege(registry, "garantie_tabellen", garantieFaktoren, GarantieFaktoren::anzahlTabellen);
+        eintraege(registry, "topf_b_indizes", topfBFloorIndex, TopfBFloorIndex::anzahlIndizes);
+        // Katalog nicht über aktuell() laden lassen, nur einen vorhandenen Snapshot zählen
+        eintraege(registry, "katalog_zellen", tarifKatalog, k -> k.geladen() ? k.aktuell().anzahlZellen() : 0);
+
+        Gauge.builder("tarifvergleich.cache.bytes", renditeReihen, RenditeReihen::speicherBytes)
+                .description("Geschätzter Speicherbedarf")
+                .tag("cache", "renditereihen")
+                .baseUnit("bytes")
+                .register(registry);
+
+        Gauge.builder("tarifvergleich.katalog.stand", tarifKatalog, k -> k.geladen() ? k.aktuell().stand() : 0)
+                .description("Versionsnummer des aktuellen Katalog-Snapshots")
+                .register(registry);
+
+        zugriffe(registry, "ergebnis", "treffer", ergebnisCache, c -> c.statistik().treffer());
+        zugriffe(registry, "ergebnis", "fehlgriff", ergebnisCache, c -> c.statistik().fehlgriffe());
+        zugriffe(registry, "speicher", "treffer", ergebnisSpeicher, s -> s.statistik().treffer());
+
+        FunctionCounter.builder("tarifvergleich.cache.verdraengt", ergebnisCache, c -> c.statistik().verdraengt())
+                .description("Wegen Größe verdrängte Einträge")
+                .tag("cache", "ergebnis")
+                .register(registry);
+        FunctionCounter.builder("tarifvergleich.cache.verdraengt", ergebnisSpeicher, s -> s.statistik().verdraengt())
+                .description("Wegen Größe verdrängte Einträge")
+                .tag("cache", "speicher")
+                .register(registry);
+    }
+
+    private static <T> void eintraege(MeterRegistry registry, String cache, T quelle,
+                                      ToDoubleFunction<T> wert) {
+        Gauge.builder("tarifvergleich.cache.eintraege", quelle, wert)
+                .description("Einträge im Cache")
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    private static <T> void zugriffe(MeterRegistry registry, String cache, String ergebnis, T quelle,
+                                     ToDoubleFunction<T> wert) {
+        FunctionCounter.builder("tarifvergleich.cache.zugriffe", quelle, wert)
+                .description("Cache-Zugriffe")
+                .tag("cache", cache)
+                .tag("ergebnis", ergebnis)
+                .register(registry);
+    }
+}
@@ -0,0 +1,122 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.domain.RechenModus;
+import de.paf.tarifvergleich.domain.TarifTyp;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+
+/**
+ * Fertige Ergebnisse je Tarif und Anfrage (Grid-Zelle + Kapitalanlagen + Modi).
+ *
+ * Im Schlüssel stecken die Stände der Eingangsdaten (Tarif-Stand aus dem Katalog,
+ * Lade-Stand der Renditereihen). Ein Ergebnis aus alten Daten ist damit nie unter
+ * einem neuen Stand auffindbar, auch wenn es erst nach der Admin-Änderung abgelegt wird.
+ * Die Event-Invalidierung räumt nur den Speicher auf – und zwar genau die Einträge
+ * des betroffenen Tarifs bzw. der betroffenen Kapitalanlage.
+ *
+ * Begrenzt über das Gewicht = 1 + Anzahl Wertpunkte je Ergebnis (65 Jahre = 66).
+ * Fehler-Ergebnisse werden nicht abgelegt.
+ *
+ * Hinweis: einstiegsalter fließt (noch) nicht in die Simulation ein und ist daher
+ * nicht Teil des Schlüssels. Ebenso der GarantieModus des Requests: der Rechenkern
+ * nimmt den des Tarifs (GarantieFaktoren), ein Ergebnis gilt für alle Modi – wie im
+ * ErgebnisSpeicher.
+ */
+@Component
+public class ErgebnisCache {
+
+    private final Cache<Schluessel, BerechnungErgebnisDto> ergebnisse;
+
+    public record Schluessel(
+            Long tarifId,
+            long tarifStand,
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Long kapitalanlageAId,
+            long kapitalanlageAStand,
+            Long kapitalanlageBId,
+            long kapitalanlageBStand,
+            RechenModus rechenModus
+    ) {
+        boolean betrifftKapitalanlage(Long id) {
+            return Objects.equals(id, kapitalanlageAId) || Objects.equals(id, kapitalanlageBId);
+        }
+    }
+
+    /**
+     * Kennzahlen für Monitoring/Admin.
+     */
+    public record Statistik(long treffer, long fehlgriffe, long eintraege, long verdraengt) {}
+
+    public ErgebnisCache(BerechnungsProperties properties) {
+        this.ergebnisse = Caffeine.newBuilder()
+                .maximumWeight(properties.getErgebnisCacheMaxWertpunkte())
+                .weigher((Schluessel k, BerechnungErgebnisDto v) ->
+                        1 + (v.wertentwicklung() != null ? v.wertentwicklung().size() : 0))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Schlüssel für einen Tarif. Kapitalanlage B zählt nur beim 3-Topf-Hybrid –
+     * für alle anderen Tarife teilen sich Anfragen mit unterschiedlichem B den Eintrag.
+     */
+    public static Schluessel schluessel(
+            Rechengrundlage grundlage,
+            long tarifStand,
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Renditereihe kaA,
+            Renditereihe kaB,
+            RechenModus rechenModus
+    ) {
+        boolean mitB = grundlage.tarif().getTarifTyp() == TarifTyp.HYBRID_3_TOPF;
+        Renditereihe b = mitB ? kaB : null;
+
+        return new Schluessel(
+                grundlage.tarif().getId(),
+                tarifStand,
+                beitragMonat,
+                laufzeitJahre,
+                kaA != null ? kaA.kapitalanlageId() : null,
+                kaA != null ? kaA.stand() : 0L,
+                b != null ? b.kapitalanlageId() : null,
+                b != null ? b.stand() : 0L,
+                rechenModus
+        );
+    }
+
+    public BerechnungErgebnisDto holen(Schluessel k) {
+        return ergebnisse.getIfPresent(k);
+    }
+
+    public void ablegen(Schluessel k, BerechnungErgebnisDto ergebnis) {
+        if (ergebnis == null || ergebnis.fehler() != null) return;
+        ergebnisse.put(k, ergebnis);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        // Kostenstruktur ohne Tarif betrifft keinen Eintrag (siehe TarifKatalog)
+        if (aenderung.tarifId() != null) {
+            ergebnisse.asMap().keySet().removeIf(k -> aenderung.tarifId().equals(k.tarifId()));
+        }
+
+        if (aenderung.kapitalanlageId() != null) {
+            ergebnisse.asMap().keySet().removeIf(k -> k.betrifftKapitalanlage(aenderung.kapitalanlageId()));
+        }
+    }
+
+    public Statistik statistik() {
+        CacheStats s = ergebnisse.stats();
+        return new Statistik(s.hitCount(), s.missCount(), ergebnisse.estimatedSize(), s.evictionCount());
+    }
+}
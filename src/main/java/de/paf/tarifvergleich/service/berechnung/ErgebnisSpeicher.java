@@ -0,0 +1,137 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.domain.RechenModus;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Vorberechnete Ergebnisse für alle aktiven Grid-Zellen x vorberechnete Kapitalanlagen
+ * (befüllt von der Vorberechnung, gelesen von BerechnungsService vor dem ErgebnisCache).
+ *
+ * Begrenzt wie der ErgebnisCache über das Gewicht (1 + Anzahl Wertpunkte), Obergrenze
+ * tarifvergleich.berechnung.ergebnis-speicher-max-wertpunkte. Verdrängte Zellen fehlen,
+ * bis die Vorberechnung ihren Tarif bzw. ihre Kapitalanlage wieder rechnet; Anfragen
+ * dazu gehen solange über den ErgebnisCache. Jeder Eintrag trägt den vollen ErgebnisCache-Schlüssel mit den Ständen, aus denen er
+ * gerechnet wurde – einen Treffer gibt es nur bei exakt gleichen Ständen. Ein veralteter
+ * Eintrag wird also nie ausgeliefert, auch bevor er neu gerechnet ist.
+ *
+ * Der GarantieModus des Requests ist weder Teil der Zelle noch des Schlüssels: der
+ * Rechenkern wertet ihn nicht aus (der Tarif bringt seinen eigenen mit), ein Eintrag
+ * gilt für alle Modi.
+ *
+ * Zellen, deren Eingaben sich geändert haben, werden bis zur Neuberechnung als
+ * "veraltet" geführt (Admin/Monitoring).
+ */
+@Component
+public class ErgebnisSpeicher {
+
+    /**
+     * Identität eines Eintrags, ohne Stände.
+     */
+    public record Zelle(
+            Long tarifId,
+            Integer beitragMonat,
+            Integer laufzeitJahre,
+            Long kapitalanlageAId,
+            Long kapitalanlageBId,
+            RechenModus rechenModus
+    ) {
+        boolean betrifftKapitalanlage(Long id) {
+            return id.equals(kapitalanlageAId) || id.equals(kapitalanlageBId);
+        }
+    }
+
+    private record Eintrag(ErgebnisCache.Schluessel schluessel, BerechnungErgebnisDto ergebnis) {}
+
+    public record Statistik(long eintraege, int veraltet, long treffer, long verdraengt) {}
+
+    private final Cache<Zelle, Eintrag> eintraege;
+    private final Set<Zelle> veraltet = ConcurrentHashMap.newKeySet();
+    private final LongAdder treffer = new LongAdder();
+
+    public ErgebnisSpeicher(BerechnungsProperties properties) {
+        this.eintraege = Caffeine.newBuilder()
+                .maximumWeight(properties.getErgebnisSpeicherMaxWertpunkte())
+                .weigher((Zelle z, Eintrag e) ->
+                        1 + (e.ergebnis().wertentwicklung() != null ? e.ergebnis().wertentwicklung().size() : 0))
+                .removalListener((Zelle z, Eintrag e, RemovalCause grund) -> {
+                    if (z != null && grund.wasEvicted()) veraltet.remove(z);
+                })
+                .recordStats()
+                .build();
+    }
+
+    public static Zelle zelle(ErgebnisCache.Schluessel k) {
+        return new Zelle(k.tarifId(), k.beitragMonat(), k.laufzeitJahre(),
+                k.kapitalanlageAId(), k.kapitalanlageBId(), k.rechenModus());
+    }
+
+    /**
+     * Ergebnis zum Schlüssel, null wenn nicht vorberechnet oder aus älteren Ständen.
+     */
+    public BerechnungErgebnisDto holen(ErgebnisCache.Schluessel k) {
+        Eintrag e = eintraege.getIfPresent(zelle(k));
+        if (e == null || !e.schluessel().equals(k)) return null;
+
+        treffer.increment();
+        return e.ergebnis();
+    }
+
+    /**
+     * Fehler-Ergebnisse werden nicht abgelegt; die Zelle gilt danach trotzdem als erledigt.
+     */
+    public void ablegen(ErgebnisCache.Schluessel k, BerechnungErgebnisDto ergebnis) {
+        Zelle z = zelle(k);
+        if (ergebnis != null && ergebnis.fehler() == null) {
+            eintraege.put(z, new Eintrag(k, ergebnis));
+        } else {
+            eintraege.invalidate(z);
+        }
+        veraltet.remove(z);
+    }
+
+    /**
+     * Markiert alle vorhandenen Einträge, auf die das Prädikat zutrifft, als veraltet.
+     */
+    public void markiereVeraltet(Predicate<Zelle> betroffen) {
+        for (Zelle z : eintraege.asMap().keySet()) {
+            if (betroffen.test(z)) veraltet.add(z);
+        }
+    }
+
+    public static Predicate<Zelle> tarif(Long tarifId) {
+        return z -> tarifId.equals(z.tarifId());
+    }
+
+    public static Predicate<Zelle> kapitalanlage(Long kapitalanlageId) {
+        return z -> z.betrifftKapitalanlage(kapitalanlageId);
+    }
+
+    /**
+     * Entfernt betroffene Einträge, die es im neuen Soll nicht mehr gibt
+     * (Kostenstruktur/Tarif/Kapitalanlage deaktiviert oder gelöscht).
+     */
+    public void behalteNur(Predicate<Zelle> betroffen, Set<Zelle> soll) {
+        eintraege.asMap().keySet().removeIf(z -> betroffen.test(z) && !soll.contains(z));
+        veraltet.removeIf(z -> betroffen.test(z) && !soll.contains(z));
+    }
+
+    public List<Zelle> veralteteZellen() {
+        return List.copyOf(veraltet);
+    }
+
+    public Statistik statistik() {
+        return new Statistik(eintraege.estimatedSize(), veraltet.size(), treffer.sum(), eintraege.stats().evictionCount());
+    }
+
+}
@@ -0,0 +1,124 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.GarantieModus;
+import de.paf.tarifvergleich.domain.Tarif;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wachstumsfaktoren des Garantietopfs: (1 + rM)^k für k = 0..n.
+ *
+ * Eine Tabelle pro effektivem Monatszins (garantiezins + Überschuss-Zuschlag),
+ * geteilt über alle Tarife und Requests mit demselben Zins. Jede Tabelle wird
+ * pro Prozess genau einmal gebaut (bzw. einmal verlängert, falls eine Laufzeit
+ * über STANDARD_MONATE hinaus angefragt wird).
+ */
+@Component
+public class GarantieFaktoren {
+
+    private static final MathContext MC = new MathContext(20, RoundingMode.HALF_UP);
+
+    // Platzhalter für Überschüsse (+0.5% p.a.)
+    private static final BigDecimal UEBERSCHUSS_PA = new BigDecimal("0.005");
+    private static final BigDecimal ZWOELF = new BigDecimal("12");
+
+    // längste Laufzeit im Grid (65 Jahre)
+    private static final int STANDARD_MONATE = 65 * 12;
+
+    private final ConcurrentHashMap<BigDecimal, Tabelle> tabellen = new ConcurrentHashMap<>();
+
+    /**
+     * Monatliche Garantierendite:
+     * - garantiezins ist p.a. (z.B. 0.0225)
+     * - wir rechnen grob p.a./12
+     * - Überschüsse: Dummy +0.5% p.a. (Platzhalter)
+     */
+    public BigDecimal monatsrendite(Tarif tarif) {
+        BigDecimal gzPa = tarif.getGarantiezins() == null ? BigDecimal.ZERO : tarif.getGarantiezins();
+        if (gzPa.compareTo(BigDecimal.ZERO) <= 0) return BigDecimal.ZERO;
+
+        BigDecimal addPa = BigDecimal.ZERO;
+        if (tarif.getGarantieModus() == GarantieModus.MIT_UEBERSCHUESSEN) {
+            addPa = UEBERSCHUSS_PA;
+        }
+
+        BigDecimal pa = gzPa.add(addPa, MC);
+        return pa.divide(ZWOELF, 12, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Tabelle für den effektiven Monatszins des Tarifs, mindestens bis restMonate = monate.
+     */
+    public Tabelle fuer(Tarif tarif, int monate) {
+        return tabelle(monatsrendite(tarif), monate);
+    }
+
+    public Tabelle tabelle(BigDecimal monatsrendite, int monate) {
+        BigDecimal key = monatsrendite.stripTrailingZeros();
+
+        Tabelle t = tabellen.get(key);
+        if (t != null && t.monate() >= monate) return t;
+
+        return tabellen.compute(key, (k, alt) -> (alt != null && alt.monate() >= monate)
+                ? alt
+                : Tabelle.bauen(k, Math.max(monate, STANDARD_MONATE)));
+    }
+
+    public int anzahlTabellen() {
+        return tabellen.size();
+    }
+
+    /**
+     * Unveränderliche Potenztabelle zu einem Monatszins.
+     */
+    public static final class Tabelle {
+
+        private final BigDecimal monatsrendite;
+        private final BigDecimal[] potenz;
+        private final double[] potenzDouble;
+
+        private Tabelle(BigDecimal monatsrendite, BigDecimal[] potenz, double[] potenzDouble) {
+            this.monatsrendite = monatsrendite;
+            this.potenz = potenz;
+            this.potenzDouble = potenzDouble;
+        }
+
+        static Tabelle bauen(BigDecimal rM, int monate) {
+            BigDecimal[] p = new BigDecimal[monate + 1];
+            double[] d = new double[monate + 1];
+
+            BigDecimal wachstum = BigDecimal.ONE.add(rM);
+            p[0] = BigDecimal.ONE;
+            d[0] = 1.0;
+            for (int k = 1; k <= monate; k++) {
+                // gleiche Multiplikationsfolge wie die frühere Schleife => identische Werte
+                p[k] = p[k - 1].multiply(wachstum, MC);
+                d[k] = p[k].doubleValue();
+            }
+            return new Tabelle(rM, p, d);
+        }
+
+        public BigDecimal monatsrendite() {
+            return monatsrendite;
+        }
+
+        public int monate() {
+            return potenz.length - 1;
+        }
+
+        /**
+         * Faktor: wie 1€ im Garantietopf in restMonate wächst.
+         */
+        public BigDecimal faktor(int restMonate) {
+            return restMonate <= 0 ? BigDecimal.ONE : potenz[restMonate];
+        }
+
+        public double faktorDouble(int restMonate) {
+            return restMonate <= 0 ? 1.0 : potenzDouble[restMonate];
+        }
+    }
+}
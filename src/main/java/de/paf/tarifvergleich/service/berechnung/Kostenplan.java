@@ -0,0 +1,339 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Kompilierte, unveränderliche Form einer Kostenstruktur (Grid-Zelle) samt Tarif-Konstanten.
+ *
+ * Die Kostenpunkte werden einmal in dichte Monats-Arrays umgerechnet
+ * (Index = Monat 1..gesamtMonate):
+ * - fixEuro:       fester Eurobetrag (EURO-Punkte, FIX-Basis, BEITRAG inkl. Minimum)
+ * - anteilBeitrag: Anteil vom Beitrag (BEITRAG ohne Minimum)
+ * - anteilKapital: Anteil vom Kapital (KAPITAL ohne Minimum)
+ * - Minimum-Punkte auf KAPITAL-Basis bleiben nichtlinear: max(kapital * anteil, minimum),
+ *   abgelegt als CSR (minStart[m] .. minStart[m+1]).
+ *
+ * Gültigkeit, Rhythmus, /100, /12 (JAHRLICH) und /60 bzw. /84 (VERTEILT_*) sind damit
+ * bereits eingerechnet. Der ReferenzRechenkern rechnet weiterhin direkt auf den Kostenpunkten.
+ */
+public final class Kostenplan {
+
+    private final Tarif tarif;
+    private final Long kostenstrukturId;
+    private final List<Kostenpunkt> kostenpunkte;
+
+    private final BigDecimal beitrag;
+    private final double beitragDouble;
+    private final int laufzeitJahre;
+    private final int gesamtMonate;
+
+    // Tarif-Konstanten
+    private final TarifTyp tarifTyp;
+    private final GarantieFaktoren.Tabelle garantie;
+    private final BigDecimal garantieNiveau;
+    private final BigDecimal topfBFloor;
+
+    // Kosten je Monat
+    private final double[] fixEuro;
+    private final double[] anteilBeitrag;
+    private final double[] anteilKapital;
+    private final int[] minStart;
+    private final double[] minAnteil;
+    private final double[] minBetrag;
+
+    // gleichBis[m]: letzter Monat ab m mit identischen (linearen) Kosten
+    private final int[] gleichBis;
+
+    private Kostenplan(
+            Tarif tarif,
+            Long kostenstrukturId,
+            List<Kostenpunkt> kostenpunkte,
+            BigDecimal beitrag,
+            int laufzeitJahre,
+            GarantieFaktoren.Tabelle garantie
+    ) {
+        this.tarif = tarif;
+        this.kostenstrukturId = kostenstrukturId;
+        this.kostenpunkte = kostenpunkte == null ? List.of() : List.copyOf(kostenpunkte);
+        this.beitrag = beitrag;
+        this.beitragDouble = beitrag.doubleValue();
+        this.laufzeitJahre = laufzeitJahre;
+        this.gesamtMonate = laufzeitJahre * 12;
+
+        this.tarifTyp = tarif.getTarifTyp() != null ? tarif.getTarifTyp() : TarifTyp.FONDS;
+        this.garantie = garantie;
+        this.garantieNiveau = clamp01(tarif.getGarantieNiveau());
+        this.topfBFloor = clamp01(tarif.getTopfBFloor());
+
+        this.fixEuro = new double[gesamtMonate + 1];
+        this.anteilBeitrag = new double[gesamtMonate + 1];
+        this.anteilKapital = new double[gesamtMonate + 1];
+        this.minStart = new int[gesamtMonate + 2];
+
+        int anzahlMin = zaehleMinimumEintraege();
+        this.minAnteil = new double[anzahlMin];
+        this.minBetrag = new double[anzahlMin];
+
+        fuelleArrays();
+
+        this.gleichBis = new int[gesamtMonate + 1];
+        fuelleSegmente();
+    }
+
+    /**
+     * Kompiliert die aktiven Kostenpunkte einer Grid-Zelle.
+     */
+    public static Kostenplan kompilieren(
+            Tarif tarif,
+            Long kostenstrukturId,
+            List<Kostenpunkt> kostenpunkte,
+            BigDecimal beitrag,
+            int laufzeitJahre,
+            GarantieFaktoren garantieFaktoren
+    ) {
+        GarantieFaktoren.Tabelle garantie = garantieFaktoren.fuer(tarif, laufzeitJahre * 12);
+        return new Kostenplan(tarif, kostenstrukturId, kostenpunkte, beitrag, laufzeitJahre, garantie);
+    }
+
+    // =========================================================
+    // Auswertung
+    // =========================================================
+
+    /**
+     * Kostensumme für Monat m (1-based) bei aktuellem Kapital.
+     */
+    public double kostenFuerMonat(int m, double kapital) {
+        double k = fixEuro[m] + beitragDouble * anteilBeitrag[m] + kapital * anteilKapital[m];
+
+        for (int i = minStart[m]; i < minStart[m + 1]; i++) {
+            double v = kapital * minAnteil[i];
+            if (v < 0.0) v = 0.0;
+            if (v < minBetrag[i]) v = minBetrag[i];
+            k += v;
+        }
+        return k > 0.0 ? k : 0.0;
+    }
+
+    /**
+     * true, wenn in Monat m ein KAPITAL-Punkt mit Mindestbetrag greift
+     * (Kosten sind dann nicht linear im Kapital).
+     */
+    public boolean hatNichtlineareKosten(int m) {
+        return minStart[m + 1] > minStart[m];
+    }
+
+    /**
+     * Letzter Monat ab m, bis zu dem fixEuro, anteilBeitrag und anteilKapital unverändert
+     * bleiben und keine Mindestkosten greifen (Monat m selbst bei nichtlinearen Kosten).
+     */
+    public int gleichBis(int m) {
+        return gleichBis[m];
+    }
+
+    public double fixEuro(int m) {
+        return fixEuro[m];
+    }
+
+    public double anteilBeitrag(int m) {
+        return anteilBeitrag[m];
+    }
+
+    public double anteilKapital(int m) {
+        return anteilKapital[m];
+    }
+
+    // =========================================================
+    // Getter
+    // =========================================================
+
+    public Tarif tarif() {
+        return tarif;
+    }
+
+    public Long kostenstrukturId() {
+        return kostenstrukturId;
+    }
+
+    public List<Kostenpunkt> kostenpunkte() {
+        return kostenpunkte;
+    }
+
+    public BigDecimal beitrag() {
+        return beitrag;
+    }
+
+    public double beitragDouble() {
+        return beitragDouble;
+    }
+
+    public int laufzeitJahre() {
+        return laufzeitJahre;
+    }
+
+    public int gesamtMonate() {
+        return gesamtMonate;
+    }
+
+    public TarifTyp tarifTyp() {
+        return tarifTyp;
+    }
+
+    /**
+     * Garantie-Wachstumstabelle zum effektiven Monatszins des Tarifs.
+     */
+    public GarantieFaktoren.Tabelle garantie() {
+        return garantie;
+    }
+
+    /**
+     * Garantie-Niveau, auf 0..1 begrenzt.
+     */
+    public BigDecimal garantieNiveau() {
+        return garantieNiveau;
+    }
+
+    /**
+     * Topf-B-Floor, auf 0..1 begrenzt.
+     */
+    public BigDecimal topfBFloor() {
+        return topfBFloor;
+    }
+
+    // =========================================================
+    // Kompilieren
+    // =========================================================
+
+    private int zaehleMinimumEintraege() {
+        int n = 0;
+        for (Kostenpunkt p : kostenpunkte) {
+            if (!istAktiv(p) || !istNichtlinear(p)) continue;
+            for (int m = 1; m <= gesamtMonate; m++) {
+                if (giltInMonat(p, m)) n++;
+            }
+        }
+        return n;
+    }
+
+    private void fuelleArrays() {
+        // 1) lineare Anteile direkt in die Monats-Arrays
+        for (Kostenpunkt p : kostenpunkte) {
+            if (!istAktiv(p) || istNichtlinear(p)) continue;
+
+            double wert = nz(p.getWert());
+            double min = nz(p.getMinimumEuro());
+            int divisor = divisor(p.getRhythmus());
+
+            for (int m = 1; m <= gesamtMonate; m++) {
+                if (!giltInMonat(p, m)) continue;
+
+                if (p.getTyp() == KostenTyp.EURO) {
+                    double euro = Math.max(wert / divisor, 0.0);
+                    if (min > 0.0) euro = Math.max(euro, min);
+                    fixEuro[m] += euro;
+                    continue;
+                }
+
+                double anteil = prozentAnteil(p, wert, divisor);
+                switch (basis(p)) {
+                    case FIX -> {
+                        if (min > 0.0) fixEuro[m] += min;
+                    }
+                    case BEITRAG -> {
+                        if (min > 0.0 || anteil < 0.0) {
+                            // Beitrag ist je Plan fest => Minimum direkt auflösen
+                            double kosten = Math.max(beitragDouble * anteil, 0.0);
+                            if (min > 0.0) kosten = Math.max(kosten, min);
+                            fixEuro[m] += kosten;
+                        } else {
+                            anteilBeitrag[m] += anteil;
+                        }
+                    }
+                    case KAPITAL -> anteilKapital[m] += anteil;
+                }
+            }
+        }
+
+        // 2) nichtlineare KAPITAL-Punkte je Monat hintereinander (CSR)
+        int i = 0;
+        for (int m = 1; m <= gesamtMonate; m++) {
+            minStart[m] = i;
+            for (Kostenpunkt p : kostenpunkte) {
+                if (!istAktiv(p) || !istNichtlinear(p) || !giltInMonat(p, m)) continue;
+                minAnteil[i] = prozentAnteil(p, nz(p.getWert()), divisor(p.getRhythmus()));
+                minBetrag[i] = Math.max(nz(p.getMinimumEuro()), 0.0);
+                i++;
+            }
+        }
+        minStart[gesamtMonate + 1] = i;
+    }
+
+    private void fuelleSegmente() {
+        if (gesamtMonate < 1) return;
+
+        gleichBis[gesamtMonate] = gesamtMonate;
+        for (int m = gesamtMonate - 1; m >= 1; m--) {
+            boolean gleich = !hatNichtlineareKosten(m) && !hatNichtlineareKosten(m + 1)
+                    && fixEuro[m] == fixEuro[m + 1]
+                    && anteilBeitrag[m] == anteilBeitrag[m + 1]
+                    && anteilKapital[m] == anteilKapital[m + 1];
+            gleichBis[m] = gleich ? gleichBis[m + 1] : m;
+        }
+    }
+
+    private static boolean istAktiv(Kostenpunkt p) {
+        return p != null && p.isAktiv() && p.getRhythmus() != null;
+    }
+
+    /**
+     * KAPITAL-Prozentpunkt mit Mindestbetrag (oder negativem Wert, der auf 0 begrenzt wird).
+     */
+    private static boolean istNichtlinear(Kostenpunkt p) {
+        if (p.getTyp() == KostenTyp.EURO || basis(p) != KostenBasis.KAPITAL) return false;
+        return nz(p.getMinimumEuro()) > 0.0 || nz(p.getWert()) < 0.0;
+    }
+
+    private static KostenBasis basis(Kostenpunkt p) {
+        return p.getBasis() != null ? p.getBasis() : KostenBasis.FIX;
+    }
+
+    private static double prozentAnteil(Kostenpunkt p, double wert, int divisor) {
+        double pct = wert / 100.0;
+        if (p.getProzentPeriode() == ProzentPeriode.JAHRLICH) pct /= 12.0;
+        return pct / divisor;
+    }
+
+    private static int divisor(KostenRhythmus r) {
+        return switch (r) {
+            case VERTEILT_5_JAHRE -> 60;
+            case VERTEILT_7_JAHRE -> 84;
+            default -> 1;
+        };
+    }
+
+    private static boolean giltInMonat(Kostenpunkt p, int m) {
+        Integer von = p.getGueltigVonMonat();
+        Integer bis = p.getGueltigBisMonat();
+        if (von != null && m < von) return false;
+        if (bis != null && m > bis) return false;
+
+        return switch (p.getRhythmus()) {
+            case EINMALIG -> (m == 1);
+            case MONATLICH -> true;
+            case JAHRLICH -> (m % 12 == 0);
+            case VERTEILT_5_JAHRE -> (m >= 1 && m <= 60);
+            case VERTEILT_7_JAHRE -> (m >= 1 && m <= 84);
+        };
+    }
+
+    private static double nz(BigDecimal v) {
+        return v == null ? 0.0 : v.doubleValue();
+    }
+
+    private static BigDecimal clamp01(BigDecimal v) {
+        if (v == null || v.signum() < 0) return BigDecimal.ZERO;
+        return v.compareTo(BigDecimal.ONE) > 0 ? BigDecimal.ONE : v;
+    }
+}
@@ -0,0 +1,59 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kostenpläne je (Kostenstruktur-Id, Stand).
+ *
+ * Der Stand ist der des Katalog-Snapshots, aus dem die Rechengrundlage stammt.
+ * Ein Plan passt damit immer exakt zu den Daten seines Snapshots; sobald ein
+ * neuerer Stand angefragt wird, fallen alle älteren Pläne raus.
+ *
+ * Anfragen, die noch mit einem älteren Snapshot rechnen, bekommen ihren Plan frisch
+ * kompiliert, er wird aber nicht abgelegt – sonst blieben Pläne alter Stände liegen,
+ * bis der nächste Stand kommt.
+ */
+@Component
+@RequiredArgsConstructor
+public class KostenplanCache {
+
+    private final GarantieFaktoren garantieFaktoren;
+
+    private final AtomicLong neuesterStand = new AtomicLong();
+    private final ConcurrentHashMap<Schluessel, Kostenplan> plaene = new ConcurrentHashMap<>();
+
+    private record Schluessel(Long kostenstrukturId, long stand) {}
+
+    public Kostenplan plan(long stand, Rechengrundlage g, BigDecimal beitrag, int laufzeitJahre) {
+        verwerfeAeltereAls(stand);
+
+        Long ksId = g.kostenstruktur() != null ? g.kostenstruktur().getId() : null;
+        if (ksId == null || stand < neuesterStand.get()) {
+            return Kostenplan.kompilieren(g.tarif(), ksId, g.kostenpunkte(), beitrag, laufzeitJahre, garantieFaktoren);
+        }
+
+        Schluessel schluessel = new Schluessel(ksId, stand);
+        Kostenplan plan = plaene.computeIfAbsent(schluessel, k ->
+                Kostenplan.kompilieren(g.tarif(), ksId, g.kostenpunkte(), beitrag, laufzeitJahre, garantieFaktoren)
+        );
+
+        // neuerer Stand kam während des Kompilierens: das Aufräumen kann den Eintrag verpasst haben
+        if (stand < neuesterStand.get()) plaene.remove(schluessel);
+        return plan;
+    }
+
+    public int anzahlPlaene() {
+        return plaene.size();
+    }
+
+    private void verwerfeAeltereAls(long stand) {
+        long bisher = neuesterStand.get();
+        if (stand <= bisher || !neuesterStand.compareAndSet(bisher, stand)) return;
+        plaene.keySet().removeIf(k -> k.stand() < stand);
+    }
+}
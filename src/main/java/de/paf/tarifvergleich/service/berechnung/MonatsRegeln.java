@@ -0,0 +1,24 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+/**
+ * Tarif-eigene Regeln, die die Rechenkerne in jedem Monat zusätzlich aufrufen
+ * (aus Tarif.berechnungsScript, siehe {@link TarifSkripte}). null = keine Regeln.
+ *
+ * Eine Instanz gehört für die Dauer einer Simulation genau einem Thread.
+ */
+public interface MonatsRegeln {
+
+    /**
+     * Zusätzliche Kosten in Monat m (Euro), werden zu den Kosten aus dem Kostenplan addiert.
+     *
+     * @param kapital Kapital nach Beitrag, vor Kosten (Basis wie bei den KAPITAL-Kostenpunkten)
+     */
+    double kosten(int m, double kapital, double summeBeitraege);
+
+    /**
+     * Gutschrift (negativ: Abzug) in Monat m nach der Rendite, geht in Topf 1.
+     *
+     * @param kapital Gesamtkapital aller Töpfe nach der Rendite
+     */
+    double bonus(int m, double kapital, double summeBeitraege);
+}
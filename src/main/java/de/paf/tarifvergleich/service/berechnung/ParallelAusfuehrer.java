@@ -0,0 +1,162 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Führt unabhängige Aufgaben (z.B. ein Tarif je Aufgabe) auf virtuellen Threads aus.
+ *
+ * - Reihenfolge der Ergebnisse = Reihenfolge der Eingaben
+ * - prozessweit höchstens "parallelitaet" Aufgaben gleichzeitig (fairer Semaphore),
+ *   damit z.B. der DB-Pool nicht leerläuft
+ * - parallelitaet = 1 => alles sequenziell im aufrufenden Thread
+ * - Hintergrundarbeit (Vorberechnung) über imHintergrund mit eigenem, kleinerem Kontingent
+ *   (vorberechnungParallelitaet); sie belegt nie einen Platz der Anfragen
+ *
+ * Aufgaben sollen ihre Fehler selbst abfangen; eine durchgereichte Exception
+ * bricht den gesamten Aufruf ab. Nicht verschachtelt nutzen (Aufgabe ruft fuerAlle),
+ * sonst können sich die Plätze gegenseitig blockieren.
+ */
+@Component
+public class ParallelAusfuehrer implements DisposableBean {
+
+    private final int parallelitaet;
+    private final Semaphore plaetze;
+    private final int hintergrundParallelitaet;
+    private final Semaphore hintergrundPlaetze;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ParallelAusfuehrer(BerechnungsProperties properties) {
+        this.parallelitaet = Math.max(1, properties.getParallelitaet());
+        this.plaetze = new Semaphore(parallelitaet, true);
+        this.hintergrundParallelitaet = Math.max(1, properties.getVorberechnungParallelitaet());
+        this.hintergrundPlaetze = new Semaphore(hintergrundParallelitaet, true);
+    }
+
+    public <T, R> List<R> fuerAlle(List<T> eingaben, Function<? super T, ? extends R> aufgabe) {
+        if (parallelitaet <= 1 || eingaben.size() <= 1) {
+            List<R> out = new ArrayList<>(eingaben.size());
+            for (T e : eingaben) out.add(aufgabe.apply(e));
+            return out;
+        }
+
+        List<Future<R>> futures = new ArrayList<>(eingaben.size());
+        for (T e : eingaben) {
+            futures.add(executor.submit(() -> mitPlatz(plaetze, e, aufgabe)));
+        }
+
+        List<R> out = new ArrayList<>(futures.size());
+        try {
+            for (Future<R> f : futures) {
+                out.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Berechnung unterbrochen", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+        return out;
+    }
+
+    /**
+     * Wie fuerAlle, aber jedes Ergebnis geht sofort an die Senke, sobald es fertig ist
+     * (Reihenfolge = Fertigstellung, nicht Eingabe). Es laufen höchstens "parallelitaet"
+     * Aufgaben dieses Aufrufs gleichzeitig, die nächste startet erst, wenn eine fertig ist –
+     * der Speicher hängt damit nicht von der Anzahl Eingaben ab.
+     *
+     * Die Senke läuft immer im aufrufenden Thread (z.B. Schreiben auf einen Response-Stream).
+     * Ein langsamer Empfänger bremst so auch die Berechnung. Wirft die Senke, werden
+     * die laufenden Aufgaben abgebrochen.
+     */
+    public <T, R> void jeFertig(List<T> eingaben, Function<? super T, ? extends R> aufgabe, Consumer<? super R> senke) {
+        jeFertig(eingaben, aufgabe, senke, plaetze, parallelitaet);
+    }
+
+    /**
+     * Wie jeFertig ohne Senke, aber auf dem Hintergrund-Kontingent: höchstens
+     * vorberechnungParallelitaet Aufgaben gleichzeitig, unabhängig von den Anfragen.
+     */
+    public <T> void imHintergrund(List<T> eingaben, Consumer<? super T> aufgabe) {
+        jeFertig(eingaben, e -> {
+            aufgabe.accept(e);
+            return e;
+        }, e -> {}, hintergrundPlaetze, hintergrundParallelitaet);
+    }
+
+    private <T, R> void jeFertig(
+            List<T> eingaben,
+            Function<? super T, ? extends R> aufgabe,
+            Consumer<? super R> senke,
+            Semaphore kontingent,
+            int breite
+    ) {
+        if (breite <= 1 || eingaben.size() <= 1) {
+            for (T e : eingaben) senke.accept(aufgabe.apply(e));
+            return;
+        }
+
+        CompletionService<R> fertig = new ExecutorCompletionService<>(executor);
+        List<Future<R>> laufend = new ArrayList<>(breite);
+        Iterator<T> offen = eingaben.iterator();
+
+        try {
+            while (laufend.size() < breite && offen.hasNext()) {
+                T e = offen.next();
+                laufend.add(fertig.submit(() -> mitPlatz(kontingent, e, aufgabe)));
+            }
+            while (!laufend.isEmpty()) {
+                Future<R> f = fertig.take();
+                laufend.remove(f);
+                R ergebnis = f.get();
+
+                if (offen.hasNext()) {
+                    T e = offen.next();
+                    laufend.add(fertig.submit(() -> mitPlatz(kontingent, e, aufgabe)));
+                }
+                senke.accept(ergebnis);
+            }
+        } catch (InterruptedException e) {
+            laufend.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Berechnung unterbrochen", e);
+        } catch (ExecutionException e) {
+            laufend.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            laufend.forEach(f -> f.cancel(true));
+            throw e;
+        }
+    }
+
+    public int getParallelitaet() {
+        return parallelitaet;
+    }
+
+    private static <T, R> R mitPlatz(Semaphore kontingent, T eingabe, Function<? super T, ? extends R> aufgabe)
+            throws InterruptedException {
+        kontingent.acquire();
+        try {
+            return aufgabe.apply(eingabe);
+        } finally {
+            kontingent.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.Kostenpunkt;
+import de.paf.tarifvergleich.domain.Kostenstruktur;
+import de.paf.tarifvergleich.domain.Tarif;
+
+import java.util.List;
+
+/**
+ * Vorab geladene Daten eines Tarifs für eine Grid-Zelle (Beitrag/Laufzeit):
+ * Tarif (inkl. Anbieter), die aktive Kostenstruktur und deren aktive Kostenpunkte.
+ */
+public record Rechengrundlage(
+        Tarif tarif,
+        Kostenstruktur kostenstruktur,
+        List<Kostenpunkt> kostenpunkte
+) {}
@@ -0,0 +1,37 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+
+/**
+ * Simuliert einen einzelnen Tarif Monat für Monat.
+ * Implementierungen dürfen keinen Zustand zwischen Aufrufen halten (werden parallel genutzt).
+ */
+public interface Rechenkern {
+
+    /**
+     * @param plan Tarif, Grid-Zelle (Beitrag/Laufzeit) und kompilierte Kosten
+     * @param kaA  Renditen Kapitalanlage A (null => Rendite 0)
+     * @param kaB  Renditen Kapitalanlage B, nur 3-Topf (null => Rendite 0)
+     */
+    default BerechnungErgebnisDto simuliere(
+            Kostenplan plan,
+            int einstiegsalter,
+            Renditereihe kaA,
+            Renditereihe kaB
+    ) {
+        return simuliere(plan, einstiegsalter, kaA, kaB, null);
+    }
+
+    /**
+     * Wie oben, zusätzlich mit tarif-eigenen Regeln (Tarif-Skript).
+     *
+     * @param regeln null => keine
+     */
+    BerechnungErgebnisDto simuliere(
+            Kostenplan plan,
+            int einstiegsalter,
+            Renditereihe kaA,
+            Renditereihe kaB,
+            MonatsRegeln regeln
+    );
+}
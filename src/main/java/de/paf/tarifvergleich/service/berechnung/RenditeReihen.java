@@ -0,0 +1,139 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.repository.KapitalanlageRepository;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prozessweiter Cache: Kapitalanlage-Id -> {@link Renditereihe}.
+ *
+ * Die Monatsrenditen (eine gepackte Spalte renditen je Kapitalanlage, siehe
+ * RenditenKodierung) werden pro Kapitalanlage nur einmal geladen und direkt in die
+ * Arrays der Reihe dekodiert, statt bei jeder Berechnung. Nach einer Admin-Änderung an
+ * der Kapitalanlage wird der Eintrag verworfen und beim nächsten Zugriff neu geladen.
+ *
+ * Geladen wird außerhalb der Map: je Id ein CompletableFuture, auf das nur Aufrufer
+ * derselben Id warten (kein DB-Zugriff unter dem Bin-Lock der ConcurrentHashMap, kein
+ * Festhalten des Carrier-Threads bei virtuellen Threads).
+ *
+ * Ist eine Serien-Datei eingeblendet ({@link SerienSpeicher}), kommen die Reihen von dort:
+ * ohne Kopie und ohne Eintrag in diesem Cache.
+ */
+@Component
+@Slf4j
+public class RenditeReihen {
+
+    private final KapitalanlageRepository kapitalanlageRepository;
+    private final SerienSpeicher serienSpeicher;
+    private final BerechnungsMetriken metriken;
+    private final TransactionTemplate ladeTransaktion;
+
+    private final ConcurrentHashMap<Long, CompletableFuture<Renditereihe>> reihen = new ConcurrentHashMap<>();
+    private final AtomicLong ladeZaehler = new AtomicLong();
+
+    public RenditeReihen(
+            KapitalanlageRepository kapitalanlageRepository,
+            SerienSpeicher serienSpeicher,
+            BerechnungsMetriken metriken,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.kapitalanlageRepository = kapitalanlageRepository;
+        this.serienSpeicher = serienSpeicher;
+        this.metriken = metriken;
+
+        this.ladeTransaktion = new TransactionTemplate(transactionManager);
+        this.ladeTransaktion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ladeTransaktion.setReadOnly(true);
+    }
+
+    /**
+     * Reihe zur Kapitalanlage, null wenn id null ist oder die Kapitalanlage nicht existiert.
+     */
+    public Renditereihe fuer(Long kapitalanlageId) {
+        if (kapitalanlageId == null) return null;
+
+        Renditereihe r = serienSpeicher.reihe(SerienDatei.Art.KAPITALANLAGE, kapitalanlageId);
+        if (r != null) return r;
+
+        CompletableFuture<Renditereihe> f = reihen.get(kapitalanlageId);
+        if (f == null) {
+            CompletableFuture<Renditereihe> neu = new CompletableFuture<>();
+            f = reihen.putIfAbsent(kapitalanlageId, neu);
+            if (f == null) return ladenIn(kapitalanlageId, neu);
+        }
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /**
+     * Lädt für alle Aufrufer dieser Id; nicht vorhandene Kapitalanlagen und Fehler bleiben
+     * nicht im Cache.
+     */
+    private Renditereihe ladenIn(Long id, CompletableFuture<Renditereihe> f) {
+        Renditereihe r;
+        try {
+            r = laden(id);
+        } catch (RuntimeException e) {
+            reihen.remove(id, f);
+            f.completeExceptionally(e);
+            throw e;
+        }
+        if (r == null) reihen.remove(id, f);
+        f.complete(r);
+        return r;
+    }
+
+    private Renditereihe laden(Long id) {
+        Renditereihe r = metriken.phase(BerechnungsMetriken.PHASE_RENDITEN_LADEN, () ->
+                ladeTransaktion.execute(tx -> kapitalanlageRepository.findById(id)
+                        .map(k -> Renditereihe.aus(k, ladeZaehler.incrementAndGet()))
+                        .orElse(null)));
+
+        if (r != null) {
+            log.info("Renditereihe '{}' geladen: {} Monate, ~{} KB (Cache gesamt ~{} KB, {} Reihen)",
+                    r.name(), r.laenge(), r.speicherBytes() / 1024,
+                    (speicherBytes() + r.speicherBytes()) / 1024, reihen.size());
+        }
+        return r;
+    }
+
+    // vor der Vorberechnung, die die neu geladene Reihe lesen soll
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        if (aenderung.kapitalanlageId() != null) reihen.remove(aenderung.kapitalanlageId());
+    }
+
+    public int anzahlReihen() {
+        return reihen.size();
+    }
+
+    /**
+     * Geschätzter Speicherbedarf aller gecachten Reihen in Bytes.
+     */
+    public long speicherBytes() {
+        long summe = 0;
+        for (CompletableFuture<Renditereihe> f : reihen.values()) {
+            // nur fertig geladene Reihen
+            if (f.state() == Future.State.SUCCESS && f.resultNow() != null) summe += f.resultNow().speicherBytes();
+        }
+        return summe;
+    }
+}
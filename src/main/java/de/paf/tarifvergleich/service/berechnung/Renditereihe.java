@@ -0,0 +1,232 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.domain.KapitalanlageTyp;
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Unveränderliche Monatsrenditen einer Kapitalanlage (1-based, Monat 1..laenge).
+ *
+ * Neben den Renditen (BigDecimal für REFERENZ, double für SCHNELL) liegt ein
+ * Präfix-Produkt P[m] = (1 + r_1) · ... · (1 + r_m) mit P[0] = 1. Das Wachstum
+ * von Monat von bis Monat bis ist damit P[bis] / P[von-1] in O(1).
+ * Monate hinter der Reihe haben Rendite 0 (wie bisher).
+ *
+ * Reihen aus der {@link SerienDatei} haben keine eigenen Arrays: Werte und Präfix-Produkt
+ * stehen in der Datei und werden bei jedem Zugriff aus dem eingeblendeten Puffer gelesen
+ * (renditeDouble und wachstum ohne Allokation, wachstum ebenfalls O(1)). rendite() erzeugt
+ * dort außerhalb des konstanten Anfangs je Aufruf ein BigDecimal – der REFERENZ-Kern
+ * tauscht bei eingeblendeten Reihen also Heap gegen Allokationen je Monat.
+ */
+public final class Renditereihe {
+
+    // grobe Objektgrößen (64 Bit, compressed oops) für die Speicher-Schätzung
+    private static final long ARRAY_HEADER = 16;
+    private static final long BIGDECIMAL_OBJEKT = 40;
+
+    private final Long kapitalanlageId;
+    private final String name;
+    private final KapitalanlageTyp typ;
+    private final BigDecimal annualRate;
+
+    /**
+     * Lade-Zähler aus {@link RenditeReihen}: unterscheidet neu geladene Reihen
+     * derselben Kapitalanlage (z.B. für abgeleitete Caches).
+     */
+    private final long stand;
+
+    private final int laenge;
+
+    // Heap-Reihe (aus der Datenbank)
+    private final BigDecimal[] renditen;
+    private final double[] renditenDouble;
+    private final double[] praefix;
+
+    // eingeblendete Reihe: Wert von Monat m = daten.getLong(basis + 8 * (m - 1)) / 10^skala,
+    // P[m] = daten.getDouble(praefixBasis + 8 * m)
+    private final ByteBuffer daten;
+    private final int basis;
+    private final int praefixBasis;
+    private final int skala;
+    private final double teiler;
+    private final BigDecimal konstant;
+
+    // Monate 1..konstantBis haben alle dieselbe Rendite (0 = leere Reihe)
+    private final int konstantBis;
+
+    private Renditereihe(Kapitalanlage k, long stand, RenditenKodierung.Werte rs) {
+        this.kapitalanlageId = k.getId();
+        this.name = k.getName();
+        this.typ = k.getTyp();
+        this.annualRate = k.getAnnualRate();
+        this.stand = stand;
+        this.daten = null;
+        this.basis = 0;
+        this.praefixBasis = 0;
+        this.skala = rs.skala();
+        this.teiler = 0.0;
+        this.konstant = null;
+
+        int l = rs.laenge();
+        this.laenge = l;
+        this.renditen = new BigDecimal[l + 1];
+        this.renditenDouble = new double[l + 1];
+        this.praefix = new double[l + 1];
+
+        renditen[0] = BigDecimal.ZERO;
+        praefix[0] = 1.0;
+        long[] u = rs.unskaliert();
+        for (int m = 1; m <= l; m++) {
+            // gleicher Wert wie im Vormonat (FIXED) => dieselbe BigDecimal-Instanz
+            renditen[m] = m > 1 && u[m - 1] == u[m - 2] ? renditen[m - 1] : rs.rendite(m - 1);
+            renditenDouble[m] = rs.renditeDouble(m - 1);
+            praefix[m] = praefix[m - 1] * (1.0 + renditenDouble[m]);
+        }
+
+        int gleich = l;
+        for (int m = 2; m <= l; m++) {
+            if (renditenDouble[m] != renditenDouble[1]) {
+                gleich = m - 1;
+                break;
+            }
+        }
+        this.konstantBis = gleich;
+    }
+
+    private Renditereihe(Long kapitalanlageId, String name, long stand,
+                         ByteBuffer daten, int basis, int laenge, int skala, int konstantBis) {
+        this.kapitalanlageId = kapitalanlageId;
+        this.name = name;
+        this.typ = null;
+        this.annualRate = null;
+        this.stand = stand;
+        this.laenge = laenge;
+        this.renditen = null;
+        this.renditenDouble = null;
+        this.praefix = null;
+        this.daten = daten;
+        this.basis = basis;
+        this.praefixBasis = basis + (laenge << 3);
+        this.skala = skala;
+        this.teiler = Math.pow(10, skala);
+        this.konstantBis = konstantBis;
+        // konstanter Anfang (FIXED: die ganze Reihe) => eine Instanz
+        this.konstant = konstantBis > 0 ? BigDecimal.valueOf(unskaliert(1), skala) : null;
+    }
+
+    /**
+     * Dekodiert die gepackten Renditen der Kapitalanlage direkt in die Arrays.
+     */
+    public static Renditereihe aus(Kapitalanlage k, long stand) {
+        return new Renditereihe(k, stand, RenditenKodierung.dekodieren(k.getRenditenDaten()));
+    }
+
+    /**
+     * Sicht auf laenge Werte ab Byte-Offset basis im (little endian) Puffer, ohne Kopie;
+     * direkt dahinter das Präfix-Produkt (laenge + 1 doubles).
+     */
+    static Renditereihe gemappt(Long kapitalanlageId, String name, long stand,
+                                ByteBuffer daten, int basis, int laenge, int skala, int konstantBis) {
+        return new Renditereihe(kapitalanlageId, name, stand, daten, basis, laenge, skala, konstantBis);
+    }
+
+    // =========================================================
+    // Renditen
+    // =========================================================
+
+    public int laenge() {
+        return laenge;
+    }
+
+    /**
+     * Monatsrendite (1-based), 0 außerhalb der Reihe.
+     */
+    public BigDecimal rendite(int monat) {
+        if (monat < 1 || monat > laenge) return BigDecimal.ZERO;
+        if (daten == null) return renditen[monat];
+        return monat <= konstantBis ? konstant : BigDecimal.valueOf(unskaliert(monat), skala);
+    }
+
+    public double renditeDouble(int monat) {
+        if (monat < 1 || monat > laenge) return 0.0;
+        return daten == null ? renditenDouble[monat] : unskaliert(monat) / teiler;
+    }
+
+    private long unskaliert(int monat) {
+        return daten.getLong(basis + ((monat - 1) << 3));
+    }
+
+    private double praefix(int monat) {
+        return daten == null ? praefix[monat] : daten.getDouble(praefixBasis + (monat << 3));
+    }
+
+    /**
+     * Die Rendite, wenn sie in allen Monaten 1..bisMonat gleich ist (z.B. FIXED 3/6/9 %),
+     * sonst NaN. Monate hinter der Reihe zählen mit Rendite 0.
+     */
+    public double konstanteRendite(int bisMonat) {
+        int l = laenge();
+        if (bisMonat <= konstantBis) return bisMonat < 1 ? 0.0 : renditeDouble(1);
+
+        // Reihe zu kurz: nur konstant, wenn sie selbst durchgehend 0 ist
+        boolean nullReihe = konstantBis == l && (l == 0 || renditeDouble(1) == 0.0);
+        return nullReihe ? 0.0 : Double.NaN;
+    }
+
+    /**
+     * Wachstum von 1€ über die Monate von..bis (beide inklusive, 1-based).
+     */
+    public double wachstum(int von, int bis) {
+        int l = laenge();
+        if (von < 1) von = 1;
+        if (bis > l) bis = l;
+        if (von > bis) return 1.0;
+
+        double nenner = praefix(von - 1);
+        if (nenner == 0.0) {
+            // -100% in der Reihe vor "von": direkt multiplizieren
+            double v = 1.0;
+            for (int m = von; m <= bis; m++) v *= 1.0 + renditeDouble(m);
+            return v;
+        }
+        return praefix(bis) / nenner;
+    }
+
+    // =========================================================
+    // Getter
+    // =========================================================
+
+    public Long kapitalanlageId() {
+        return kapitalanlageId;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public KapitalanlageTyp typ() {
+        return typ;
+    }
+
+    public BigDecimal annualRate() {
+        return annualRate;
+    }
+
+    public long stand() {
+        return stand;
+    }
+
+    /**
+     * Geschätzter Heap-Bedarf in Bytes (Arrays + BigDecimal-Objekte), 0 für eingeblendete Reihen.
+     */
+    public long speicherBytes() {
+        if (daten != null) return 0;
+        long n = renditen.length;
+        return (ARRAY_HEADER + 4 * n)            // BigDecimal[]
+                + n * BIGDECIMAL_OBJEKT          // BigDecimal-Werte
+                + 2 * (ARRAY_HEADER + 8 * n);    // renditenDouble + praefix
+    }
+}
@@ -0,0 +1,444 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.WertpunktDto;
+import de.paf.tarifvergleich.domain.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schneller Rechenkern auf primitiven doubles.
+ *
+ * Fachlich identisch zum {@link ReferenzRechenkern}: gleiche Reihenfolge
+ * (Beitrag -> Kosten -> Allokation -> Rendite), gleiche Klammerungen.
+ * Kosten kommen aus dem kompilierten {@link Kostenplan}, Renditen und Faktoren
+ * werden VOR der Monatsschleife in Arrays umgerechnet, in der Schleife selbst
+ * wird nichts allokiert.
+ *
+ * Toleranz gegenüber REFERENZ (endwert und jeder Wert eines WertpunktDto):
+ *   |schnell - referenz| <= max(TOLERANZ_ABSOLUT, TOLERANZ_RELATIV * |referenz|)
+ * also 1 Cent bzw. 1e-9 relativ. Die Referenz rundet einzelne Zwischenwerte
+ * (Kosten auf 6, Prozentsätze/Garantiezins auf 12 Nachkommastellen), double nicht –
+ * daher kommt der Großteil der Abweichung.
+ */
+@Component
+@RequiredArgsConstructor
+public class SchnellRechenkern implements Rechenkern {
+
+    public static final double TOLERANZ_ABSOLUT = 0.01;
+    public static final double TOLERANZ_RELATIV = 1e-9;
+
+    private static final double EPS = 1e-10;
+
+    private final TopfBFloorIndex topfBFloorIndex;
+
+    /**
+     * Prüft, ob ein Wert aus dem schnellen Kern innerhalb der dokumentierten Toleranz liegt.
+     */
+    public static boolean innerhalbToleranz(BigDecimal referenz, BigDecimal schnell) {
+        double r = referenz == null ? 0.0 : referenz.doubleValue();
+        double s = schnell == null ? 0.0 : schnell.doubleValue();
+        return Math.abs(s - r) <= Math.max(TOLERANZ_ABSOLUT, TOLERANZ_RELATIV * Math.abs(r));
+    }
+
+    @Override
+    public BerechnungErgebnisDto simuliere(
+            Kostenplan plan,
+            int einstiegsalter,
+            Renditereihe kaA,
+            Renditereihe kaB,
+            MonatsRegeln regeln
+    ) {
+        int gesamtMonate = plan.gesamtMonate();
+        Jahreswerte jw = new Jahreswerte(gesamtMonate / 12);
+
+        TopfBFloorIndex.Index bIndex = plan.tarifTyp() == TarifTyp.HYBRID_3_TOPF
+                ? topfBFloorIndex.fuer(kaB, plan.topfBFloor())
+                : null;
+
+        // FONDS mit konstanter Rendite (FIXED): segmentweise geschlossen statt Monat für Monat (nicht mit Regeln)
+        double rKonstant = kaA != null && regeln == null ? kaA.konstanteRendite(gesamtMonate) : Double.NaN;
+        double endwert = plan.tarifTyp() == TarifTyp.FONDS && !Double.isNaN(rKonstant)
+                ? simuliereFondspoliceKonstant(plan, rKonstant, jw)
+                : simulierePfad(plan, renditen(kaA, gesamtMonate), renditen(kaB, gesamtMonate), bIndex, regeln, jw);
+
+        Tarif tarif = plan.tarif();
+        return new BerechnungErgebnisDto(
+                tarif.getId(),
+                tarif.getTarifName(),
+                tarif.getTarifCode(),
+                tarif.getAnbieter() != null ? tarif.getAnbieter().getName() : "",
+                BigDecimal.valueOf(endwert),
+                jw.toDtos(),
+                null
+        );
+    }
+
+    /**
+     * Ein einzelner Pfad (Monte Carlo): rA ersetzt die Renditen von Kapitalanlage A,
+     * rB/bIndex kommen wie gewohnt aus Kapitalanlage B. Beide Arrays 1-based, Länge > gesamtMonate.
+     * regeln darf null sein. jw wird überschrieben und kann über Pfade hinweg wiederverwendet werden.
+     *
+     * @return Endwert
+     */
+    double simulierePfad(
+            Kostenplan plan, double[] rA, double[] rB, TopfBFloorIndex.Index bIndex, MonatsRegeln regeln, Jahreswerte jw
+    ) {
+        return switch (plan.tarifTyp()) {
+            case FONDS -> simuliereFondspolice(plan, rA, regeln, jw);
+            case HYBRID_2_TOPF -> simuliereHybrid2Topf(plan, rA, regeln, jw);
+            case HYBRID_3_TOPF -> simuliereHybrid3Topf(plan, rA, rB, bIndex, regeln, jw);
+        };
+    }
+
+    // =========================================================
+    // 1) FONDS (nur Topf 1)
+    // =========================================================
+    private double simuliereFondspolice(Kostenplan plan, double[] rA, MonatsRegeln regeln, Jahreswerte jw) {
+        double beitrag = plan.beitragDouble();
+        int gesamtMonate = plan.gesamtMonate();
+
+        double topfA = 0.0;
+        double sumBeitraege = 0.0;
+
+        for (int m = 1; m <= gesamtMonate; m++) {
+            topfA += beitrag;
+            sumBeitraege += beitrag;
+
+            double k = plan.kostenFuerMonat(m, topfA);
+            if (regeln != null) k += regeln.kosten(m, topfA, sumBeitraege);
+            if (k > 0.0) {
+                topfA -= k;
+                if (topfA < 0.0) topfA = 0.0;
+            }
+
+            topfA *= 1.0 + rA[m];
+
+            if (regeln != null) topfA = gutschreiben(topfA, regeln.bonus(m, topfA, sumBeitraege));
+
+            if (m % 12 == 0) jw.setze(m / 12, sumBeitraege, topfA, 0.0, 0.0);
+        }
+
+        return jw.endwertOder(topfA);
+    }
+
+    /**
+     * FONDS bei konstanter Monatsrendite r. Solange sich die Kosten nicht ändern
+     * (Gültigkeit, Ende VERTEILT_*, jährliche Punkte – siehe Kostenplan.gleichBis) und
+     * innerhalb eines Jahres ist ein Monat eine affine Abbildung
+     *
+     *   x -> a*x + c,  a = (1 - aK)(1 + r),  c = (b(1 - aK) - fix - b*aB)(1 + r)
+     *
+     * und n Monate lassen sich per Quadrieren in O(log n) anwenden. Nicht linear und daher
+     * Monat für Monat: Monate mit KAPITAL-Mindestkosten und Segmente, in denen das Kapital
+     * nach Kosten unter 0 fiele (Klammerung). Da x im Segment monoton läuft, reicht für
+     * Letzteres die Prüfung von erstem und letztem Monat.
+     */
+    private double simuliereFondspoliceKonstant(Kostenplan plan, double r, Jahreswerte jw) {
+        double beitrag = plan.beitragDouble();
+        int gesamtMonate = plan.gesamtMonate();
+        double wachstum = 1.0 + r;
+
+        double topfA = 0.0;
+        int m = 1;
+
+        while (m <= gesamtMonate) {
+            int jahresEnde = (m + 11) / 12 * 12;
+            int ende = Math.min(plan.gleichBis(m), jahresEnde);
+
+            double sprung = ende > m ? fondsSegment(plan, m, ende - m + 1, topfA, beitrag, wachstum) : Double.NaN;
+            if (!Double.isNaN(sprung)) {
+                topfA = sprung;
+            } else {
+                for (int i = m; i <= ende; i++) topfA = fondsMonat(plan, i, topfA, beitrag, wachstum);
+            }
+
+            if (ende % 12 == 0) jw.setze(ende / 12, beitrag * ende, topfA, 0.0, 0.0);
+            m = ende + 1;
+        }
+
+        return jw.endwertOder(topfA);
+    }
+
+    /**
+     * n Monate ab m mit gleichen, linearen Kosten; NaN wenn die Formel nicht gilt.
+     */
+    private static double fondsSegment(Kostenplan plan, int m, int n, double x, double beitrag, double wachstum) {
+        double fix = plan.fixEuro(m);
+        double aB = plan.anteilBeitrag(m);
+        double aK = plan.anteilKapital(m);
+        double q = 1.0 - aK;
+        if (fix < 0.0 || aB < 0.0 || aK < 0.0 || q <= 0.0) return Double.NaN;
+
+        // Kapital nach Kosten = x*q + d (muss >= 0 bleiben, sonst greift die Klammerung)
+        double d = beitrag * q - fix - beitrag * aB;
+        double a = q * wachstum;
+        double c = d * wachstum;
+
+        double vorLetztem = affinIteriert(a, c, n - 1, x);
+        if (x * q + d < 0.0 || vorLetztem * q + d < 0.0) return Double.NaN;
+
+        return a * vorLetztem + c;
+    }
+
+    /**
+     * Ein Monat wie in simuliereFondspolice.
+     */
+    private static double fondsMonat(Kostenplan plan, int m, double topfA, double beitrag, double wachstum) {
+        topfA += beitrag;
+
+        double k = plan.kostenFuerMonat(m, topfA);
+        if (k > 0.0) {
+            topfA -= k;
+            if (topfA < 0.0) topfA = 0.0;
+        }
+        return topfA * wachstum;
+    }
+
+    /**
+     * n-fache Anwendung von x -> a*x + c (Quadrieren der Abbildung, ohne Division durch a - 1).
+     */
+    static double affinIteriert(double a, double c, int n, double x) {
+        double pa = a, pc = c;      // f^(2^i)
+        double ra = 1.0, rc = 0.0;  // Ergebnis
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                rc = pa * rc + pc;
+                ra = pa * ra;
+            }
+            pc = pa * pc + pc;
+            pa = pa * pa;
+            n >>= 1;
+        }
+        return ra * x + rc;
+    }
+
+    // =========================================================
+    // 2) HYBRID 2-TOPF (Topf1 = A, Topf3 = Garantie)
+    // =========================================================
+    private double simuliereHybrid2Topf(Kostenplan plan, double[] rA, MonatsRegeln regeln, Jahreswerte jw) {
+        double beitrag = plan.beitragDouble();
+        int gesamtMonate = plan.gesamtMonate();
+
+        double topfA = 0.0;
+        double topfG = 0.0;
+        double sumBeitraege = 0.0;
+
+        double garantieNiveau = plan.garantieNiveau().doubleValue();
+        GarantieFaktoren.Tabelle gTabelle = plan.garantie();
+        double rG = gTabelle.monatsrendite().doubleValue();
+
+        for (int m = 1; m <= gesamtMonate; m++) {
+            sumBeitraege += beitrag;
+            double gesamt = topfA + topfG + beitrag;
+
+            double k = plan.kostenFuerMonat(m, gesamt);
+            if (regeln != null) k += regeln.kosten(m, gesamt, sumBeitraege);
+            if (k > 0.0) {
+                gesamt -= k;
+                if (gesamt < 0.0) gesamt = 0.0;
+            }
+
+            double ziel = sumBeitraege * garantieNiveau;
+            double neededGNow = pvForFutureValue(ziel, gTabelle.faktorDouble(gesamtMonate - m));
+
+            if (neededGNow > gesamt) neededGNow = gesamt;
+            if (neededGNow < 0.0) neededGNow = 0.0;
+
+            topfG = neededGNow;
+            topfA = gesamt - topfG;
+
+            topfA *= 1.0 + rA[m];
+            topfG *= 1.0 + rG;
+
+            if (regeln != null) topfA = gutschreiben(topfA, regeln.bonus(m, topfA + topfG, sumBeitraege));
+
+            if (m % 12 == 0) jw.setze(m / 12, sumBeitraege, topfA, 0.0, topfG);
+        }
+
+        return jw.endwertOder(topfA + topfG);
+    }
+
+    // =========================================================
+    // 3) HYBRID 3-TOPF (Topf1 = A, Topf2 = B mit Floor, Topf3 = Garantie)
+    // =========================================================
+    private double simuliereHybrid3Topf(
+            Kostenplan plan, double[] rA, double[] rB, TopfBFloorIndex.Index bIndex, MonatsRegeln regeln, Jahreswerte jw
+    ) {
+        double beitrag = plan.beitragDouble();
+        int gesamtMonate = plan.gesamtMonate();
+
+        double topfA = 0.0;
+        double topfB = 0.0;
+        double topfG = 0.0;
+        double letzterB = 0.0;
+        double sumBeitraege = 0.0;
+
+        double floor = plan.topfBFloor().doubleValue();
+        double garantieNiveau = plan.garantieNiveau().doubleValue();
+
+        GarantieFaktoren.Tabelle gTabelle = plan.garantie();
+        double rG = gTabelle.monatsrendite().doubleValue();
+
+        for (int m = 1; m <= gesamtMonate; m++) {
+            sumBeitraege += beitrag;
+            double gesamt = topfA + topfB + topfG + beitrag;
+
+            double k = plan.kostenFuerMonat(m, gesamt);
+            if (regeln != null) k += regeln.kosten(m, gesamt, sumBeitraege);
+            if (k > 0.0) {
+                gesamt -= k;
+                if (gesamt < 0.0) gesamt = 0.0;
+            }
+
+            double ziel = sumBeitraege * garantieNiveau;
+            double gF = gTabelle.faktorDouble(gesamtMonate - m);
+            double bF = bIndex.faktorDouble(m + 1, gesamtMonate - m);
+
+            double bMin = letzterB * floor;
+            double bStart = Math.max(bMin, pvForFutureValue(ziel, bF));
+
+            double newB;
+            double newG;
+
+            if (bStart <= gesamt) {
+                newB = bStart;
+                newG = 0.0;
+            } else {
+                newB = Math.min(bMin, gesamt);
+
+                double restZiel = ziel - newB * bF;
+                newG = restZiel <= 0.0 ? 0.0 : pvForFutureValue(restZiel, gF);
+
+                if (newB + newG > gesamt) {
+                    double denom = bF - gF;
+
+                    if (Math.abs(denom) > EPS) {
+                        double bSolve = (ziel - gesamt * gF) / denom;
+                        newB = Math.max(bMin, Math.min(bSolve, gesamt));
+                    } else {
+                        newB = Math.min(bMin, gesamt);
+                    }
+                    newG = gesamt - newB;
+                    if (newG < 0.0) newG = 0.0;
+                }
+            }
+
+            double safeFinal = newB + newG;
+            if (safeFinal > gesamt) {
+                safeFinal = gesamt;
+                if (newB > gesamt) newB = gesamt;
+                newG = gesamt - newB;
+                if (newG < 0.0) newG = 0.0;
+            }
+
+            topfB = newB;
+            topfG = newG;
+            topfA = gesamt - safeFinal;
+
+            topfA *= 1.0 + rA[m];
+
+            double bAfter = topfB * (1.0 + rB[m]);
+            double floorValue = letzterB * floor;
+            if (bAfter < floorValue) bAfter = floorValue;
+            topfB = bAfter;
+            letzterB = topfB;
+
+            topfG *= 1.0 + rG;
+
+            if (regeln != null) topfA = gutschreiben(topfA, regeln.bonus(m, topfA + topfB + topfG, sumBeitraege));
+
+            if (m % 12 == 0) jw.setze(m / 12, sumBeitraege, topfA, topfB, topfG);
+        }
+
+        return jw.endwertOder(topfA + topfB + topfG);
+    }
+
+    // =========================================================
+    // Renditen / Faktoren (vor der Schleife aufgebaut)
+    // =========================================================
+
+    /**
+     * Monatsrenditen 1-based: r[m] für m = 1..gesamtMonate, fehlende Werte = 0.
+     */
+    static double[] renditen(Renditereihe k, int gesamtMonate) {
+        double[] r = new double[gesamtMonate + 1];
+        if (k == null) return r;
+
+        int n = Math.min(k.laenge(), gesamtMonate);
+        for (int m = 1; m <= n; m++) r[m] = k.renditeDouble(m);
+        return r;
+    }
+
+    /**
+     * Bonus aus MonatsRegeln auf Topf 1; ein Abzug lässt Topf 1 nicht unter 0 fallen.
+     */
+    private static double gutschreiben(double topfA, double bonus) {
+        double neu = topfA + bonus;
+        return neu < 0.0 ? 0.0 : neu;
+    }
+
+    private static double pvForFutureValue(double futureValue, double factor) {
+        if (factor <= 0.0) return 0.0;
+        return futureValue / factor;
+    }
+
+    // =========================================================
+    // Jahreswerte (erst nach der Schleife zu DTOs)
+    // =========================================================
+
+    static final class Jahreswerte {
+
+        private final double[] summe;
+        private final double[] topf1;
+        private final double[] topf2;
+        private final double[] topf3;
+
+        Jahreswerte(int jahre) {
+            summe = new double[jahre];
+            topf1 = new double[jahre];
+            topf2 = new double[jahre];
+            topf3 = new double[jahre];
+        }
+
+        void setze(int jahr, double sumBeitraege, double t1, double t2, double t3) {
+            int i = jahr - 1;
+            summe[i] = sumBeitraege;
+            topf1[i] = t1;
+            topf2[i] = t2;
+            topf3[i] = t3;
+        }
+
+        /**
+         * Gesamtkapital am Ende von Jahr jahr (1-based).
+         */
+        double gesamt(int jahr) {
+            int i = jahr - 1;
+            return topf1[i] + topf2[i] + topf3[i];
+        }
+
+        double endwertOder(double fallback) {
+            int i = summe.length - 1;
+            return i < 0 ? fallback : topf1[i] + topf2[i] + topf3[i];
+        }
+
+        List<WertpunktDto> toDtos() {
+            List<WertpunktDto> out = new ArrayList<>(summe.length);
+            for (int i = 0; i < summe.length; i++) {
+                out.add(new WertpunktDto(
+                        i + 1,
+                        BigDecimal.valueOf(summe[i]),
+                        BigDecimal.valueOf(topf1[i] + topf2[i] + topf3[i]),
+                        BigDecimal.valueOf(topf1[i]),
+                        BigDecimal.valueOf(topf2[i]),
+                        BigDecimal.valueOf(topf3[i])
+                ));
+            }
+            return out;
+        }
+    }
+}
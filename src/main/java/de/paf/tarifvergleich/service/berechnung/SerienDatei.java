@@ -0,0 +1,304 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Datei mit vielen Renditereihen, per FileChannel.map in den Speicher eingeblendet.
+ *
+ * Aufbau (little endian, alle Offsets absolut):
+ *   Kopf (32 Byte):   magic "TVSR", version, anzahl, skala, indexOffset (long), reserviert (long)
+ *   Daten:            je Reihe laenge x long (unskalierter Wert, rendite = u / 10^skala),
+ *                     danach (laenge + 1) x double Präfix-Produkt P[0..laenge] (siehe Renditereihe)
+ *   Index (32 Byte je Reihe, sortiert nach art, id):
+ *                     art (int), konstantBis (int), id (long), offset (long), laenge (int), reserviert (int)
+ *
+ * Lesen: Index und Werte werden direkt im eingeblendeten Puffer gesucht bzw. gelesen
+ * (Binärsuche, absolute get-Zugriffe, thread-sicher), auf dem Heap liegt je Datei nur
+ * dieses Objekt. Eine Datei ist unveränderlich; neue Daten kommen über eine neue Datei,
+ * die atomar an die Stelle der alten verschoben wird (siehe Schreiber).
+ *
+ * Ein MappedByteBuffer reicht bis 2 GB; größere Bestände müssten auf mehrere Dateien verteilt werden.
+ */
+public final class SerienDatei {
+
+    /**
+     * Art der Id im Index.
+     */
+    public enum Art {
+        KAPITALANLAGE(1);
+
+        private final int code;
+
+        Art(int code) {
+            this.code = code;
+        }
+    }
+
+    private static final int MAGIC = 0x52535654; // "TVSR" little endian
+    private static final int VERSION = 2;
+    private static final int KOPF = 32;
+    private static final int INDEX_EINTRAG = 32;
+
+    private final Path pfad;
+    private final MappedByteBuffer puffer;
+    private final int anzahl;
+    private final int skala;
+    private final long indexOffset;
+
+    private SerienDatei(Path pfad, MappedByteBuffer puffer) {
+        this.pfad = pfad;
+        this.puffer = puffer;
+
+        if (puffer.capacity() < KOPF || puffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Keine Serien-Datei: " + pfad);
+        }
+        if (puffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unbekannte Version " + puffer.getInt(4) + " in " + pfad);
+        }
+        this.anzahl = puffer.getInt(8);
+        this.skala = puffer.getInt(12);
+        this.indexOffset = puffer.getLong(16);
+        if (indexOffset + (long) anzahl * INDEX_EINTRAG > puffer.capacity()) {
+            throw new IllegalArgumentException("Serien-Datei abgeschnitten: " + pfad);
+        }
+    }
+
+    /**
+     * Blendet die Datei ein. Der Kanal wird sofort geschlossen, die Einblendung bleibt
+     * gültig, bis das Objekt vom GC eingesammelt wird (auch wenn die Datei ersetzt wird).
+     */
+    public static SerienDatei oeffnen(Path pfad) {
+        try (FileChannel ch = FileChannel.open(pfad, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Serien-Datei > 2 GB: " + pfad);
+            }
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            return new SerienDatei(pfad, b);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Serien-Datei nicht lesbar: " + pfad, e);
+        }
+    }
+
+    // =========================================================
+    // Lesen
+    // =========================================================
+
+    /**
+     * Renditereihe (ohne Kopie der Werte), null wenn die Datei keine Reihe zu (art, id) hat.
+     */
+    public Renditereihe reihe(Art art, long id, long stand) {
+        int i = suche(art, id);
+        if (i < 0) return null;
+
+        long e = indexOffset + (long) i * INDEX_EINTRAG;
+        int konstantBis = puffer.getInt((int) e + 4);
+        long offset = puffer.getLong((int) e + 16);
+        int laenge = puffer.getInt((int) e + 24);
+
+        return Renditereihe.gemappt(id, art + " " + id, stand, puffer, (int) offset, laenge, skala, konstantBis);
+    }
+
+    public boolean enthaelt(Art art, long id) {
+        return suche(art, id) >= 0;
+    }
+
+    /**
+     * Alle Ids einer Art (z.B. um abhängige Caches nach einem Tausch zu verwerfen).
+     */
+    public List<Long> ids(Art art) {
+        List<Long> out = new ArrayList<>();
+        for (int i = 0; i < anzahl; i++) {
+            long e = indexOffset + (long) i * INDEX_EINTRAG;
+            if (puffer.getInt((int) e) == art.code) out.add(puffer.getLong((int) e + 8));
+        }
+        return out;
+    }
+
+    public Path pfad() {
+        return pfad;
+    }
+
+    public int anzahl() {
+        return anzahl;
+    }
+
+    public long bytes() {
+        return puffer.capacity();
+    }
+
+    private int suche(Art art, long id) {
+        int lo = 0;
+        int hi = anzahl - 1;
+        while (lo <= hi) {
+            int mitte = (lo + hi) >>> 1;
+            long e = indexOffset + (long) mitte * INDEX_EINTRAG;
+            int c = Integer.compare(puffer.getInt((int) e), art.code);
+            if (c == 0) c = Long.compare(puffer.getLong((int) e + 8), id);
+
+            if (c < 0) lo = mitte + 1;
+            else if (c > 0) hi = mitte - 1;
+            else return mitte;
+        }
+        return -1;
+    }
+
+    // =========================================================
+    // Schreiben
+    // =========================================================
+
+    /**
+     * Schreibt eine neue Datei neben das Ziel und verschiebt sie beim close() atomar an
+     * dessen Stelle. Leser der alten Datei behalten ihre Einblendung.
+     * Reihen werden nacheinander gestreamt, nur der Index (32 Byte je Reihe) liegt im Speicher.
+     */
+    public static Schreiber schreiber(Path ziel) {
+        return new Schreiber(ziel);
+    }
+
+    public static final class Schreiber implements Closeable {
+
+        private record Eintrag(Art art, long id, long offset, int laenge, int konstantBis) {}
+
+        private final Path ziel;
+        private final Path temp;
+        private final FileChannel ch;
+        private final List<Eintrag> index = new ArrayList<>();
+        private final ByteBuffer block = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = KOPF;
+        private boolean fertig;
+
+        private Schreiber(Path ziel) {
+            this.ziel = ziel.toAbsolutePath();
+            try {
+                Path dir = this.ziel.getParent();
+                if (dir != null) Files.createDirectories(dir);
+                this.temp = Files.createTempFile(dir, this.ziel.getFileName().toString(), ".tmp");
+                this.ch = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Serien-Datei nicht anlegbar: " + ziel, e);
+            }
+        }
+
+        /**
+         * Renditen als Dezimalwerte (gerundet wie in der Datenbank, siehe RenditenKodierung).
+         */
+        public void reihe(Art art, long id, List<BigDecimal> renditen) {
+            long[] u = new long[renditen.size()];
+            for (int i = 0; i < u.length; i++) {
+                BigDecimal r = renditen.get(i);
+                u[i] = r == null ? 0L : r.setScale(RenditenKodierung.SKALA, RoundingMode.HALF_UP)
+                        .unscaledValue().longValueExact();
+            }
+            reihe(art, id, u);
+        }
+
+        /**
+         * Renditen bereits unskaliert (rendite * 10^SKALA).
+         */
+        public void reihe(Art art, long id, long[] unskaliert) {
+            int konstantBis = unskaliert.length;
+            for (int i = 1; i < unskaliert.length; i++) {
+                if (unskaliert[i] != unskaliert[0]) {
+                    konstantBis = i;
+                    break;
+                }
+            }
+
+            index.add(new Eintrag(art, id, position, unskaliert.length, konstantBis));
+            for (long v : unskaliert) {
+                if (block.remaining() < Long.BYTES) leeren();
+                block.putLong(v);
+            }
+
+            // Präfix-Produkt wie in der Heap-Reihe (gleiche Rechnung => gleiche Werte)
+            double teiler = Math.pow(10, RenditenKodierung.SKALA);
+            double p = 1.0;
+            if (block.remaining() < Double.BYTES) leeren();
+            block.putDouble(p);
+            for (long v : unskaliert) {
+                if (block.remaining() < Double.BYTES) leeren();
+                p *= 1.0 + v / teiler;
+                block.putDouble(p);
+            }
+            leeren();
+        }
+
+        @Override
+        public void close() {
+            if (fertig) return;
+            fertig = true;
+            try {
+                index.sort(Comparator.comparingInt((Eintrag e) -> e.art().code).thenComparingLong(Eintrag::id));
+                for (int i = 1; i < index.size(); i++) {
+                    Eintrag a = index.get(i - 1);
+                    Eintrag b = index.get(i);
+                    if (a.art() == b.art() && a.id() == b.id()) {
+                        throw new IllegalArgumentException("Reihe doppelt: " + b.art() + " " + b.id());
+                    }
+                }
+
+                long indexOffset = position;
+                for (Eintrag e : index) {
+                    if (block.remaining() < INDEX_EINTRAG) leeren();
+                    block.putInt(e.art().code).putInt(e.konstantBis()).putLong(e.id())
+                            .putLong(e.offset()).putInt(e.laenge()).putInt(0);
+                }
+                leeren();
+
+                ByteBuffer kopf = ByteBuffer.allocate(KOPF).order(ByteOrder.LITTLE_ENDIAN);
+                kopf.putInt(MAGIC).putInt(VERSION).putInt(index.size()).putInt(RenditenKodierung.SKALA)
+                        .putLong(indexOffset).putLong(0L).flip();
+                ch.write(kopf, 0);
+
+                ch.force(true);
+                ch.close();
+                Files.move(temp, ziel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                abbrechen();
+                if (e instanceof IOException io) throw new UncheckedIOException("Serien-Datei nicht geschrieben: " + ziel, io);
+                throw (RuntimeException) e;
+            }
+        }
+
+        /**
+         * Verwirft die halbfertige Datei, das Ziel bleibt unverändert.
+         */
+        public void abbrechen() {
+            fertig = true;
+            try {
+                ch.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // temp-Datei bleibt liegen, das Ziel ist unberührt
+            }
+        }
+
+        private void leeren() {
+            block.flip();
+            try {
+                while (block.hasRemaining()) position += ch.write(block, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Serien-Datei nicht geschrieben: " + ziel, e);
+            }
+            block.clear();
+        }
+    }
+}
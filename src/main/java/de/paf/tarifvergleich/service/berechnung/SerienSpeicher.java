@@ -0,0 +1,153 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+import de.paf.tarifvergleich.repository.KapitalanlageRepository;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Eingeblendete {@link SerienDatei} (Property serien-datei), aus der {@link RenditeReihen}
+ * die Renditen liest, bevor es die Datenbank fragt.
+ *
+ * Aktualisieren: neue Datei schreiben (exportieren() oder ein externer Import über
+ * SerienDatei.schreiber), die atomar die alte ersetzt, dann neuLaden(). Der Wechsel ist ein
+ * volatile-Tausch von Datei und Stand zusammen (Eingeblendet); laufende Berechnungen lesen
+ * ihre Reihen bis zum Ende aus der alten Einblendung, mit deren Stand. Danach werden alle betroffenen Kapitalanlagen als geändert gemeldet
+ * (Ergebnis-Cache, Topf-B-Index, Vorberechnung).
+ */
+@Component
+@Slf4j
+public class SerienSpeicher {
+
+    /**
+     * Stände eingeblendeter Reihen liegen über denen aus der Datenbank (Lade-Zähler in
+     * RenditeReihen), damit Cache-Schlüssel (Id, Stand) beider Quellen nie zusammenfallen.
+     */
+    private static final long STAND_BASIS = 1L << 62;
+
+    private final Path pfad;
+    private final KapitalanlageRepository kapitalanlageRepository;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate leseTransaktion;
+
+    /**
+     * Datei und Stand werden nur gemeinsam getauscht: alte Daten dürfen nie unter dem neuen
+     * Stand gelesen werden (Ergebnis-Cache und Topf-B-Index hängen am Stand).
+     */
+    private record Eingeblendet(SerienDatei datei, long stand) {}
+
+    private volatile Eingeblendet eingeblendet = new Eingeblendet(null, STAND_BASIS);
+
+    public SerienSpeicher(
+            BerechnungsProperties properties,
+            KapitalanlageRepository kapitalanlageRepository,
+            ApplicationEventPublisher events,
+            PlatformTransactionManager transactionManager
+    ) {
+        String p = properties.getSerienDatei();
+        this.pfad = p == null || p.isBlank() ? null : Path.of(p).toAbsolutePath();
+        this.kapitalanlageRepository = kapitalanlageRepository;
+        this.events = events;
+
+        this.leseTransaktion = new TransactionTemplate(transactionManager);
+        this.leseTransaktion.setReadOnly(true);
+
+        if (pfad != null && Files.exists(pfad)) {
+            SerienDatei datei = SerienDatei.oeffnen(pfad);
+            this.eingeblendet = new Eingeblendet(datei, STAND_BASIS + 1);
+            log.info("Serien-Datei {} eingeblendet: {} Reihen, {} KB", pfad, datei.anzahl(), datei.bytes() / 1024);
+        } else if (pfad != null) {
+            log.info("Serien-Datei {} fehlt, Renditen kommen aus der Datenbank", pfad);
+        }
+    }
+
+    /**
+     * Reihe aus der Datei, null wenn keine Datei eingeblendet ist oder sie die Id nicht enthält.
+     */
+    public Renditereihe reihe(SerienDatei.Art art, long id) {
+        Eingeblendet e = eingeblendet;
+        return e.datei() != null ? e.datei().reihe(art, id, e.stand()) : null;
+    }
+
+    public boolean aktiv() {
+        return eingeblendet.datei() != null;
+    }
+
+    // =========================================================
+    // Aktualisieren
+    // =========================================================
+
+    /**
+     * Blendet die (inzwischen ersetzte) Datei neu ein und meldet alle Kapitalanlagen der
+     * alten und neuen Datei als geändert.
+     */
+    public synchronized Status neuLaden() {
+        if (pfad == null) throw new IllegalStateException("Keine Serien-Datei konfiguriert");
+
+        Eingeblendet vorher = eingeblendet;
+        SerienDatei alt = vorher.datei();
+        SerienDatei neu = Files.exists(pfad) ? SerienDatei.oeffnen(pfad) : null;
+
+        eingeblendet = new Eingeblendet(neu, vorher.stand() + 1);
+
+        Set<Long> betroffen = new HashSet<>();
+        if (alt != null) betroffen.addAll(alt.ids(SerienDatei.Art.KAPITALANLAGE));
+        if (neu != null) betroffen.addAll(neu.ids(SerienDatei.Art.KAPITALANLAGE));
+        for (Long id : betroffen) events.publishEvent(KatalogAenderung.kapitalanlage(id));
+
+        log.info("Serien-Datei {} neu geladen: {} Reihen, {} Kapitalanlagen gemeldet",
+                pfad, neu != null ? neu.anzahl() : 0, betroffen.size());
+        return status();
+    }
+
+    /**
+     * Schreibt die Renditen aller Kapitalanlagen aus der Datenbank in die Datei
+     * (ersetzt sie atomar) und blendet sie ein.
+     */
+    public synchronized Status exportieren() {
+        if (pfad == null) throw new IllegalStateException("Keine Serien-Datei konfiguriert");
+
+        SerienDatei.Schreiber schreiber = SerienDatei.schreiber(pfad);
+        try {
+            leseTransaktion.executeWithoutResult(tx -> {
+                for (Kapitalanlage k : kapitalanlageRepository.findAll()) {
+                    long[] u = RenditenKodierung.dekodieren(k.getRenditenDaten()).unskaliert();
+                    schreiber.reihe(SerienDatei.Art.KAPITALANLAGE, k.getId(), u);
+                }
+            });
+        } catch (RuntimeException e) {
+            schreiber.abbrechen();
+            throw e;
+        }
+        schreiber.close();
+
+        return neuLaden();
+    }
+
+    public Status status() {
+        Eingeblendet e = eingeblendet;
+        SerienDatei d = e.datei();
+        return new Status(
+                pfad != null ? pfad.toString() : null,
+                d != null ? d.anzahl() : 0,
+                d != null ? d.bytes() : 0,
+                e.stand() - STAND_BASIS
+        );
+    }
+
+    /**
+     * generation: wie oft die Datei seit dem Start eingeblendet wurde.
+     */
+    public record Status(String datei, int reihen, long bytes, long generation) {}
+}
@@ -0,0 +1,325 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.domain.Tarif;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Führt Tarif.berechnungsScript (JavaScript, GraalJS) als {@link MonatsRegeln} aus.
+ *
+ * Ein Skript definiert optional die Funktionen
+ *
+ *   function kosten(t) { ... }   // zusätzliche Kosten in Euro (Monat t.monat)
+ *   function bonus(t) { ... }    // Gutschrift in Euro nach der Rendite (Topf 1)
+ *
+ * t ist ein Java-Objekt mit den Feldern monat, kapital, summeBeitraege (je Monat) sowie
+ * beitrag, laufzeitMonate (je Simulation). Mehr sieht das Skript nicht: kein Host-Zugriff
+ * außer diesen Feldern, kein IO, keine Threads. Das Einstiegsalter fehlt absichtlich, es ist
+ * nicht Teil des Ergebnis-Schlüssels (ErgebnisCache, Vorberechnung).
+ *
+ * - eine Engine für alle Kontexte: geparster und (auf GraalVM) kompilierter Code wird geteilt
+ * - Source je Tarif, solange sich der Skripttext nicht ändert (Tarif-Version)
+ * - Kontexte in einem Pool (höchstens skriptKontexte, weitere Aufrufer warten); ein Kontext
+ *   wertet jede Source einmal aus und behält die Funktionen
+ * - je Simulation: einen Kontext ausleihen, Regeln binden; in der Monatsschleife nur noch
+ *   Felder setzen und die Funktion aufrufen
+ *
+ * Grenzen: jeder Aufruf (und das erste Auswerten eines Skripts) darf höchstens
+ * skriptMaxAnweisungen Anweisungen ausführen, danach bricht GraalJS den Kontext ab; er wird
+ * verworfen und bei Bedarf neu angelegt. Auf einen freien Kontext wird höchstens
+ * skriptWartezeitMs gewartet. Beides endet als IllegalStateException, also als Fehler-Eintrag
+ * des Tarifs.
+ *
+ * Ohne Graal-Compiler (normales JDK) laufen die Skripte im Interpreter.
+ */
+@Component
+public class TarifSkripte implements DisposableBean {
+
+    // Funktionen werden in einer eigenen Funktion deklariert: mehrere Tarife teilen sich einen Kontext.
+    // Der Skripttext beginnt in derselben Zeile, Zeilennummern in Fehlermeldungen stimmen.
+    private static final String KOPF = "(function () {";
+    private static final String FUSS = "\n;return {"
+            + " kosten: typeof kosten === 'function' ? kosten : null,"
+            + " bonus: typeof bonus === 'function' ? bonus : null"
+            + " };\n})()";
+
+    // bindet eine Skript-Funktion an das Monatsobjekt => Aufruf ohne Argumente
+    private static final String BINDEN = "(f, t) => () => +f(t)";
+
+    // je Kontext gemerkte Sources, danach wird geleert
+    private static final int MAX_QUELLEN_JE_KONTEXT = 256;
+
+    private final Engine engine;
+    private final ResourceLimits grenzen;
+    private final long maxAnweisungen;
+    private final long wartezeitMs;
+    private final int maxKontexte;
+    private final BlockingQueue<Kontext> frei;
+    private final List<Kontext> alle = new ArrayList<>();
+    private final AtomicInteger erzeugt = new AtomicInteger();
+
+    private final ConcurrentHashMap<Long, Version> quellen = new ConcurrentHashMap<>();
+
+    private record Version(String skript, Source source) {}
+
+    public record Status(int kontexte, int freieKontexte, int quellen) {}
+
+    public TarifSkripte(BerechnungsProperties properties) {
+        this.maxKontexte = Math.max(1, properties.getSkriptKontexte());
+        this.frei = new ArrayBlockingQueue<>(maxKontexte);
+        this.maxAnweisungen = Math.max(1, properties.getSkriptMaxAnweisungen());
+        this.wartezeitMs = Math.max(0, properties.getSkriptWartezeitMs());
+        this.engine = Engine.newBuilder("js")
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+        // eine Instanz für alle Kontexte: Kontexte einer Engine müssen dieselben Grenzen haben
+        this.grenzen = ResourceLimits.newBuilder()
+                .statementLimit(maxAnweisungen, null)
+                .build();
+    }
+
+    public static boolean hatSkript(Tarif tarif) {
+        return tarif != null && tarif.getBerechnungsScript() != null && !tarif.getBerechnungsScript().isBlank();
+    }
+
+    /**
+     * Syntaxprüfung (z.B. beim Speichern im Admin), ohne das Skript auszuführen.
+     *
+     * @return Fehlermeldung oder null
+     */
+    public String pruefen(String skript) {
+        if (skript == null || skript.isBlank()) return null;
+        try (Kontext k = ausleihen()) {
+            k.context.parse(source(null, skript));
+            return null;
+        } catch (PolyglotException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Kontext für eine Simulation (oder einen Block davon); mit try-with-resources im selben
+     * Thread zurückgeben. Wartet höchstens skriptWartezeitMs, wenn alle Kontexte vergeben sind.
+     *
+     * @throws IllegalStateException wenn in der Zeit kein Kontext frei wird
+     */
+    public Kontext ausleihen() {
+        Kontext k = frei.poll();
+        if (k == null) k = erzeugen();
+        if (k == null) {
+            try {
+                k = frei.poll(wartezeitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Warten auf Skript-Kontext unterbrochen", e);
+            }
+            // ein verworfener Kontext kann inzwischen Platz für einen neuen gemacht haben
+            if (k == null) k = erzeugen();
+            if (k == null) {
+                throw new IllegalStateException("Kein Skript-Kontext frei nach " + wartezeitMs + " ms");
+            }
+        }
+        k.context.enter();
+        return k;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        if (aenderung.tarifId() != null) quellen.remove(aenderung.tarifId());
+    }
+
+    public Status status() {
+        return new Status(erzeugt.get(), frei.size(), quellen.size());
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (alle) {
+            for (Kontext k : alle) k.context.close(true);
+        }
+        engine.close();
+    }
+
+    private Kontext erzeugen() {
+        if (erzeugt.incrementAndGet() > maxKontexte) {
+            erzeugt.decrementAndGet();
+            return null;
+        }
+        Kontext k = new Kontext(Context.newBuilder("js")
+                .engine(engine)
+                .allowHostAccess(HostAccess.EXPLICIT)
+                .resourceLimits(grenzen)
+                .build());
+        synchronized (alle) {
+            alle.add(k);
+        }
+        return k;
+    }
+
+    private Source source(Tarif tarif) {
+        String skript = tarif.getBerechnungsScript();
+        Version v = quellen.get(tarif.getId());
+        if (v != null && v.skript().equals(skript)) return v.source();
+
+        Source s = source(tarif.getId(), skript);
+        if (tarif.getId() != null) quellen.put(tarif.getId(), new Version(skript, s));
+        return s;
+    }
+
+    private static Source source(Long tarifId, String skript) {
+        return Source.newBuilder("js", KOPF + skript + FUSS, "tarif-" + (tarifId != null ? tarifId : "neu") + ".js")
+                .buildLiteral();
+    }
+
+    // =========================================================
+    // Kontext
+    // =========================================================
+
+    public final class Kontext implements AutoCloseable {
+
+        private final Context context;
+        private final Value binden;
+        private final Map<Source, Value> exporte = new HashMap<>();
+
+        // von GraalJS abgebrochen (Anweisungs-Limit): nicht zurück in den Pool
+        private boolean abgebrochen;
+
+        private Kontext(Context context) {
+            this.context = context;
+            this.binden = context.eval("js", BINDEN);
+        }
+
+        /**
+         * Regeln aus dem Skript des Tarifs, gebunden an diese Simulation; null ohne Skript.
+         * Nur bis close() gültig.
+         */
+        public MonatsRegeln regeln(Kostenplan plan) {
+            Tarif tarif = plan.tarif();
+            if (!hatSkript(tarif)) return null;
+
+            Source s = source(tarif);
+            Value export = exporte.get(s);
+            if (export == null) {
+                if (exporte.size() >= MAX_QUELLEN_JE_KONTEXT) exporte.clear();
+                context.resetLimits();
+                try {
+                    export = context.eval(s);
+                } catch (PolyglotException e) {
+                    throw abbruch(e, tarif.getId(), "Auswerten");
+                }
+                exporte.put(s, export);
+            }
+
+            Monat t = new Monat(plan.beitragDouble(), plan.gesamtMonate());
+            return new SkriptRegeln(this, tarif.getId(), t, gebunden(export, "kosten", t), gebunden(export, "bonus", t));
+        }
+
+        /**
+         * Abbruch durch das Anweisungs-Limit => Kontext verwerfen, Fehler mit Tarif und Stelle.
+         * Andere Skriptfehler bleiben unverändert.
+         */
+        private RuntimeException abbruch(PolyglotException e, Long tarifId, String stelle) {
+            if (!e.isResourceExhausted() && !e.isCancelled()) return e;
+            abgebrochen = true;
+            String grund = e.isResourceExhausted()
+                    ? "mehr als " + maxAnweisungen + " Anweisungen"
+                    : "Skript-Kontext abgebrochen";
+            return new IllegalStateException("Skript von Tarif " + tarifId + ": " + stelle + ": " + grund, e);
+        }
+
+        private Value gebunden(Value export, String name, Monat t) {
+            Value f = export.getMember(name);
+            return f == null || f.isNull() ? null : binden.execute(f, t);
+        }
+
+        @Override
+        public void close() {
+            context.leave();
+            if (!abgebrochen) {
+                frei.offer(this);
+                return;
+            }
+
+            // Platz freigeben, der nächste Aufrufer legt einen neuen Kontext an
+            context.close(true);
+            synchronized (alle) {
+                alle.remove(this);
+            }
+            erzeugt.decrementAndGet();
+        }
+    }
+
+    // =========================================================
+    // Host-API
+    // =========================================================
+
+    /**
+     * Das "t" der Skript-Funktionen. Ein Objekt je Simulation, in der Schleife nur überschrieben.
+     */
+    public static final class Monat {
+
+        @HostAccess.Export public int monat;
+        @HostAccess.Export public double kapital;
+        @HostAccess.Export public double summeBeitraege;
+
+        @HostAccess.Export public final double beitrag;
+        @HostAccess.Export public final int laufzeitMonate;
+
+        Monat(double beitrag, int laufzeitMonate) {
+            this.beitrag = beitrag;
+            this.laufzeitMonate = laufzeitMonate;
+        }
+    }
+
+    private record SkriptRegeln(Kontext kontext, Long tarifId, Monat t, Value kosten, Value bonus) implements MonatsRegeln {
+
+        @Override
+        public double kosten(int m, double kapital, double summeBeitraege) {
+            return kosten == null ? 0.0 : aufrufen(kosten, "kosten", m, kapital, summeBeitraege);
+        }
+
+        @Override
+        public double bonus(int m, double kapital, double summeBeitraege) {
+            return bonus == null ? 0.0 : aufrufen(bonus, "bonus", m, kapital, summeBeitraege);
+        }
+
+        private double aufrufen(Value f, String name, int m, double kapital, double summeBeitraege) {
+            t.monat = m;
+            t.kapital = kapital;
+            t.summeBeitraege = summeBeitraege;
+
+            double v;
+            kontext.context.resetLimits();
+            try {
+                v = f.execute().asDouble();
+            } catch (PolyglotException e) {
+                throw kontext.abbruch(e, tarifId, name + "(t) in Monat " + m);
+            }
+            if (Double.isNaN(v) || Double.isInfinite(v)) {
+                throw new IllegalStateException("Skript von Tarif " + tarifId + ": " + name
+                        + "(t) liefert keine Zahl in Monat " + m);
+            }
+            return v;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Suffix-Produkte für Topf B (3-Topf-Hybrid).
+ *
+ * Die Floor-Regel max(v·(1+r), floor·v) ist ein Monatsmultiplikator
+ * f_i = max(1 + r_i, floor). Das Wachstum von Monat s bis Monat e ist damit
+ * S[s] / S[e+1] mit S[i] = f_i · f_(i+1) · ... · f_L (L = Länge der Reihe).
+ * Endet die Laufzeit am Ende der Reihe (65 Jahre), entfällt die Division.
+ *
+ * Ein Index pro (Renditereihe, floor), gecacht über alle Requests.
+ */
+@Component
+public class TopfBFloorIndex {
+
+    private static final MathContext MC = new MathContext(20, RoundingMode.HALF_UP);
+
+    private final ConcurrentHashMap<Schluessel, Index> indizes = new ConcurrentHashMap<>();
+
+    private record Schluessel(Long kapitalanlageId, long stand, BigDecimal floor) {}
+
+    /**
+     * Index für Kapitalanlage B, floor wird wie im Tarif auf 0..1 begrenzt.
+     * kaB == null => neutraler Index (Faktor immer 1).
+     */
+    public Index fuer(Renditereihe kaB, BigDecimal floorRoh) {
+        if (kaB == null) return Index.NEUTRAL;
+
+        BigDecimal floor = floorRoh == null ? BigDecimal.ZERO : floorRoh;
+        if (floor.signum() < 0) floor = BigDecimal.ZERO;
+        if (floor.compareTo(BigDecimal.ONE) > 0) floor = BigDecimal.ONE;
+
+        // ungespeicherte Kapitalanlagen (ohne id) nicht cachen
+        if (kaB.kapitalanlageId() == null) return Index.bauen(kaB, floor);
+
+        Schluessel key = new Schluessel(kaB.kapitalanlageId(), kaB.stand(), floor.stripTrailingZeros());
+        return indizes.computeIfAbsent(key, k -> Index.bauen(kaB, k.floor()));
+    }
+
+    /**
+     * Renditereihe einer Kapitalanlage hat sich geändert => alle Floors verwerfen.
+     */
+    public void entfernen(Long kapitalanlageId) {
+        if (kapitalanlageId == null) return;
+        indizes.keySet().removeIf(k -> kapitalanlageId.equals(k.kapitalanlageId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onKatalogAenderung(KatalogAenderung aenderung) {
+        entfernen(aenderung.kapitalanlageId());
+    }
+
+    public int anzahlIndizes() {
+        return indizes.size();
+    }
+
+    /**
+     * Unveränderliche Suffix-Produkte einer Reihe (1-based, suffix[L+1] = 1).
+     */
+    public static final class Index {
+
+        static final Index NEUTRAL = new Index(new BigDecimal[]{BigDecimal.ONE, BigDecimal.ONE}, new double[]{1.0, 1.0}, null, null);
+
+        private final BigDecimal[] suffix;
+        private final double[] suffixDouble;
+
+        // nur für den Fallback (Multiplikator 0 in der Reihe)
+        private final BigDecimal[] multiplikator;
+        private final double[] multiplikatorDouble;
+
+        private Index(BigDecimal[] suffix, double[] suffixDouble, BigDecimal[] multiplikator, double[] multiplikatorDouble) {
+            this.suffix = suffix;
+            this.suffixDouble = suffixDouble;
+            this.multiplikator = multiplikator;
+            this.multiplikatorDouble = multiplikatorDouble;
+        }
+
+        static Index bauen(Renditereihe renditen, BigDecimal floor) {
+            int l = renditen.laenge();
+
+            BigDecimal[] f = new BigDecimal[l + 1];
+            double[] fd = new double[l + 1];
+            BigDecimal[] s = new BigDecimal[l + 2];
+            double[] sd = new double[l + 2];
+
+            s[l + 1] = BigDecimal.ONE;
+            sd[l + 1] = 1.0;
+            for (int i = l; i >= 1; i--) {
+                BigDecimal wachstum = BigDecimal.ONE.add(renditen.rendite(i));
+
+                f[i] = wachstum.max(floor);
+                fd[i] = Math.max(wachstum.doubleValue(), floor.doubleValue());
+                s[i] = s[i + 1].multiply(f[i], MC);
+                sd[i] = sd[i + 1] * fd[i];
+            }
+            return new Index(s, sd, f, fd);
+        }
+
+        private int laenge() {
+            return suffix.length - 2;
+        }
+
+        /**
+         * Faktor: wie 1€ in Topf B in restMonate wächst (mit Floor-Regel),
+         * ab startMonth (1-based). Monate hinter der Reihe wachsen mit 1.
+         */
+        public BigDecimal faktor(int startMonth, int restMonate) {
+            if (restMonate <= 0) return BigDecimal.ONE;
+
+            int l = laenge();
+            if (startMonth > l) return BigDecimal.ONE;
+
+            int ende = Math.min(startMonth + restMonate - 1, l);
+            BigDecimal nenner = suffix[ende + 1];
+            if (nenner.signum() == 0) {
+                BigDecimal v = BigDecimal.ONE;
+                for (int i = startMonth; i <= ende; i++) v = v.multiply(multiplikator[i], MC);
+                return v;
+            }
+            return ende == l ? suffix[startMonth] : suffix[startMonth].divide(nenner, MC);
+        }
+
+        public double faktorDouble(int startMonth, int restMonate) {
+            if (restMonate <= 0) return 1.0;
+
+            int l = laenge();
+            if (startMonth > l) return 1.0;
+
+            int ende = Math.min(startMonth + restMonate - 1, l);
+            double nenner = suffixDouble[ende + 1];
+            if (nenner == 0.0) {
+                double v = 1.0;
+                for (int i = startMonth; i <= ende; i++) v *= multiplikatorDouble[i];
+                return v;
+            }
+            return ende == l ? suffixDouble[startMonth] : suffixDouble[startMonth] / nenner;
+        }
+    }
+}
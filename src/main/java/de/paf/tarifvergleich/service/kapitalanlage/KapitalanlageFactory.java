@@ -2,6 +2,7 @@ package de.paf.tarifvergleich.service.kapitalanlage;
 
 import de.paf.tarifvergleich.domain.Kapitalanlage;
 import de.paf.tarifvergleich.domain.KapitalanlageTyp;
+import de.paf.tarifvergleich.domain.RenditenKodierung;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -30,24 +31,31 @@ public class KapitalanlageFactory {
     }
 
     /**
-     * Helper: nimmt Werte als String-Liste im DE-Format (Komma) und parsed zu BigDecimal.
-     * Beispiel: "0,01039413" -> 0.01039413
+     * Helper: nimmt Werte zeilenweise im DE-Format (Komma, Punkt geht auch) und parsed zu BigDecimal
+     * mit 10 Nachkommastellen (wie in der Datenbank). Beispiel: "0,01039413" -> 0.0103941300
+     * Zeichenweise ohne Zwischen-Strings; für ganze Dateien siehe {@link RenditenCsvLeser}.
      */
     public static List<BigDecimal> parseGermanDecimalLines(String rawLines) {
         if (rawLines == null || rawLines.isBlank()) return List.of();
 
-        String[] lines = rawLines.split("\\R+");
-        List<BigDecimal> out = new ArrayList<>(lines.length);
-
-        for (String line : lines) {
-            String s = line.trim();
-            if (s.isEmpty()) continue;
-
-            // deutsches Dezimal-Komma -> Punkt
-            s = s.replace(",", ".");
-
-            out.add(new BigDecimal(s));
+        List<BigDecimal> out = new ArrayList<>();
+        RenditenCsvLeser.Dezimal zahl = new RenditenCsvLeser.Dezimal();
+        int zeile = 1;
+
+        for (int i = 0, n = rawLines.length(); i <= n; i++) {
+            char c = i < n ? rawLines.charAt(i) : '\n';
+            if (c == '\n' || c == '\r') {
+                if (zahl.gueltig()) {
+                    out.add(BigDecimal.valueOf(zahl.unskaliert(), RenditenKodierung.SKALA));
+                } else if (!zahl.leer() || zahl.fehlerhaft()) {
+                    throw new NumberFormatException("Zeile " + zeile + ": keine Dezimalzahl");
+                }
+                zahl.reset();
+                if (c == '\n') zeile++;
+            } else if (!Character.isWhitespace(c)) {
+                zahl.zeichen(c, true);
+            }
         }
         return out;
     }
-}
\ No newline at end of file
+}
@@ -4,53 +4,135 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
 
+/**
+ * MSCI-World-ähnliche Monatsrenditen: Trend + Normalrauschen + seltene Crashs.
+ *
+ * Alle Varianten schreiben in vom Aufrufer bereitgestellte double-Puffer (1-based,
+ * ziel[1..months]) und ziehen aus SplittableRandom. Für Monte Carlo bekommt jeder
+ * Pfad einen eigenen Strom, abgeleitet aus (Basis-Seed, Pfadnummer) – ein Pfad ist
+ * damit bitgenau reproduzierbar, egal welcher Thread ihn in welcher Reihenfolge erzeugt.
+ *
+ * Crashs (Wahrscheinlichkeit p je Monat) werden über geometrisch verteilte Abstände
+ * gezogen statt mit einem Münzwurf pro Monat – gleiche Verteilung, aber nur ein paar
+ * Zufallszahlen je Pfad statt 780.
+ */
 public class RenditeGenerator {
 
+    private static final double SIGMA = 0.025; // Volatilität
+    private static final double CRASH_WAHRSCHEINLICHKEIT = 0.012;
+    private static final double LOG_KEIN_CRASH = Math.log1p(-CRASH_WAHRSCHEINLICHKEIT);
+    private static final double UNTERGRENZE = -0.95;
+
     private RenditeGenerator() {}
 
+    /**
+     * Kalibrierte Reihe (z.B. zum Seeden einer Kapitalanlage): die ersten calibrationYears
+     * treffen exakt targetAnnualCagr. Werte auf 6 Nachkommastellen wie in der DB.
+     */
     public static List<BigDecimal> generateMsciWorldLikeMonths(
             int months,
             double targetAnnualCagr,
             int calibrationYears,
             long seed
     ) {
-        List<Double> raw = new ArrayList<>(months);
-        Random rnd = new Random(seed);
+        double[] r = new double[months + 1];
+        kalibriert(r, months, targetAnnualCagr, calibrationYears, seed);
 
-        double monthlyTrend =
-                Math.pow(1.0 + targetAnnualCagr, 1.0 / 12.0) - 1.0;
+        List<BigDecimal> out = new ArrayList<>(months);
+        for (int m = 1; m <= months; m++) {
+            out.add(BigDecimal.valueOf(r[m]).setScale(6, RoundingMode.HALF_UP));
+        }
+        return out;
+    }
 
-        double sigma = 0.025; // Volatilität
+    /**
+     * Wie generateMsciWorldLikeMonths, aber primitiv in ziel[1..months] und ohne Rundung.
+     */
+    public static void kalibriert(double[] ziel, int months, double targetAnnualCagr, int calibrationYears, long seed) {
+        roh(ziel, 1, months, monatsTrend(targetAnnualCagr), new SplittableRandom(seed));
 
-        for (int i = 0; i < months; i++) {
-            double r = monthlyTrend + rnd.nextGaussian() * sigma;
+        // Kalibrierung
+        int calibMonths = Math.min(months, calibrationYears * 12);
+        if (calibMonths <= 0) return;
 
-            if (rnd.nextDouble() < 0.012) { // Crash
-                r -= (0.08 + rnd.nextDouble() * 0.18);
-            }
+        double product = 1.0;
+        for (int m = 1; m <= calibMonths; m++) {
+            product *= (1.0 + ziel[m]);
+        }
+
+        double targetProduct = Math.pow(1.0 + targetAnnualCagr, calibMonths / 12.0);
+        double k = Math.pow(targetProduct / product, 1.0 / calibMonths);
 
-            if (r <= -0.95) r = -0.95;
-            raw.add(r);
+        for (int m = 1; m <= months; m++) {
+            ziel[m] = (1.0 + ziel[m]) * k - 1.0;
         }
+    }
 
-        // Kalibrierung
-        int calibMonths = Math.min(months, calibrationYears * 12);
-        double product = 1.0;
-        for (int i = 0; i < calibMonths; i++) {
-            product *= (1.0 + raw.get(i));
+    /**
+     * Monte-Carlo-Pfad nr: gleiches Modell, aber OHNE Kalibrierung – sonst hätte jeder
+     * Pfad exakt dieselbe CAGR und die Streuung wäre weg. Schreibt ziel[1..months].
+     */
+    public static void pfad(double[] ziel, int months, double targetAnnualCagr, long basisSeed, long nr) {
+        roh(ziel, 1, months, monatsTrend(targetAnnualCagr), new SplittableRandom(pfadSeed(basisSeed, nr)));
+    }
+
+    /**
+     * Block von Pfaden ersterPfad .. ersterPfad+anzahl-1 als Matrix (zeilenweise, je Pfad
+     * months+1 Werte, Index 0 jeder Zeile = 0). Identisch zu einzelnen pfad()-Aufrufen.
+     */
+    public static void pfadBlock(double[] matrix, long ersterPfad, int anzahl, int months, double targetAnnualCagr, long basisSeed) {
+        int zeile = months + 1;
+        double trend = monatsTrend(targetAnnualCagr);
+        for (int i = 0; i < anzahl; i++) {
+            int basis = i * zeile;
+            matrix[basis] = 0.0;
+            roh(matrix, basis + 1, months, trend, new SplittableRandom(pfadSeed(basisSeed, ersterPfad + i)));
         }
+    }
 
-        double targetProduct =
-                Math.pow(1.0 + targetAnnualCagr, calibMonths / 12.0);
+    /**
+     * Seed für Pfad nr aus dem Basis-Seed (SplitMix64-Finalizer).
+     */
+    public static long pfadSeed(long basisSeed, long nr) {
+        long z = basisSeed + (nr + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
-        double k = Math.pow(targetProduct / product, 1.0 / calibMonths);
+    // =========================================================
+    // intern
+    // =========================================================
+
+    private static double monatsTrend(double targetAnnualCagr) {
+        return Math.pow(1.0 + targetAnnualCagr, 1.0 / 12.0) - 1.0;
+    }
+
+    /**
+     * Rohrenditen nach ziel[von .. von+months-1].
+     */
+    private static void roh(double[] ziel, int von, int months, double monthlyTrend, SplittableRandom rnd) {
+        int naechsterCrash = crashAbstand(rnd);
 
-        List<BigDecimal> out = new ArrayList<>(months);
         for (int i = 0; i < months; i++) {
-            double rCal = (1.0 + raw.get(i)) * k - 1.0;
-            out.add(BigDecimal.valueOf(rCal).setScale(6, RoundingMode.HALF_UP));
+            double r = monthlyTrend + rnd.nextGaussian() * SIGMA;
+
+            if (i == naechsterCrash) {
+                r -= (0.08 + rnd.nextDouble() * 0.18);
+                naechsterCrash += 1 + crashAbstand(rnd);
+            }
+
+            if (r <= UNTERGRENZE) r = UNTERGRENZE;
+            ziel[von + i] = r;
         }
+    }
 
-        return out;
+    /**
+     * Monate ohne Crash bis zum nächsten Crash (geometrisch verteilt, 0 = gleich der nächste).
+     */
+    private static int crashAbstand(SplittableRandom rnd) {
+        double u = 1.0 - rnd.nextDouble(); // (0, 1]
+        double abstand = Math.floor(Math.log(u) / LOG_KEIN_CRASH);
+        return abstand >= Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE / 2 : (int) abstand;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,455 @@
+package de.paf.tarifvergleich.service.kapitalanlage;
+
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Liest Renditereihen vieler Fonds aus einer CSV-Datei, Byte für Byte aus einem Kanal.
+ *
+ * Layout: eine Spalte je Fonds, eine Zeile je Periode, Kopfzeile mit den Namen:
+ *
+ *   Datum;Fonds A;Fonds B
+ *   2020-01-02;0,0012;-0,0004
+ *
+ * - Trennzeichen ';', Tab oder ',' (aus der Kopfzeile erkannt), Dezimalzeichen ',' oder '.'
+ *   (bei Trennzeichen ',' nur '.'). Anführungszeichen und Leerzeichen werden ignoriert.
+ * - Heißt die erste Spalte Datum/Date/Monat/Month/Periode (oder ist leer), ist sie die
+ *   Schlüsselspalte: Datum (yyyy-MM-dd, dd.MM.yyyy, yyyy-MM, ...) oder laufende Monatsnummer.
+ *   Mit Datum werden alle Zeilen eines Kalendermonats (z.B. Tageswerte) zur Monatsrendite
+ *   verkettet: (1 + r_1) · ... · (1 + r_n) - 1. Sonst ist jede Zeile ein Monat.
+ *
+ * Geprüft: Spaltenzahl je Zeile, Zahlenformat, -100 % <= Rendite <= +1000 %, Daten
+ * aufsteigend ohne fehlenden Monat, Namen eindeutig. Eine Reihe beginnt mit ihrem ersten
+ * Monat mit Wert und endet vor dem ersten Monat ohne Wert; Werte danach sind ein Fehler.
+ *
+ * Im Speicher liegen nur die Monatswerte (ein long je Fonds und Monat, unskaliert wie in
+ * {@link RenditenKodierung}), je Zeile entstehen keine Strings oder BigDecimal.
+ */
+public final class RenditenCsvLeser {
+
+    private static final int PUFFER = 64 * 1024;
+    private static final int MAX_KOPFZEILE = 1024 * 1024;
+    private static final long SKALA_FAKTOR = 10_000_000_000L; // 10^SKALA
+    private static final long MIN_RENDITE = -SKALA_FAKTOR;     // -100 %
+    private static final long MAX_RENDITE = 10 * SKALA_FAKTOR; // +1000 %
+
+    private static final Set<String> SCHLUESSEL_SPALTEN = Set.of("", "datum", "date", "monat", "month", "periode");
+
+    public record Reihe(String name, long[] unskaliert) {}
+
+    /**
+     * @param zeilen    Datenzeilen (ohne Kopfzeile und Leerzeilen)
+     * @param werte     nicht leere Zellen
+     * @param taeglich  true, wenn mindestens ein Monat aus mehreren Zeilen verkettet wurde
+     */
+    public record Ergebnis(List<Reihe> reihen, long zeilen, long werte, boolean taeglich) {}
+
+    private RenditenCsvLeser() {
+    }
+
+    public static Ergebnis lesen(ReadableByteChannel quelle) throws IOException {
+        return new Lauf().lesen(quelle);
+    }
+
+    // =========================================================
+    // Ein Lesevorgang
+    // =========================================================
+
+    private enum Schluessel { KEINER, NUMMER, DATUM }
+
+    private static final class Lauf {
+
+        private byte trenn;
+        private boolean kommaErlaubt;
+        private Schluessel schluessel = Schluessel.KEINER;
+        private boolean schluesselSpalte;
+        private Spalte[] spalten;
+
+        // aktuelle Zeile
+        private long zeile = 1;
+        private int spalte;
+        private boolean zeileLeer = true;
+        private boolean schluesselGelesen;
+        private final Dezimal zahl = new Dezimal();
+        private final Datum datum = new Datum();
+
+        // aktueller Monat
+        private long monatSchluessel = Long.MIN_VALUE;
+        private long letztesDatum = Long.MIN_VALUE;
+        private boolean monatOffen;
+
+        private long zeilen;
+        private long werte;
+        private boolean taeglich;
+
+        Ergebnis lesen(ReadableByteChannel quelle) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(PUFFER);
+            byte[] a = buf.array();
+            ByteArrayOutputStream kopf = new ByteArrayOutputStream();
+
+            while (quelle.read(buf) >= 0) {
+                int n = buf.position();
+                int i = 0;
+
+                if (spalten == null) {
+                    while (i < n && a[i] != '\n') i++;
+                    if (kopf.size() + i > MAX_KOPFZEILE) throw fehler("Kopfzeile zu lang");
+                    kopf.write(a, 0, i);
+                    if (i == n) {
+                        buf.clear();
+                        continue;
+                    }
+                    kopfzeile(kopf.toByteArray());
+                    i++;
+                    zeile++;
+                }
+
+                for (; i < n; i++) zeichen(a[i]);
+                buf.clear();
+            }
+
+            if (spalten == null) {
+                if (kopf.size() == 0) throw new IllegalArgumentException("Datei ist leer");
+                kopfzeile(kopf.toByteArray());
+            }
+            zeichen((byte) '\n');
+            if (monatOffen) monatAbschliessen();
+
+            List<Reihe> reihen = new ArrayList<>(spalten.length);
+            for (Spalte s : spalten) {
+                if (s == null) continue;
+                if (s.anzahl == 0) throw new IllegalArgumentException("Fonds '" + s.name + "' hat keine Werte");
+                reihen.add(new Reihe(s.name, Arrays.copyOf(s.werte, s.anzahl)));
+            }
+            return new Ergebnis(reihen, zeilen, werte, taeglich);
+        }
+
+        private void kopfzeile(byte[] b) {
+            int start = b.length >= 3 && (b[0] & 0xFF) == 0xEF && (b[1] & 0xFF) == 0xBB && (b[2] & 0xFF) == 0xBF ? 3 : 0;
+            String text = new String(b, start, b.length - start, StandardCharsets.UTF_8);
+
+            trenn = text.indexOf(';') >= 0 ? (byte) ';' : text.indexOf('\t') >= 0 ? (byte) '\t' : (byte) ',';
+            kommaErlaubt = trenn != ',';
+
+            String[] namen = text.split(String.valueOf((char) trenn), -1);
+            for (int i = 0; i < namen.length; i++) namen[i] = namen[i].replace("\"", "").strip();
+
+            schluesselSpalte = namen.length > 1 && SCHLUESSEL_SPALTEN.contains(namen[0].toLowerCase());
+            spalten = new Spalte[namen.length];
+
+            Set<String> gesehen = new HashSet<>();
+            for (int i = schluesselSpalte ? 1 : 0; i < namen.length; i++) {
+                String name = namen[i];
+                // Trennzeichen am Zeilenende (Excel-Export): letzte Spalte ohne Namen wird ignoriert
+                if (name.isEmpty() && i == namen.length - 1 && i > 0) continue;
+                if (name.isEmpty()) throw fehler("Spalte " + (i + 1) + " ohne Namen");
+                if (name.length() > 255) throw fehler("Name in Spalte " + (i + 1) + " zu lang");
+                if (!gesehen.add(name)) throw fehler("Fonds '" + name + "' doppelt");
+                spalten[i] = new Spalte(name);
+            }
+        }
+
+        private void zeichen(byte b) {
+            if (b == '\n') {
+                zelleEnde();
+                zeileEnde();
+            } else if (b == trenn) {
+                zelleEnde();
+                spalte++;
+            } else if (b == ' ' || b == '\r' || b == '"' || b == '\t') {
+                // ignorieren
+            } else {
+                zeileLeer = false;
+                if (spalte >= spalten.length) return; // Fehler folgt am Zeilenende
+                if (schluesselSpalte && spalte == 0) datum.zeichen(b);
+                else if (spalten[spalte] != null) zahl.zeichen(b, kommaErlaubt);
+            }
+        }
+
+        private void zelleEnde() {
+            if (spalte >= spalten.length) return;
+
+            if (schluesselSpalte && spalte == 0) {
+                if (datum.gruppen > 0) {
+                    schluessel();
+                    schluesselGelesen = true;
+                }
+                datum.reset();
+                return;
+            }
+            if (spalten[spalte] == null) return;
+
+            if (zahl.leer()) {
+                if (zahl.fehlerhaft()) throw fehlerZelle("ungültige Zahl");
+                return;
+            }
+            if (!zahl.gueltig()) throw fehlerZelle("ungültige Zahl");
+
+            long u = zahl.unskaliert();
+            zahl.reset();
+            if (u < MIN_RENDITE || u > MAX_RENDITE) throw fehlerZelle("Rendite außerhalb -100 % .. +1000 %");
+
+            monatOffen = true;
+            spalten[spalte].wert(u);
+            werte++;
+        }
+
+        private void zeileEnde() {
+            if (zeileLeer) {
+                // Leerzeile (auch nur Trennzeichen)
+                spalte = 0;
+                zeile++;
+                return;
+            }
+            if (spalte != spalten.length - 1) {
+                throw fehler((spalte + 1) + " Spalten statt " + spalten.length);
+            }
+            if (schluesselSpalte && !schluesselGelesen) throw fehler("Datum bzw. Monatsnummer fehlt");
+
+            zeilen++;
+            if (schluessel != Schluessel.DATUM) monatAbschliessen();
+
+            spalte = 0;
+            zeileLeer = true;
+            schluesselGelesen = false;
+            zeile++;
+        }
+
+        /**
+         * Schlüsselzelle der aktuellen Zeile: prüft die Reihenfolge und schließt ggf. den Vormonat ab.
+         */
+        private void schluessel() {
+            Schluessel art = switch (datum.gruppen) {
+                case 1 -> Schluessel.NUMMER;
+                case 2, 3 -> Schluessel.DATUM;
+                default -> throw fehlerZelle("kein Datum und keine Monatsnummer");
+            };
+            if (schluessel == Schluessel.KEINER) schluessel = art;
+            else if (schluessel != art) throw fehlerZelle("Datum und Monatsnummer gemischt");
+
+            if (art == Schluessel.NUMMER) {
+                long nr = datum.wert[0];
+                if (monatSchluessel != Long.MIN_VALUE && nr != monatSchluessel + 1) {
+                    throw fehlerZelle("Monatsnummer " + nr + " folgt nicht auf " + monatSchluessel);
+                }
+                monatSchluessel = nr;
+                return;
+            }
+
+            int jahr, monat, tag;
+            if (datum.gruppen == 2) {
+                boolean jahrZuerst = datum.stellen[0] == 4;
+                jahr = (int) datum.wert[jahrZuerst ? 0 : 1];
+                monat = (int) datum.wert[jahrZuerst ? 1 : 0];
+                tag = 0;
+            } else {
+                boolean jahrZuerst = datum.stellen[0] == 4;
+                jahr = (int) datum.wert[jahrZuerst ? 0 : 2];
+                monat = (int) datum.wert[1];
+                tag = (int) datum.wert[jahrZuerst ? 2 : 0];
+            }
+            if (jahr < 1000 || jahr > 9999 || monat < 1 || monat > 12 || tag < 0 || tag > 31) {
+                throw fehlerZelle("ungültiges Datum");
+            }
+
+            long d = jahr * 10_000L + monat * 100L + tag;
+            if (d <= letztesDatum) throw fehlerZelle("Datum nicht aufsteigend");
+            letztesDatum = d;
+
+            long m = jahr * 12L + monat - 1;
+            if (monatSchluessel != Long.MIN_VALUE && m != monatSchluessel) {
+                if (m != monatSchluessel + 1) throw fehlerZelle("Monat fehlt vor " + jahr + "-" + monat);
+                monatAbschliessen();
+            }
+            monatSchluessel = m;
+        }
+
+        private void monatAbschliessen() {
+            for (Spalte s : spalten) {
+                if (s == null) continue;
+                if (s.imMonat > 1) taeglich = true;
+                if (!s.monatAbschliessen()) {
+                    throw fehler("Fonds '" + s.name + "': Lücke in der Reihe");
+                }
+            }
+            monatOffen = false;
+        }
+
+        private IllegalArgumentException fehler(String text) {
+            return new IllegalArgumentException("Zeile " + zeile + ": " + text);
+        }
+
+        private IllegalArgumentException fehlerZelle(String text) {
+            String name = spalten[spalte] != null ? "'" + spalten[spalte].name + "'" : "Schlüssel";
+            return new IllegalArgumentException("Zeile " + zeile + ", Spalte " + name + ": " + text);
+        }
+    }
+
+    // =========================================================
+    // Eine Fonds-Spalte
+    // =========================================================
+
+    private static final class Spalte {
+
+        final String name;
+        long[] werte = new long[256];
+        int anzahl;
+        boolean beendet;
+
+        // aktueller Monat
+        int imMonat;
+        long ersterWert;
+        double produkt = 1.0;
+
+        Spalte(String name) {
+            this.name = name;
+        }
+
+        void wert(long u) {
+            if (imMonat == 0) ersterWert = u;
+            produkt *= 1.0 + u / (double) SKALA_FAKTOR;
+            imMonat++;
+        }
+
+        /**
+         * false, wenn nach dem Ende der Reihe wieder ein Wert kommt.
+         */
+        boolean monatAbschliessen() {
+            if (imMonat == 0) {
+                if (anzahl > 0) beendet = true;
+                return true;
+            }
+            if (beendet) return false;
+
+            // ein Wert: exakt übernehmen, mehrere: verketten und auf SKALA runden
+            long u = imMonat == 1 ? ersterWert : Math.round((produkt - 1.0) * SKALA_FAKTOR);
+            if (anzahl == werte.length) werte = Arrays.copyOf(werte, anzahl * 2);
+            werte[anzahl++] = u;
+
+            imMonat = 0;
+            produkt = 1.0;
+            return true;
+        }
+    }
+
+    // =========================================================
+    // Zahlen und Daten, Zeichen für Zeichen
+    // =========================================================
+
+    /**
+     * Dezimalzahl ohne Zwischen-String, direkt als unskalierter Wert (SKALA Nachkommastellen,
+     * HALF_UP wie RenditenKodierung). Auch für Text (KapitalanlageFactory) nutzbar.
+     */
+    static final class Dezimal {
+
+        private static final long MAX_GANZ = Long.MAX_VALUE / SKALA_FAKTOR - 1;
+
+        private boolean negativ;
+        private boolean vorzeichen;
+        private boolean trennzeichen;
+        private boolean ziffern;
+        private boolean fehler;
+        private long ganz;
+        private long bruch;
+        private int stellen;
+        private int rundung;
+
+        void zeichen(int c, boolean kommaErlaubt) {
+            if (c >= '0' && c <= '9') {
+                int z = c - '0';
+                ziffern = true;
+                if (!trennzeichen) {
+                    ganz = ganz * 10 + z;
+                    if (ganz > MAX_GANZ) fehler = true;
+                } else if (stellen < RenditenKodierung.SKALA) {
+                    bruch = bruch * 10 + z;
+                    stellen++;
+                } else if (stellen == RenditenKodierung.SKALA) {
+                    rundung = z;
+                    stellen++;
+                }
+            } else if ((c == '.' || (c == ',' && kommaErlaubt)) && !trennzeichen) {
+                trennzeichen = true;
+            } else if ((c == '-' || c == '+') && !vorzeichen && !ziffern && !trennzeichen) {
+                vorzeichen = true;
+                negativ = c == '-';
+            } else {
+                fehler = true;
+            }
+        }
+
+        boolean leer() {
+            return !ziffern;
+        }
+
+        boolean fehlerhaft() {
+            return fehler || vorzeichen || trennzeichen;
+        }
+
+        boolean gueltig() {
+            return ziffern && !fehler;
+        }
+
+        long unskaliert() {
+            long b = bruch;
+            for (int i = Math.min(stellen, RenditenKodierung.SKALA); i < RenditenKodierung.SKALA; i++) b *= 10;
+            long u = ganz * SKALA_FAKTOR + b + (rundung >= 5 ? 1 : 0);
+            return negativ ? -u : u;
+        }
+
+        void reset() {
+            negativ = vorzeichen = trennzeichen = ziffern = fehler = false;
+            ganz = bruch = 0;
+            stellen = rundung = 0;
+        }
+    }
+
+    /**
+     * Bis zu drei Zifferngruppen (Jahr/Monat/Tag in beliebiger Reihenfolge oder eine Monatsnummer).
+     */
+    private static final class Datum {
+
+        final long[] wert = new long[3];
+        final int[] stellen = new int[3];
+        int gruppen;
+        private boolean inGruppe;
+
+        void zeichen(byte b) {
+            if (b >= '0' && b <= '9') {
+                if (!inGruppe) {
+                    if (gruppen == 3) {
+                        gruppen = 4; // ungültig
+                        return;
+                    }
+                    if (gruppen > 3) return;
+                    inGruppe = true;
+                    gruppen++;
+                }
+                int g = gruppen - 1;
+                if (stellen[g] < 9) wert[g] = wert[g] * 10 + (b - '0');
+                stellen[g]++;
+            } else if (b == '-' || b == '.' || b == '/') {
+                inGruppe = false;
+            } else {
+                gruppen = 4;
+            }
+        }
+
+        void reset() {
+            Arrays.fill(wert, 0);
+            Arrays.fill(stellen, 0);
+            gruppen = 0;
+            inGruppe = false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.paf.tarifvergleich.service.kapitalanlage;
+
+import de.paf.tarifvergleich.domain.KapitalanlageTyp;
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+import de.paf.tarifvergleich.service.KatalogAenderung;
+import de.paf.tarifvergleich.service.berechnung.SerienSpeicher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Import von Renditereihen aus CSV (Format siehe {@link RenditenCsvLeser}) als Kapitalanlagen.
+ *
+ * Ein Fonds je Spalte: gibt es schon eine Kapitalanlage mit dem Namen, werden ihre Renditen
+ * ersetzt, sonst wird eine neue (FANTASY_FONDS, aktiv) angelegt. Geschrieben wird per JDBC in
+ * Batches, alles in einer Transaktion; bei einem Fehler in der Datei wird nichts geschrieben.
+ * Ist eine Serien-Datei eingeblendet, wird sie danach neu exportiert.
+ */
+@Service
+@Slf4j
+public class RenditenImport {
+
+    private static final int BATCH = 100;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaktion;
+    private final ApplicationEventPublisher events;
+    private final SerienSpeicher serienSpeicher;
+
+    public RenditenImport(
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher events,
+            SerienSpeicher serienSpeicher
+    ) {
+        this.jdbc = jdbc;
+        this.transaktion = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.serienSpeicher = serienSpeicher;
+    }
+
+    public record Ergebnis(int neu, int aktualisiert, long zeilen, long werte, int maxMonate, boolean taeglich, long dauerMs) {}
+
+    /**
+     * Liest die Quelle vollständig und schreibt erst danach (der Aufrufer schließt die Quelle).
+     */
+    public Ergebnis importieren(ReadableByteChannel quelle) {
+        long start = System.nanoTime();
+
+        RenditenCsvLeser.Ergebnis gelesen;
+        try {
+            gelesen = RenditenCsvLeser.lesen(quelle);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Import-Datei nicht lesbar", e);
+        }
+
+        int[] zaehler = transaktion.execute(tx -> schreiben(gelesen.reihen()));
+        if (serienSpeicher.aktiv()) serienSpeicher.exportieren();
+
+        int maxMonate = 0;
+        for (RenditenCsvLeser.Reihe r : gelesen.reihen()) maxMonate = Math.max(maxMonate, r.unskaliert().length);
+
+        Ergebnis e = new Ergebnis(zaehler[0], zaehler[1], gelesen.zeilen(), gelesen.werte(), maxMonate,
+                gelesen.taeglich(), (System.nanoTime() - start) / 1_000_000);
+        log.info("Renditen-Import: {} neu, {} aktualisiert, {} Zeilen, {} Werte, {} ms",
+                e.neu(), e.aktualisiert(), e.zeilen(), e.werte(), e.dauerMs());
+        return e;
+    }
+
+    /**
+     * @return {neu, aktualisiert}
+     */
+    private int[] schreiben(List<RenditenCsvLeser.Reihe> reihen) {
+        Map<String, Long> vorhanden = idsNachName();
+
+        List<RenditenCsvLeser.Reihe> neu = new ArrayList<>();
+        List<RenditenCsvLeser.Reihe> aenderung = new ArrayList<>();
+        for (RenditenCsvLeser.Reihe r : reihen) {
+            (vorhanden.containsKey(r.name()) ? aenderung : neu).add(r);
+        }
+
+        // kodiert wird erst beim Befüllen des Statements, je Batch
+        jdbc.batchUpdate("update kapitalanlage set renditen = ? where id = ?", aenderung, BATCH, (ps, r) -> {
+            ps.setBytes(1, RenditenKodierung.kodieren(r.unskaliert()));
+            ps.setLong(2, vorhanden.get(r.name()));
+        });
+        jdbc.batchUpdate("insert into kapitalanlage (name, typ, renditen, aktiv) values (?, ?, ?, ?)", neu, BATCH, (ps, r) -> {
+            ps.setString(1, r.name());
+            ps.setString(2, KapitalanlageTyp.FANTASY_FONDS.name());
+            ps.setBytes(3, RenditenKodierung.kodieren(r.unskaliert()));
+            ps.setBoolean(4, true);
+        });
+
+        Map<String, Long> ids = neu.isEmpty() ? vorhanden : idsNachName();
+        for (RenditenCsvLeser.Reihe r : reihen) events.publishEvent(KatalogAenderung.kapitalanlage(ids.get(r.name())));
+
+        return new int[]{neu.size(), aenderung.size()};
+    }
+
+    private Map<String, Long> idsNachName() {
+        Map<String, Long> out = new HashMap<>();
+        jdbc.query("select id, name from kapitalanlage", rs -> {
+            out.put(rs.getString(2), rs.getLong(1));
+        });
+        return out;
+    }
+}
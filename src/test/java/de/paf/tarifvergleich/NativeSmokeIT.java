@@ -0,0 +1,116 @@
+package de.paf.tarifvergleich;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Smoke-Test des Native Image (nur mvn -Pnative verify, Pfade kommen aus der Failsafe-Konfiguration):
+ * startet das Binary und zum Vergleich das JVM-Jar gegen eine H2-In-Memory-DB, wartet auf
+ * /actuator/health/readiness (inkl. Seed) und prüft Kapitalanlagen und Tarife.
+ * Startzeit bis "ready" und RSS (Linux, /proc) werden ausgegeben.
+ */
+class NativeSmokeIT {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    @Test
+    void nativeUndJvmStarten() throws Exception {
+        Path binary = Path.of(System.getProperty("native.binary"));
+        Path jar = Path.of(System.getProperty("jvm.jar"));
+        assertTrue(Files.isExecutable(binary), "Native Binary fehlt: " + binary);
+
+        Messung nativ = starten("native", List.of(binary.toString()));
+        Messung jvm = starten("jvm", List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-jar", jar.toString()));
+
+        System.out.printf("%-8s %12s %10s%n", "", "ready (ms)", "RSS (MB)");
+        System.out.printf("%-8s %12d %10d%n", "native", nativ.readyMs(), nativ.rssKb() / 1024);
+        System.out.printf("%-8s %12d %10d%n", "jvm", jvm.readyMs(), jvm.rssKb() / 1024);
+    }
+
+    private record Messung(long readyMs, long rssKb) {}
+
+    private Messung starten(String name, List<String> befehl) throws Exception {
+        int port = freierPort();
+        List<String> cmd = new ArrayList<>(befehl);
+        cmd.addAll(List.of(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:smoke;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--tarifvergleich.berechnung.vorberechnung=false"
+        ));
+
+        Path log = Path.of("target", "smoke-" + name + ".log");
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            String basis = "http://localhost:" + port;
+            warteAufReady(p, basis + "/actuator/health/readiness", log);
+            long readyMs = (System.nanoTime() - start) / 1_000_000;
+
+            HttpResponse<String> kapitalanlagen = get(basis + "/api/kapitalanlagen");
+            assertEquals(200, kapitalanlagen.statusCode(), name + ": /api/kapitalanlagen");
+            assertTrue(kapitalanlagen.body().contains("FantasyFonds"), name + ": Seed fehlt");
+
+            assertEquals(200, get(basis + "/api/tarife").statusCode(), name + ": /api/tarife");
+
+            return new Messung(readyMs, rssKb(p.pid()));
+        } finally {
+            p.destroy();
+            p.waitFor();
+        }
+    }
+
+    private void warteAufReady(Process p, String url, Path log) throws Exception {
+        long ende = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < ende) {
+            assertTrue(p.isAlive(), "Prozess beendet, siehe " + log);
+            try {
+                if (get(url).statusCode() == 200) return;
+            } catch (IOException nochNichtDa) {
+                // Port noch zu
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Nicht ready nach " + TIMEOUT + ", siehe " + log);
+    }
+
+    private HttpResponse<String> get(String url) throws IOException, InterruptedException {
+        return http.send(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(5)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) return -1;
+        for (String zeile : Files.readAllLines(status)) {
+            if (zeile.startsWith("VmRSS:")) return Long.parseLong(zeile.replaceAll("\\D", ""));
+        }
+        return -1;
+    }
+
+    private static int freierPort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.paf.tarifvergleich.service;
+
+import de.paf.tarifvergleich.domain.Tarif;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Bitset-Index gegen die naive Auswertung je Tarif – neu aufgebaut und nach einzelnen
+ * Tarif-Änderungen (Slots wiederverwenden, Wortanzahl schrumpft und wächst).
+ */
+class VerfuegbarkeitsIndexTest {
+
+    private static final int[] BEITRAEGE = {25, 50, 99, 100, 150, 200};
+    private static final int[] LAUFZEITEN = {10, 20, 30, 40};
+    private static final Integer[] ALTER = {null, 0, 17, 18, 35, 50, 67};
+
+    @Test
+    void neuAufgebautWieNaiv() {
+        Random r = new Random(42);
+        List<Tarif> tarife = new ArrayList<>();
+        for (long id = 1; id <= 150; id++) tarife.add(zufall(r, id));
+        Set<KatalogSnapshot.Zelle> grundlagen = zufallsGrundlagen(r, tarife);
+
+        pruefen(VerfuegbarkeitsIndex.aufbauen(null, null, tarife, grundlagen), tarife, grundlagen);
+    }
+
+    @Test
+    void grenzfaelle() {
+        List<Tarif> tarife = List.of(
+                // Mindestbeitrag gleich dem Beitrag: erfüllt
+                tarif(1L, 100, null, null),
+                // Höchst-Endalter 0 = nicht gepflegt
+                tarif(2L, null, 18, 0),
+                // Endalter genau erreicht: erfüllt
+                tarif(3L, null, null, 67),
+                // keine Kostenstruktur in der Zelle
+                tarif(4L, null, null, null)
+        );
+        Set<KatalogSnapshot.Zelle> grundlagen = Set.of(
+                zelle(1L, 100, 30), zelle(2L, 100, 30), zelle(3L, 100, 30), zelle(4L, 100, 20)
+        );
+        VerfuegbarkeitsIndex index = VerfuegbarkeitsIndex.aufbauen(null, null, tarife, grundlagen);
+
+        VerfuegbarkeitsIndex.Auswahl a = index.auswahl(100, 30, 37);
+        assertEquals(3, a.anzahlVerfuegbar());
+        assertEquals(VerfuegbarkeitsIndex.HINWEIS_KEINE_DATEN, a.hinweis(3));
+
+        assertEquals(VerfuegbarkeitsIndex.HINWEIS_MINDESTBEITRAG, index.auswahl(99, 30, 37).hinweis(0));
+
+        VerfuegbarkeitsIndex.Auswahl b = index.auswahl(100, 30, 38);
+        assertNull(b.hinweis(1));
+        assertEquals(VerfuegbarkeitsIndex.HINWEIS_ALTER, b.hinweis(2));
+
+        pruefen(index, tarife, grundlagen);
+    }
+
+    @Test
+    void einzelneAenderungenWieNeuAufgebaut() {
+        Random r = new Random(7);
+        // 129 Tarife: der letzte liegt allein im dritten Wort
+        List<Tarif> tarife = new ArrayList<>();
+        for (long id = 1; id <= 129; id++) tarife.add(zufall(r, id));
+        Set<KatalogSnapshot.Zelle> grundlagen = zufallsGrundlagen(r, tarife);
+        VerfuegbarkeitsIndex index = VerfuegbarkeitsIndex.aufbauen(null, null, tarife, grundlagen);
+
+        // Tarif im mittleren Slot deaktivieren
+        Tarif fuenf = tarife.remove(4);
+        index = aendern(index, 5L, tarife, grundlagen);
+
+        // Tarif im höchsten Slot deaktivieren: Wortanzahl schrumpft
+        Tarif letzter = tarife.remove(tarife.size() - 1);
+        index = aendern(index, 129L, tarife, grundlagen);
+
+        // wieder aktivieren: übernimmt den freien Slot von Tarif 5
+        tarife.add(letzter);
+        index = aendern(index, 129L, tarife, grundlagen);
+        tarife.add(2, fuenf);
+        index = aendern(index, 5L, tarife, grundlagen);
+
+        // Regeln und Zellen eines Tarifs ändern
+        for (int runde = 0; runde < 20; runde++) {
+            int pos = r.nextInt(tarife.size());
+            Long id = tarife.get(pos).getId();
+            tarife.set(pos, zufall(r, id));
+            grundlagen.removeIf(z -> id.equals(z.tarifId()));
+            for (int[] zelle : zufallsZellen(r)) grundlagen.add(zelle(id, zelle[0], zelle[1]));
+            index = aendern(index, id, tarife, grundlagen);
+        }
+
+        // neuer Tarif über die bisherige Wortgrenze hinaus
+        tarife.add(zufall(r, 1000L));
+        grundlagen.add(zelle(1000L, 100, 30));
+        aendern(index, 1000L, tarife, grundlagen);
+    }
+
+    // =========================================================
+    // Hilfen
+    // =========================================================
+
+    private static VerfuegbarkeitsIndex aendern(VerfuegbarkeitsIndex vorher, Long tarifId,
+                                                List<Tarif> tarife, Set<KatalogSnapshot.Zelle> grundlagen) {
+        VerfuegbarkeitsIndex index = VerfuegbarkeitsIndex.aufbauen(vorher, tarifId, tarife, grundlagen);
+        pruefen(index, tarife, grundlagen);
+        return index;
+    }
+
+    /**
+     * Jede Kombination aus Beitrag, Laufzeit und Alter gegen die naive Auswertung.
+     */
+    private static void pruefen(VerfuegbarkeitsIndex index, List<Tarif> tarife, Set<KatalogSnapshot.Zelle> grundlagen) {
+        for (int beitrag : BEITRAEGE) {
+            for (int laufzeit : LAUFZEITEN) {
+                for (Integer alter : ALTER) {
+                    VerfuegbarkeitsIndex.Auswahl a = index.auswahl(beitrag, laufzeit, alter);
+                    int anzahl = 0;
+                    for (int i = 0; i < tarife.size(); i++) {
+                        String erwartet = naiv(tarife.get(i), grundlagen, beitrag, laufzeit, alter);
+                        String fall = "Tarif " + tarife.get(i).getId() + ", " + beitrag + " €, " + laufzeit + " J, Alter " + alter;
+                        assertEquals(erwartet, a.hinweis(i), fall);
+                        assertEquals(erwartet == null, a.verfuegbar(i), fall);
+                        if (erwartet == null) anzahl++;
+                    }
+                    assertEquals(anzahl, a.anzahlVerfuegbar());
+                }
+            }
+        }
+    }
+
+    private static String naiv(Tarif t, Set<KatalogSnapshot.Zelle> grundlagen, int beitrag, int laufzeit, Integer alter) {
+        if (t.getMindestbeitragMonat() != null && BigDecimal.valueOf(beitrag).compareTo(t.getMindestbeitragMonat()) < 0) {
+            return VerfuegbarkeitsIndex.HINWEIS_MINDESTBEITRAG;
+        }
+        if (alter != null) {
+            boolean zuJung = t.getMinStartalter() != null && alter < t.getMinStartalter();
+            boolean zuAlt = t.getMaxEndalter() != null && t.getMaxEndalter() > 0 && alter + laufzeit > t.getMaxEndalter();
+            if (zuJung || zuAlt) return VerfuegbarkeitsIndex.HINWEIS_ALTER;
+        }
+        if (!grundlagen.contains(zelle(t.getId(), beitrag, laufzeit))) return VerfuegbarkeitsIndex.HINWEIS_KEINE_DATEN;
+        return null;
+    }
+
+    private static Tarif zufall(Random r, long id) {
+        Integer mindest = r.nextInt(3) == 0 ? null : BEITRAEGE[r.nextInt(BEITRAEGE.length)];
+        Integer start = r.nextInt(3) == 0 ? null : 18 + r.nextInt(3) * 10;
+        Integer ende = switch (r.nextInt(4)) {
+            case 0 -> null;
+            case 1 -> 0;
+            default -> 60 + r.nextInt(31);
+        };
+        return tarif(id, mindest, start, ende);
+    }
+
+    private static Set<KatalogSnapshot.Zelle> zufallsGrundlagen(Random r, List<Tarif> tarife) {
+        Set<KatalogSnapshot.Zelle> grundlagen = new HashSet<>();
+        for (Tarif t : tarife) {
+            for (int[] z : zufallsZellen(r)) grundlagen.add(zelle(t.getId(), z[0], z[1]));
+        }
+        return grundlagen;
+    }
+
+    private static List<int[]> zufallsZellen(Random r) {
+        List<int[]> zellen = new ArrayList<>();
+        for (int beitrag : BEITRAEGE) {
+            for (int laufzeit : LAUFZEITEN) {
+                if (r.nextInt(3) > 0) zellen.add(new int[]{beitrag, laufzeit});
+            }
+        }
+        return zellen;
+    }
+
+    private static Tarif tarif(Long id, Integer mindestbeitrag, Integer minStartalter, Integer maxEndalter) {
+        return Tarif.builder()
+                .id(id)
+                .tarifName("Tarif " + id)
+                .mindestbeitragMonat(mindestbeitrag != null ? BigDecimal.valueOf(mindestbeitrag) : null)
+                .minStartalter(minStartalter)
+                .maxEndalter(maxEndalter)
+                .build();
+    }
+
+    private static KatalogSnapshot.Zelle zelle(Long tarifId, int beitrag, int laufzeit) {
+        return new KatalogSnapshot.Zelle(tarifId, beitrag, laufzeit);
+    }
+}
@@ -0,0 +1,260 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.config.BerechnungsProperties;
+import de.paf.tarifvergleich.controller.dto.BerechnungErgebnisDto;
+import de.paf.tarifvergleich.controller.dto.WertpunktDto;
+import de.paf.tarifvergleich.domain.*;
+import de.paf.tarifvergleich.service.kapitalanlage.KapitalanlageFactory;
+import de.paf.tarifvergleich.service.kapitalanlage.RenditeGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SCHNELL muss innerhalb der dokumentierten Toleranz zu REFERENZ liegen.
+ */
+class SchnellRechenkernTest {
+
+    private final GarantieFaktoren garantieFaktoren = new GarantieFaktoren();
+    private final TopfBFloorIndex topfBFloorIndex = new TopfBFloorIndex();
+    private final ReferenzRechenkern referenz = new ReferenzRechenkern(topfBFloorIndex);
+    private final SchnellRechenkern schnell = new SchnellRechenkern(topfBFloorIndex);
+
+    private static final TarifSkripte tarifSkripte = new TarifSkripte(new BerechnungsProperties());
+
+    @AfterAll
+    static void skripteSchliessen() {
+        tarifSkripte.destroy();
+    }
+
+    static Stream<Arguments> faelle() {
+        List<Arguments> out = new ArrayList<>();
+        for (TarifTyp typ : TarifTyp.values()) {
+            for (int laufzeit : new int[]{15, 30, 65}) {
+                for (int beitrag : new int[]{25, 200}) {
+                    out.add(Arguments.of(typ, laufzeit, beitrag));
+                }
+            }
+        }
+        return out.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("faelle")
+    void schnellInnerhalbToleranz(TarifTyp typ, int laufzeit, int beitrag) {
+        Tarif tarif = tarif(typ);
+        List<Kostenpunkt> kosten = kostenpunkte();
+        Renditereihe kaA = Renditereihe.aus(fantasy(42L), 0);
+        Renditereihe kaB = Renditereihe.aus(fixed("3% Rendite", 0.03), 0);
+
+        Kostenplan plan = Kostenplan.kompilieren(tarif, null, kosten, BigDecimal.valueOf(beitrag), laufzeit, garantieFaktoren);
+
+        BerechnungErgebnisDto ref = referenz.simuliere(plan, 30, kaA, kaB);
+        BerechnungErgebnisDto fast = schnell.simuliere(plan, 30, kaA, kaB);
+
+        assertTrue(SchnellRechenkern.innerhalbToleranz(ref.endwert(), fast.endwert()),
+                () -> "endwert " + ref.endwert() + " vs " + fast.endwert());
+
+        assertEquals(ref.wertentwicklung().size(), fast.wertentwicklung().size());
+        for (int i = 0; i < ref.wertentwicklung().size(); i++) {
+            WertpunktDto r = ref.wertentwicklung().get(i);
+            WertpunktDto f = fast.wertentwicklung().get(i);
+            assertEquals(r.jahr(), f.jahr());
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.summeEinzahlungen(), f.summeEinzahlungen()));
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.gesamtKapital(), f.gesamtKapital()),
+                    () -> "Jahr " + r.jahr() + ": " + r.gesamtKapital() + " vs " + f.gesamtKapital());
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.topf1Fonds(), f.topf1Fonds()));
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.topf2Wertsicherung(), f.topf2Wertsicherung()));
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.topf3Garantie(), f.topf3Garantie()));
+        }
+    }
+
+    static Stream<Arguments> fixedFaelle() {
+        List<Arguments> out = new ArrayList<>();
+        for (String kosten : new String[]{"LINEAR", "MIT_MINIMUM", "KLAMMERUNG"}) {
+            for (double rate : new double[]{0.0, 0.03, 0.09}) {
+                for (int laufzeit : new int[]{15, 65}) {
+                    out.add(Arguments.of(kosten, rate, laufzeit, 25));
+                    out.add(Arguments.of(kosten, rate, laufzeit, 200));
+                }
+            }
+        }
+        return out.stream();
+    }
+
+    /**
+     * FONDS + FIXED läuft segmentweise geschlossen (bzw. fällt bei Mindestkosten und
+     * Klammerung auf Monatsschritte zurück) und muss trotzdem zu REFERENZ passen.
+     */
+    @ParameterizedTest
+    @MethodSource("fixedFaelle")
+    void fixedGeschlosseneFormInnerhalbToleranz(String kostenVariante, double rate, int laufzeit, int beitrag) {
+        List<Kostenpunkt> kosten = switch (kostenVariante) {
+            case "LINEAR" -> kostenpunkte().stream().filter(k -> !"GUTHABEN".equals(k.getCode())).toList();
+            case "KLAMMERUNG" -> List.of(
+                    Kostenpunkt.builder().code("HOCH").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                            .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("60"))
+                            .gueltigVonMonat(1).gueltigBisMonat(30).build(),
+                    Kostenpunkt.builder().code("JAHRESGEBUEHR").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                            .rhythmus(KostenRhythmus.JAHRLICH).wert(new BigDecimal("500")).build(),
+                    Kostenpunkt.builder().code("VERWALTUNG").typ(KostenTyp.PROZENT).basis(KostenBasis.KAPITAL)
+                            .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("0.1")).build()
+            );
+            default -> kostenpunkte();
+        };
+
+        Kostenplan plan = Kostenplan.kompilieren(tarif(TarifTyp.FONDS), null, kosten,
+                BigDecimal.valueOf(beitrag), laufzeit, garantieFaktoren);
+        Renditereihe kaA = Renditereihe.aus(fixed("fix", rate), 0);
+
+        BerechnungErgebnisDto ref = referenz.simuliere(plan, 30, kaA, null);
+        BerechnungErgebnisDto fast = schnell.simuliere(plan, 30, kaA, null);
+
+        assertTrue(SchnellRechenkern.innerhalbToleranz(ref.endwert(), fast.endwert()),
+                () -> "endwert " + ref.endwert() + " vs " + fast.endwert());
+        for (int i = 0; i < ref.wertentwicklung().size(); i++) {
+            WertpunktDto r = ref.wertentwicklung().get(i);
+            WertpunktDto f = fast.wertentwicklung().get(i);
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.summeEinzahlungen(), f.summeEinzahlungen()));
+            assertTrue(SchnellRechenkern.innerhalbToleranz(r.gesamtKapital(), f.gesamtKapital()),
+                    () -> "Jahr " + r.jahr() + ": " + r.gesamtKapital() + " vs " + f.gesamtKapital());
+        }
+    }
+
+    /**
+     * Ein Kostenpunkt als Tarif-Skript statt in der Kostenstruktur: beide Kerne müssen
+     * dasselbe Ergebnis liefern wie mit dem Kostenpunkt (hier auch FONDS + FIXED, das mit
+     * Regeln nicht geschlossen gerechnet wird).
+     */
+    @ParameterizedTest
+    @EnumSource(TarifTyp.class)
+    void skriptKostenWieKostenpunkt(TarifTyp typ) {
+        List<Kostenpunkt> ohneStufe = kostenpunkte().stream().filter(k -> !"FIX_STUFE1".equals(k.getCode())).toList();
+        Tarif mitSkript = tarif(typ);
+        mitSkript.setBerechnungsScript("function kosten(t) { return t.monat <= 120 ? 1.5 : 0; }");
+
+        Kostenplan nativ = Kostenplan.kompilieren(tarif(typ), null, kostenpunkte(), BigDecimal.valueOf(100), 30, garantieFaktoren);
+        Kostenplan skript = Kostenplan.kompilieren(mitSkript, null, ohneStufe, BigDecimal.valueOf(100), 30, garantieFaktoren);
+
+        for (Renditereihe kaA : List.of(Renditereihe.aus(fantasy(7L), 0), Renditereihe.aus(fixed("fix", 0.06), 0))) {
+            Renditereihe kaB = Renditereihe.aus(fixed("3% Rendite", 0.03), 0);
+            for (Rechenkern kern : List.of(referenz, schnell)) {
+                BerechnungErgebnisDto erwartet = kern.simuliere(nativ, 30, kaA, kaB);
+                BerechnungErgebnisDto ist;
+                try (TarifSkripte.Kontext k = tarifSkripte.ausleihen()) {
+                    ist = kern.simuliere(skript, 30, kaA, kaB, k.regeln(skript));
+                }
+                assertTrue(SchnellRechenkern.innerhalbToleranz(erwartet.endwert(), ist.endwert()),
+                        () -> kern.getClass().getSimpleName() + ": " + erwartet.endwert() + " vs " + ist.endwert());
+            }
+        }
+    }
+
+    /**
+     * Endlosschleife im Skript: Abbruch über das Anweisungs-Limit als IllegalStateException,
+     * der Kontext wird ersetzt und der Pool bleibt benutzbar.
+     */
+    @Test
+    void skriptEndlosschleifeWirdAbgebrochen() {
+        BerechnungsProperties properties = new BerechnungsProperties();
+        properties.setSkriptKontexte(1);
+        properties.setSkriptWartezeitMs(100);
+        TarifSkripte skripte = new TarifSkripte(properties);
+        try {
+            Tarif endlos = tarif(TarifTyp.FONDS);
+            endlos.setBerechnungsScript("function kosten(t) { while (true) {} }");
+            Kostenplan plan = Kostenplan.kompilieren(endlos, null, kostenpunkte(), BigDecimal.valueOf(100), 30, garantieFaktoren);
+            Renditereihe kaA = Renditereihe.aus(fixed("fix", 0.06), 0);
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+                try (TarifSkripte.Kontext k = skripte.ausleihen()) {
+                    schnell.simuliere(plan, 30, kaA, kaA, k.regeln(plan));
+                }
+            });
+            assertTrue(e.getMessage().contains("kosten(t) in Monat 1"), e.getMessage());
+
+            // einziger Kontext verworfen => neuer wird angelegt, kein Warten
+            Tarif normal = tarif(TarifTyp.FONDS);
+            normal.setBerechnungsScript("function kosten(t) { return 1; }");
+            Kostenplan ok = Kostenplan.kompilieren(normal, null, kostenpunkte(), BigDecimal.valueOf(100), 30, garantieFaktoren);
+            try (TarifSkripte.Kontext k = skripte.ausleihen()) {
+                assertTrue(schnell.simuliere(ok, 30, kaA, kaA, k.regeln(ok)).endwert().signum() > 0);
+
+                // alle Kontexte vergeben: nach der Wartezeit Fehler statt Blockieren
+                IllegalStateException belegt = assertThrows(IllegalStateException.class, skripte::ausleihen);
+                assertTrue(belegt.getMessage().startsWith("Kein Skript-Kontext frei"), belegt.getMessage());
+            }
+        } finally {
+            skripte.destroy();
+        }
+    }
+
+    // =========================================================
+    // Fixtures (angelehnt an DataLoader)
+    // =========================================================
+
+    static Tarif tarif(TarifTyp typ) {
+        return Tarif.builder()
+                .id(1L)
+                .tarifName("Test " + typ)
+                .tarifCode("T_" + typ)
+                .tarifTyp(typ)
+                .garantiezins(new BigDecimal("0.0125"))
+                .garantieModus(GarantieModus.MIT_UEBERSCHUESSEN)
+                .garantieNiveau(new BigDecimal("0.80"))
+                .topfBFloor(new BigDecimal("0.80"))
+                .build();
+    }
+
+    static List<Kostenpunkt> kostenpunkte() {
+        return List.of(
+                Kostenpunkt.builder().code("ABSCHLUSS_VERTEILT_5J").typ(KostenTyp.PROZENT).basis(KostenBasis.BEITRAG)
+                        .rhythmus(KostenRhythmus.VERTEILT_5_JAHRE).wert(new BigDecimal("2.5")).build(),
+                Kostenpunkt.builder().code("VERWALTUNG").typ(KostenTyp.PROZENT).basis(KostenBasis.BEITRAG)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("4.0")).build(),
+                Kostenpunkt.builder().code("GUTHABEN").typ(KostenTyp.PROZENT).basis(KostenBasis.KAPITAL)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("0.60"))
+                        .prozentPeriode(ProzentPeriode.JAHRLICH).minimumEuro(new BigDecimal("0.10")).build(),
+                Kostenpunkt.builder().code("FIX_STUFE1").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("1.50"))
+                        .gueltigVonMonat(1).gueltigBisMonat(120).build(),
+                Kostenpunkt.builder().code("JAHRESGEBUEHR").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.JAHRLICH).wert(new BigDecimal("12")).build(),
+                Kostenpunkt.builder().code("POLICE").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.EINMALIG).wert(new BigDecimal("20")).build(),
+                Kostenpunkt.builder().code("INAKTIV").typ(KostenTyp.EURO).basis(KostenBasis.FIX)
+                        .rhythmus(KostenRhythmus.MONATLICH).wert(new BigDecimal("99")).aktiv(false).build()
+        );
+    }
+
+    static Kapitalanlage fantasy(long seed) {
+        List<BigDecimal> r = RenditeGenerator.generateMsciWorldLikeMonths(65 * 12, 0.07, 30, seed);
+        Kapitalanlage k = KapitalanlageFactory.createFromMonthlyReturns("Fantasy " + seed, r);
+        k.setId(100L + seed);
+        return k;
+    }
+
+    static Kapitalanlage fixed(String name, double annualRate) {
+        double rM = Math.pow(1.0 + annualRate, 1.0 / 12.0) - 1.0;
+        return Kapitalanlage.builder()
+                .id(10L)
+                .name(name)
+                .typ(KapitalanlageTyp.FIXED)
+                .annualRate(BigDecimal.valueOf(annualRate))
+                .monatlicheRenditen(new ArrayList<>(Collections.nCopies(65 * 12, new BigDecimal(rM))))
+                .build();
+    }
+}
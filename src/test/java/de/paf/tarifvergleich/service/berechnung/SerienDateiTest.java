@@ -0,0 +1,184 @@
+package de.paf.tarifvergleich.service.berechnung;
+
+import de.paf.tarifvergleich.domain.Kapitalanlage;
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+import de.paf.tarifvergleich.service.kapitalanlage.RenditeGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serien-Datei (Format v2): schreiben, einblenden und jede Reihe gegen die Heap-Reihe aus
+ * denselben Werten vergleichen – Index-Suche, Präfix-Produkt (wachstum) und konstantBis.
+ */
+class SerienDateiTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void eingeblendetWieHeap() {
+        Map<Long, long[]> reihen = beispielReihen();
+        Path pfad = dir.resolve("serien.bin");
+
+        // absichtlich nicht nach Id sortiert geschrieben
+        List<Long> reihenfolge = new ArrayList<>(reihen.keySet());
+        Collections.shuffle(reihenfolge, new Random(3));
+        try (SerienDatei.Schreiber s = SerienDatei.schreiber(pfad)) {
+            for (Long id : reihenfolge) s.reihe(SerienDatei.Art.KAPITALANLAGE, id, reihen.get(id));
+        }
+
+        SerienDatei datei = SerienDatei.oeffnen(pfad);
+        assertEquals(reihen.size(), datei.anzahl());
+        assertEquals(reihen.keySet().stream().sorted().toList(), datei.ids(SerienDatei.Art.KAPITALANLAGE));
+
+        for (Map.Entry<Long, long[]> e : reihen.entrySet()) {
+            Renditereihe gemappt = datei.reihe(SerienDatei.Art.KAPITALANLAGE, e.getKey(), 7L);
+            Renditereihe heap = Renditereihe.aus(kapitalanlage(e.getKey(), e.getValue()), 7L);
+            vergleichen(heap, gemappt, "Reihe " + e.getKey());
+        }
+    }
+
+    @Test
+    void fehlendeIds() {
+        Path pfad = dir.resolve("serien.bin");
+        try (SerienDatei.Schreiber s = SerienDatei.schreiber(pfad)) {
+            for (long id = 10; id <= 100; id += 10) s.reihe(SerienDatei.Art.KAPITALANLAGE, id, new long[]{id});
+        }
+        SerienDatei datei = SerienDatei.oeffnen(pfad);
+
+        // vor, zwischen und hinter den vorhandenen Ids
+        for (long id : new long[]{Long.MIN_VALUE, 0, 9, 11, 55, 99, 101, Long.MAX_VALUE}) {
+            assertNull(datei.reihe(SerienDatei.Art.KAPITALANLAGE, id, 1L), "Id " + id);
+            assertFalse(datei.enthaelt(SerienDatei.Art.KAPITALANLAGE, id));
+        }
+        for (long id = 10; id <= 100; id += 10) {
+            assertTrue(datei.enthaelt(SerienDatei.Art.KAPITALANLAGE, id));
+            assertEquals(id, datei.reihe(SerienDatei.Art.KAPITALANLAGE, id, 1L).rendite(1).unscaledValue().longValue());
+        }
+    }
+
+    @Test
+    void doppelteIdBeimSchliessenAbgelehnt() throws IOException {
+        Path pfad = dir.resolve("serien.bin");
+        SerienDatei.Schreiber s = SerienDatei.schreiber(pfad);
+        s.reihe(SerienDatei.Art.KAPITALANLAGE, 1L, new long[]{1, 2});
+        s.reihe(SerienDatei.Art.KAPITALANLAGE, 2L, new long[]{3});
+        s.reihe(SerienDatei.Art.KAPITALANLAGE, 1L, new long[]{4});
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, s::close);
+        assertEquals("Reihe doppelt: KAPITALANLAGE 1", e.getMessage());
+
+        // Ziel nicht angelegt, temp-Datei verworfen
+        assertFalse(Files.exists(pfad));
+        try (var dateien = Files.list(dir)) {
+            assertEquals(0, dateien.count());
+        }
+    }
+
+    @Test
+    void versionUndMagicGeprueft() throws IOException {
+        Path pfad = dir.resolve("serien.bin");
+        try (SerienDatei.Schreiber s = SerienDatei.schreiber(pfad)) {
+            s.reihe(SerienDatei.Art.KAPITALANLAGE, 1L, new long[]{1});
+        }
+
+        ueberschreiben(pfad, 4, 1);
+        IllegalArgumentException version = assertThrows(IllegalArgumentException.class, () -> SerienDatei.oeffnen(pfad));
+        assertTrue(version.getMessage().startsWith("Unbekannte Version 1"), version.getMessage());
+
+        ueberschreiben(pfad, 0, 0);
+        IllegalArgumentException magic = assertThrows(IllegalArgumentException.class, () -> SerienDatei.oeffnen(pfad));
+        assertTrue(magic.getMessage().startsWith("Keine Serien-Datei"), magic.getMessage());
+    }
+
+    // =========================================================
+    // Hilfen
+    // =========================================================
+
+    private static void vergleichen(Renditereihe heap, Renditereihe gemappt, String fall) {
+        int l = heap.laenge();
+        assertEquals(l, gemappt.laenge(), fall);
+        assertEquals(7L, gemappt.stand(), fall);
+
+        for (int m = -1; m <= l + 2; m++) {
+            assertEquals(heap.renditeDouble(m), gemappt.renditeDouble(m), fall + " Monat " + m);
+            assertEquals(0, heap.rendite(m).compareTo(gemappt.rendite(m)), fall + " Monat " + m);
+        }
+        for (int bis = 0; bis <= l + 2; bis++) {
+            assertEquals(heap.konstanteRendite(bis), gemappt.konstanteRendite(bis), fall + " konstant bis " + bis);
+        }
+        // Präfix-Produkt: gleiche Rechnung => bitgleich
+        for (int von = 0; von <= l + 1; von += Math.max(1, l / 13)) {
+            for (int bis = von - 1; bis <= l + 1; bis += Math.max(1, l / 17)) {
+                assertEquals(heap.wachstum(von, bis), gemappt.wachstum(von, bis), fall + " wachstum " + von + ".." + bis);
+            }
+        }
+    }
+
+    /**
+     * Reihen mit allen Sonderfällen von konstantBis und des Präfix-Produkts.
+     */
+    private static Map<Long, long[]> beispielReihen() {
+        Map<Long, long[]> reihen = new LinkedHashMap<>();
+        // generierte Fondsreihen
+        for (long seed = 1; seed <= 30; seed++) {
+            reihen.put(1000 + seed * 7, unskaliert(RenditeGenerator.generateMsciWorldLikeMonths(65 * 12, 0.07, 30, seed)));
+        }
+        long[] fixed = new long[780];
+        Arrays.fill(fixed, 24_662_698L);
+        reihen.put(10L, fixed);
+        reihen.put(11L, new long[780]);
+        // konstanter Anfang, dann Wechsel
+        long[] anfang = fixed.clone();
+        anfang[120] = 50_000_000L;
+        reihen.put(12L, anfang);
+        // -100 % mittendrin: wachstum über den Nullpunkt hinweg
+        long[] totalverlust = unskaliert(RenditeGenerator.generateMsciWorldLikeMonths(240, 0.05, 20, 99L));
+        totalverlust[100] = -10_000_000_000L;
+        reihen.put(13L, totalverlust);
+        reihen.put(14L, new long[0]);
+        reihen.put(15L, new long[]{-3});
+        return reihen;
+    }
+
+    private static long[] unskaliert(List<BigDecimal> renditen) {
+        return RenditenKodierung.dekodieren(RenditenKodierung.kodieren(renditen)).unskaliert();
+    }
+
+    private static Kapitalanlage kapitalanlage(long id, long[] unskaliert) {
+        return Kapitalanlage.builder()
+                .id(id)
+                .name("Reihe " + id)
+                .renditenDaten(RenditenKodierung.kodieren(unskaliert))
+                .build();
+    }
+
+    private static void ueberschreiben(Path pfad, int position, int wert) throws IOException {
+        try (FileChannel ch = FileChannel.open(pfad, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(wert).flip();
+            ch.write(b, position);
+        }
+    }
+}
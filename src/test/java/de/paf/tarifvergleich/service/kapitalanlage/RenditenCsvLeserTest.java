@@ -0,0 +1,284 @@
+package de.paf.tarifvergleich.service.kapitalanlage;
+
+import de.paf.tarifvergleich.domain.RenditenKodierung;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CSV-Import: Formate, Puffergrenzen, Verkettung von Tageswerten, Fehlermeldungen mit Zeile
+ * und Spalte, und der Weg weiter in die Spalte kapitalanlage.renditen (RenditenKodierung).
+ */
+class RenditenCsvLeserTest {
+
+    // ein Prozent unskaliert (SKALA 10)
+    private static final long PROZENT = 100_000_000L;
+
+    // =========================================================
+    // Formate
+    // =========================================================
+
+    @Test
+    void semikolonMitDezimalkomma() throws IOException {
+        RenditenCsvLeser.Ergebnis e = lesen("""
+                Datum;Fonds A;Fonds B
+                2020-01;0,0012;-0,0004
+                2020-02;1,5;0
+                """);
+
+        assertEquals(2, e.zeilen());
+        assertEquals(4, e.werte());
+        assertFalse(e.taeglich());
+        assertReihe(e, 0, "Fonds A", 12_000_000L, 15_000_000_000L);
+        assertReihe(e, 1, "Fonds B", -4_000_000L, 0L);
+    }
+
+    @Test
+    void kommaMitDezimalpunkt() throws IOException {
+        RenditenCsvLeser.Ergebnis e = lesen("""
+                Monat,"Fonds A",Fonds B
+                1,0.0012,-0.0004
+                2,"0.01",+0.00000000005
+                """);
+
+        assertReihe(e, 0, "Fonds A", 12_000_000L, PROZENT);
+        // 11. Nachkommastelle wird HALF_UP gerundet
+        assertReihe(e, 1, "Fonds B", -4_000_000L, 1L);
+    }
+
+    @Test
+    void trennzeichenAmZeilenende() throws IOException {
+        // Excel-Export: jede Zeile endet mit ';', die leere letzte Spalte zählt nicht
+        RenditenCsvLeser.Ergebnis e = lesen("""
+                Datum;A;
+                2020-01;0,01;
+                2020-02;0,02;
+                """);
+
+        assertEquals(1, e.reihen().size());
+        assertReihe(e, 0, "A", PROZENT, 2 * PROZENT);
+    }
+
+    @Test
+    void tageswerteWerdenZumMonatVerkettet() throws IOException {
+        RenditenCsvLeser.Ergebnis e = lesen("""
+                Datum;A
+                02.01.2020;0,01
+                03.01.2020;0,02
+                31.01.2020;-0,01
+                03.02.2020;0,005
+                """);
+
+        assertTrue(e.taeglich());
+        assertEquals(4, e.zeilen());
+        // (1.01 * 1.02 * 0.99) - 1 = 0.019898
+        assertReihe(e, 0, "A", 198_980_000L, 50_000_000L);
+    }
+
+    // =========================================================
+    // Puffergrenzen (64 KB)
+    // =========================================================
+
+    static Stream<Arguments> kanaele() {
+        return Stream.of(
+                Arguments.of("am Stück", Integer.MAX_VALUE),
+                Arguments.of("in 7-Byte-Stücken", 7),
+                Arguments.of("in 65535-Byte-Stücken", 65_535)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("kanaele")
+    void kopfUndZeilenUeberPuffergrenzen(String bezeichnung, int stueck) throws IOException {
+        // 300 Spalten mit langen Namen: schon die Kopfzeile (> 75 KB) reicht über den ersten Puffer
+        int fonds = 300;
+        int monate = 120;
+        StringBuilder csv = new StringBuilder("Monat");
+        for (int f = 0; f < fonds; f++) csv.append(';').append(name(f));
+        csv.append('\n');
+        for (int m = 1; m <= monate; m++) {
+            csv.append(m);
+            for (int f = 0; f < fonds; f++) csv.append(';').append(wert(f, m));
+            csv.append('\n');
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(bytes.length > 4 * 64 * 1024);
+
+        RenditenCsvLeser.Ergebnis e = RenditenCsvLeser.lesen(stueckweise(bytes, stueck));
+
+        assertEquals(monate, e.zeilen());
+        assertEquals((long) fonds * monate, e.werte());
+        assertEquals(fonds, e.reihen().size());
+        for (int f = 0; f < fonds; f++) {
+            RenditenCsvLeser.Reihe r = e.reihen().get(f);
+            assertEquals(name(f), r.name());
+            assertEquals(monate, r.unskaliert().length);
+            for (int m = 1; m <= monate; m++) {
+                assertEquals(new BigDecimal(wert(f, m)).movePointRight(RenditenKodierung.SKALA).longValueExact(),
+                        r.unskaliert()[m - 1], name(f) + " Monat " + m);
+            }
+        }
+    }
+
+    private static String name(int f) {
+        return "Fonds " + f + " " + "x".repeat(240);
+    }
+
+    private static String wert(int f, int m) {
+        return BigDecimal.valueOf((f * 31L + m * 17L) % 2001 - 1000, 5).toPlainString();
+    }
+
+    // =========================================================
+    // Fehler mit Zeile und Spalte
+    // =========================================================
+
+    @Test
+    void fehlenderMonat() {
+        IllegalArgumentException e = fehler("""
+                Datum;A
+                2020-01-31;0,01
+                2020-03-31;0,01
+                """);
+        assertEquals("Zeile 3, Spalte Schlüssel: Monat fehlt vor 2020-3", e.getMessage());
+    }
+
+    @Test
+    void fehlendeMonatsnummer() {
+        IllegalArgumentException e = fehler("""
+                Monat;A
+                1;0,01
+                2;0,01
+                4;0,01
+                """);
+        assertEquals("Zeile 4, Spalte Schlüssel: Monatsnummer 4 folgt nicht auf 2", e.getMessage());
+    }
+
+    @Test
+    void leereSpalteAmZeilenendeOhneKopfspalte() {
+        // Kopf ohne abschließendes Trennzeichen, Datenzeile mit: eine Spalte zu viel
+        IllegalArgumentException e = fehler("""
+                Datum;A;B
+                2020-01;0,01;0,02
+                2020-02;0,01;0,02;
+                """);
+        assertEquals("Zeile 3: 4 Spalten statt 3", e.getMessage());
+    }
+
+    @Test
+    void renditeAusserhalbDesBereichs() {
+        IllegalArgumentException zuHoch = fehler("""
+                Datum;A;B
+                2020-01;0,01;0,02
+                2020-02;0,01;10,5
+                """);
+        assertEquals("Zeile 3, Spalte 'B': Rendite außerhalb -100 % .. +1000 %", zuHoch.getMessage());
+
+        IllegalArgumentException zuNiedrig = fehler("""
+                Datum;A;B
+                2020-01;-1,0000000001;0,02
+                """);
+        assertEquals("Zeile 2, Spalte 'A': Rendite außerhalb -100 % .. +1000 %", zuNiedrig.getMessage());
+    }
+
+    // =========================================================
+    // RenditenKodierung (Import => Spalte kapitalanlage.renditen)
+    // =========================================================
+
+    @Test
+    void kodierungRundreiseMitNegativenUndGleichenWerten() throws IOException {
+        // Deltas: positiv, negativ, 0 (gleicher Wert), großer Sprung, Minimum und Maximum des Imports
+        RenditenCsvLeser.Ergebnis e = lesen("""
+                Monat;A
+                1;0,0025
+                2;-0,0125
+                3;-0,0125
+                4;0
+                5;0
+                6;10
+                7;-1
+                8;-1
+                9;0,0000000001
+                """);
+        long[] u = e.reihen().get(0).unskaliert();
+
+        RenditenKodierung.Werte w = RenditenKodierung.dekodieren(RenditenKodierung.kodieren(u));
+        assertEquals(RenditenKodierung.SKALA, w.skala());
+        assertArrayEquals(u, w.unskaliert());
+
+        // gleicher Weg über BigDecimal (Admin/Seed) ergibt dieselben Bytes
+        List<BigDecimal> liste = RenditenKodierung.alsListe(w);
+        assertArrayEquals(RenditenKodierung.kodieren(u), RenditenKodierung.kodieren(liste));
+        assertEquals(new BigDecimal("-0.0125000000"), liste.get(2));
+    }
+
+    @Test
+    void kodierungRundreiseExtremwerte() {
+        long[] u = {0L, 0L, Long.MAX_VALUE / 2, Long.MIN_VALUE / 2, -1L, 1L, 0L};
+        assertArrayEquals(u, RenditenKodierung.dekodieren(RenditenKodierung.kodieren(u)).unskaliert());
+
+        assertEquals(0, RenditenKodierung.dekodieren(RenditenKodierung.kodieren(new long[0])).laenge());
+        assertEquals(0, RenditenKodierung.dekodieren(null).laenge());
+    }
+
+    // =========================================================
+    // Hilfen
+    // =========================================================
+
+    private static RenditenCsvLeser.Ergebnis lesen(String csv) throws IOException {
+        return RenditenCsvLeser.lesen(Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static IllegalArgumentException fehler(String csv) {
+        return assertThrows(IllegalArgumentException.class, () -> lesen(csv));
+    }
+
+    private static void assertReihe(RenditenCsvLeser.Ergebnis e, int i, String name, long... unskaliert) {
+        RenditenCsvLeser.Reihe r = e.reihen().get(i);
+        assertEquals(name, r.name());
+        assertArrayEquals(unskaliert, r.unskaliert());
+    }
+
+    /**
+     * Kanal, der höchstens stueck Bytes je read liefert.
+     */
+    private static ReadableByteChannel stueckweise(byte[] bytes, int stueck) {
+        return new ReadableByteChannel() {
+            private int pos;
+
+            @Override
+            public int read(ByteBuffer ziel) {
+                if (pos == bytes.length) return -1;
+                int n = Math.min(Math.min(stueck, ziel.remaining()), bytes.length - pos);
+                ziel.put(bytes, pos, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}